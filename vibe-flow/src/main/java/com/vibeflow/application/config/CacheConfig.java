@@ -0,0 +1,99 @@
+package com.vibeflow.application.config;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.cache.NullUserCache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.vibeflow.application.security.CaffeineUserCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Configuration class for the Hibernate second-level cache, backed by Caffeine through JCache,
+ * and for the cache of the user details loaded by the logins.
+ * 
+ * @author Denis
+ */
+@Configuration
+public class CacheConfig {
+
+	/**
+	 * The cache region holding the User entities, keyed by id.
+	 */
+	public static final String USER_REGION = "users";
+
+	/**
+	 * The cache region resolving the email of a User to its id.
+	 */
+	public static final String USER_NATURAL_ID_REGION = "users-by-email";
+
+	/**
+	 * Creates the JCache manager used by Hibernate, with a bounded and expiring cache for every User region.
+	 * 
+	 * @param vibeFlowProperties the configuration holding the size and the time to live of the cache
+	 * @return the JCache manager
+	 */
+	@Bean(destroyMethod = "close")
+	public CacheManager hibernateCacheManager(VibeFlowPropertiesConfig vibeFlowProperties) {
+		CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+				.getCacheManager(URI.create("vibe-flow-" + UUID.randomUUID()), getClass().getClassLoader());
+
+		cacheManager.createCache(USER_REGION, regionConfiguration(vibeFlowProperties));
+		cacheManager.createCache(USER_NATURAL_ID_REGION, regionConfiguration(vibeFlowProperties));
+
+		return cacheManager;
+	}
+
+	/**
+	 * Hands the JCache manager to Hibernate, so the regions are not created from a classpath configuration.
+	 * 
+	 * @param hibernateCacheManager the JCache manager
+	 * @return the customizer of the Hibernate properties
+	 */
+	@Bean
+	public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+		return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+	}
+
+	/**
+	 * Creates the cache of the user details loaded by the logins, or a cache holding nothing if it is disabled.
+	 * 
+	 * @param vibeFlowProperties the configuration holding the size and the time to live of the cache
+	 * @param meterRegistry the registry of the cache metrics
+	 * @return the user cache
+	 */
+	@Bean
+	public UserCache userCache(VibeFlowPropertiesConfig vibeFlowProperties, MeterRegistry meterRegistry) {
+		if (!vibeFlowProperties.isUserDetailsCacheEnabled()) {
+			return new NullUserCache();
+		}
+
+		return new CaffeineUserCache(vibeFlowProperties.getUserDetailsCacheMaxSize(),
+				Duration.ofSeconds(vibeFlowProperties.getUserDetailsCacheTtlSeconds()), meterRegistry);
+	}
+
+	/**
+	 * Builds the configuration of a single cache region.
+	 */
+	private CaffeineConfiguration<Object, Object> regionConfiguration(VibeFlowPropertiesConfig vibeFlowProperties) {
+		CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+		configuration.setMaximumSize(OptionalLong.of(vibeFlowProperties.getUserCacheMaxSize()));
+		configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(vibeFlowProperties.getUserCacheTtlSeconds())));
+		configuration.setStatisticsEnabled(true);
+		return configuration;
+	}
+}
@@ -0,0 +1,68 @@
+package com.vibeflow.application.config;
+
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.FlushMode;
+import org.springframework.session.SaveMode;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
+
+import com.vibeflow.application.security.CompactSessionSerializer;
+
+/**
+ * Configuration class for the sessions shared by the nodes through the database, used when the JDBC sessions are enabled.
+ * The sessions are written once at the end of a request, and only the attributes set during the request are written.
+ * The expired sessions are deleted in bounded chunks by the {@code SessionCleanupTask}, instead of a single statement on every node.
+ * 
+ * @author Denis
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "vibe.flow", name = "jdbcSessionsEnabled", havingValue = "true")
+@EnableJdbcHttpSession(flushMode = FlushMode.ON_SAVE, saveMode = SaveMode.ON_SET_ATTRIBUTE, cleanupCron = Scheduled.CRON_DISABLED)
+public class SessionConfig implements BeanClassLoaderAware {
+
+	/**
+	 * The class loader of the session attributes written with the Java serialization.
+	 */
+	private ClassLoader classLoader;
+
+	@Override
+	public void setBeanClassLoader(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Creates the conversion service writing the session attributes, with the security context in its compact form.
+	 * 
+	 * @return the conversion service of the session attributes
+	 */
+	@Bean("springSessionConversionService")
+	public ConversionService springSessionConversionService() {
+		CompactSessionSerializer serializer = new CompactSessionSerializer(classLoader);
+
+		GenericConversionService conversionService = new GenericConversionService();
+		conversionService.addConverter(Object.class, byte[].class, new SerializingConverter(serializer));
+		conversionService.addConverter(byte[].class, Object.class, new DeserializingConverter(serializer));
+		return conversionService;
+	}
+
+	/**
+	 * Applies the session timeout of the server to the sessions stored in the database.
+	 * 
+	 * @param serverProperties the configuration of the server
+	 * @return the customizer of the session repository
+	 */
+	@Bean
+	public SessionRepositoryCustomizer<JdbcIndexedSessionRepository> sessionTimeoutCustomizer(ServerProperties serverProperties) {
+		return repository -> repository.setDefaultMaxInactiveInterval(serverProperties.getServlet().getSession().getTimeout());
+	}
+}
@@ -1,5 +1,8 @@
 package com.vibeflow.application.config;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -26,8 +29,383 @@ public class VibeFlowPropertiesConfig {
 	  */
 	 private String secretKey;
 
+	 /**
+	  * The keyring of the JWT signing keys, mapping the key id to the base64 secret.
+	  * Tokens without a key id are verified with the secret key.
+	  */
+	 private Map<String, String> signingKeys = new HashMap<>();
+
+	 /**
+	  * The id of the key of the keyring signing the new tokens, or null to sign them with the secret key.
+	  */
+	 private String activeSigningKeyId;
+
+	 /**
+	  * The ISO-8601 instant after which the tokens without a key id are rejected, or null to accept them with the secret key.
+	  * It can only be set with an active key of the keyring, because the new tokens would otherwise have no key id.
+	  */
+	 private String legacyTokensAcceptedUntil;
+
 	 /**
 	  * The number of days until a new user is permanently deleted from the system.
 	  */
 	 private int daysForEmailConfirmation;
+
+	 /**
+	  * The maximum number of users permanently deleted by a single purge statement.
+	  */
+	 private int purgeChunkSize = 1000;
+
+	 /**
+	  * The maximum time, in milliseconds, that a purge run may spend deleting chunks.
+	  */
+	 private long purgeTimeBudgetMillis = 60000;
+
+	 /**
+	  * The maximum number of entries of every User region of the second-level cache.
+	  */
+	 private long userCacheMaxSize = 10000;
+
+	 /**
+	  * The time, in seconds, after which an entry of the second-level cache expires.
+	  */
+	 private long userCacheTtlSeconds = 600;
+
+	 /**
+	  * The number of threads hashing passwords, zero to use the number of available processors.
+	  */
+	 private int passwordHashingThreads = 0;
+
+	 /**
+	  * The maximum number of password hashing requests waiting for a hashing thread.
+	  */
+	 private int passwordHashingQueueCapacity = 64;
+
+	 /**
+	  * The number of seconds a client is asked to wait when the password hashing queue is full.
+	  */
+	 private int passwordHashingRetryAfterSeconds = 1;
+
+	 /**
+	  * The work factor of the BCrypt hashes, zero to calibrate it at startup.
+	  */
+	 private int passwordHashingStrength = 0;
+
+	 /**
+	  * The verification latency, in milliseconds, the calibration of the work factor aims for.
+	  */
+	 private long passwordHashingTargetMillis = 250;
+
+	 /**
+	  * The lowest work factor the calibration may choose.
+	  */
+	 private int passwordHashingMinStrength = 10;
+
+	 /**
+	  * The highest work factor the calibration may choose.
+	  */
+	 private int passwordHashingMaxStrength = 14;
+
+	 /**
+	  * The base URL of the links sent by email, or null to take it from the request publishing the email.
+	  * The reminders are not published by a request, so it is required while they are enabled.
+	  */
+	 private String baseUrl;
+
+	 /**
+	  * Whether the outbox relay sends the emails of the outbox.
+	  */
+	 private boolean outboxRelayEnabled = true;
+
+	 /**
+	  * The number of relay workers sending the emails of the outbox.
+	  */
+	 private int outboxRelayWorkers = 2;
+
+	 /**
+	  * The maximum number of emails claimed by a relay worker at once, unless they can't be sent in half the lease.
+	  */
+	 private int outboxBatchSize = 50;
+
+	 /**
+	  * The time, in milliseconds, an idle relay worker waits before looking for due emails again.
+	  */
+	 private long outboxPollIntervalMillis = 1000;
+
+	 /**
+	  * The time, in seconds, after which an email claimed by a relay worker that didn't finish may be claimed again.
+	  */
+	 private int outboxLeaseSeconds = 600;
+
+	 /**
+	  * The longest time, in milliseconds, sending one email may take. A claim holds at most the emails sendable in half the lease.
+	  */
+	 private long outboxSendTimeoutMillis = 15000;
+
+	 /**
+	  * The number of attempts after which an email is moved to the dead state.
+	  */
+	 private int outboxMaxAttempts = 8;
+
+	 /**
+	  * The delay, in milliseconds, before the first retry of an email. It doubles with every failed attempt.
+	  */
+	 private long outboxBaseBackoffMillis = 5000;
+
+	 /**
+	  * The maximum delay, in milliseconds, between two attempts to send an email.
+	  */
+	 private long outboxMaxBackoffMillis = 3600000;
+
+	 /**
+	  * The number of days the sent emails are kept in the outbox.
+	  */
+	 private int outboxRetentionDays = 7;
+
+	 /**
+	  * The maximum time, in seconds, the shutdown waits for the relay workers to finish their batch.
+	  */
+	 private int outboxShutdownSeconds = 30;
+
+	 /**
+	  * The maximum number of open SMTP connections.
+	  */
+	 private int smtpPoolSize = 4;
+
+	 /**
+	  * The time, in seconds, after which an idle SMTP connection is closed instead of reused.
+	  */
+	 private int smtpIdleTimeoutSeconds = 60;
+
+	 /**
+	  * The number of emails after which an SMTP connection is closed and replaced.
+	  */
+	 private int smtpMaxMessagesPerConnection = 100;
+
+	 /**
+	  * The number of consecutive failed SMTP connections that opens the circuit breaker.
+	  */
+	 private int smtpCircuitFailureThreshold = 5;
+
+	 /**
+	  * The time, in milliseconds, the SMTP circuit breaker rejects the emails before trying the server again.
+	  */
+	 private long smtpCircuitOpenMillis = 30000;
+
+	 /**
+	  * The number of trial batches sent at once when the open period of the SMTP circuit breaker ends.
+	  */
+	 private int smtpCircuitHalfOpenTrials = 1;
+
+	 /**
+	  * The time, in seconds, during which the requests for an email already queued for a user reuse the queued email.
+	  */
+	 private int emailCoalescingWindowSeconds = 300;
+
+	 /**
+	  * The maximum number of queued emails remembered by the coalescing window.
+	  */
+	 private long emailCoalescingMaxEntries = 100000;
+
+	 /**
+	  * The period, in seconds, starting with the first email queued for an address, during which the emails of the address are throttled.
+	  */
+	 private int emailThrottlingPeriodSeconds = 3600;
+
+	 /**
+	  * The maximum number of emails queued for an address within its throttling period.
+	  */
+	 private int emailThrottlingMaxEmails = 5;
+
+	 /**
+	  * The lease, in seconds, of the lock of a scheduled job. It is renewed while the job runs and must be much longer than the clock skew between the nodes.
+	  */
+	 private int jobLockLeaseSeconds = 300;
+
+	 /**
+	  * The delay, in milliseconds, between two runs of the incremental expiry of the users.
+	  */
+	 private long expiryIntervalMillis = 60000;
+
+	 /**
+	  * The time, in seconds, an expiry run looks back before the watermark, for the users dated by a node whose clock is behind.
+	  */
+	 private int expirySkewAllowanceSeconds = 300;
+
+	 /**
+	  * The delay, in milliseconds, between two expiry runs that scan all the expired users instead of those expired since the watermark.
+	  */
+	 private long expiryFullScanIntervalMillis = 86400000;
+
+	 /**
+	  * Whether the users are reminded before their account is purged.
+	  */
+	 private boolean remindersEnabled = true;
+
+	 /**
+	  * The number of days before the purge of an account at which its user is reminded.
+	  */
+	 private int reminderDaysBefore = 2;
+
+	 /**
+	  * The number of users read and reminded in a single transaction.
+	  */
+	 private int reminderBatchSize = 500;
+
+	 /**
+	  * The maximum number of reminders queued per second, or zero for no limit.
+	  */
+	 private int reminderRatePerSecond = 50;
+
+	 /**
+	  * The delay, in milliseconds, between two runs of the reminders.
+	  */
+	 private long reminderIntervalMillis = 3600000;
+
+	 /**
+	  * Whether the clients may authenticate with access and refresh tokens instead of the session.
+	  */
+	 private boolean statelessAuthEnabled = false;
+
+	 /**
+	  * The time, in seconds, during which an access token is accepted.
+	  */
+	 private int accessTokenTtlSeconds = 900;
+
+	 /**
+	  * The number of days during which a refresh token can be used.
+	  */
+	 private int refreshTokenTtlDays = 14;
+
+	 /**
+	  * The number of minutes a revoked refresh token is kept, so a stolen token used again is detected and revokes all the tokens of its user.
+	  */
+	 private int refreshTokenRevokedRetentionMinutes = 1440;
+
+	 /**
+	  * The interval, in milliseconds, at which the expired refresh tokens and those revoked for longer than the retention are deleted.
+	  */
+	 private long refreshTokenCleanupIntervalMillis = 3600000;
+
+	 /**
+	  * Whether the sessions of the form login are stored in the database and shared by the nodes, instead of the memory of a node.
+	  */
+	 private boolean jdbcSessionsEnabled = false;
+
+	 /**
+	  * The delay, in milliseconds, between two runs of the deletion of the expired sessions.
+	  */
+	 private long sessionCleanupIntervalMillis = 60000;
+
+	 /**
+	  * Whether the login attempts are throttled by client address and by email.
+	  */
+	 private boolean loginThrottleEnabled = true;
+
+	 /**
+	  * The maximum number of token buckets kept by each login throttle, so the memory doesn't grow with the keys.
+	  */
+	 private long loginThrottleMaxKeys = 100000;
+
+	 /**
+	  * The number of login attempts a client address may make at once.
+	  */
+	 private int loginAddressBurst = 30;
+
+	 /**
+	  * The time, in milliseconds, after which a client address may make another login attempt.
+	  */
+	 private long loginAddressRefillMillis = 2000;
+
+	 /**
+	  * The number of login attempts an email may get at once from a client address.
+	  */
+	 private int loginEmailBurst = 5;
+
+	 /**
+	  * The time, in milliseconds, after which an email may get another login attempt from a client address.
+	  */
+	 private long loginEmailRefillMillis = 30000;
+
+	 /**
+	  * The number of login attempts an email may get at once, whatever the client address.
+	  */
+	 private int loginAccountBurst = 20;
+
+	 /**
+	  * The time, in milliseconds, after which an email may get another login attempt, whatever the client address.
+	  */
+	 private long loginAccountRefillMillis = 6000;
+
+	 /**
+	  * Whether the lookups of the emails which are definitely not registered are answered by a Bloom filter, without querying the database.
+	  */
+	 private boolean emailFilterEnabled = true;
+
+	 /**
+	  * The rate of the lookups of unregistered emails which the email filter lets through to the database.
+	  */
+	 private double emailFilterFalsePositiveRate = 0.01;
+
+	 /**
+	  * The maximum memory of the email filter, in bytes. A filter sized to this limit has a higher false positive rate.
+	  */
+	 private long emailFilterMaxBytes = 16L * 1024 * 1024;
+
+	 /**
+	  * The number of users read per page when the email filter is built or refreshed.
+	  */
+	 private int emailFilterBatchSize = 10000;
+
+	 /**
+	  * The interval, in milliseconds, at which the emails registered on the other nodes are added to the email filter.
+	  */
+	 private long emailFilterRefreshIntervalMillis = 5000;
+
+	 /**
+	  * The ratio of purged emails to the emails of the filter above which the email filter is rebuilt.
+	  */
+	 private double emailFilterRebuildRatio = 0.2;
+
+	 /**
+	  * The longest time, in seconds, a transaction writing the users may take, for which the recently committed users are read again.
+	  */
+	 private int maxTransactionSeconds = 60;
+
+	 /**
+	  * Whether the user details loaded by the logins are cached, so the repeated logins of an account don't query the database.
+	  */
+	 private boolean userDetailsCacheEnabled = true;
+
+	 /**
+	  * The maximum number of users in the cache of the user details.
+	  */
+	 private long userDetailsCacheMaxSize = 10000;
+
+	 /**
+	  * The time to live, in seconds, of the user details cached by the logins.
+	  * It bounds how long a change made on another node goes unseen by the logins of this node.
+	  */
+	 private long userDetailsCacheTtlSeconds = 60;
+
+	 /**
+	  * The interval, in milliseconds, at which every node reads the change log of the users to evict the changed users from its caches.
+	  */
+	 private long userChangePollIntervalMillis = 1000;
+
+	 /**
+	  * The number of changes read per page of the change log of the users.
+	  */
+	 private int userChangePollBatchSize = 500;
+
+	 /**
+	  * The number of minutes the changes of the users are kept in the change log.
+	  * A node which didn't read the change log for longer than that evicts all its cached users.
+	  */
+	 private int userChangeRetentionMinutes = 60;
+
+	 /**
+	  * The interval, in milliseconds, at which the changes older than the retention period are deleted from the change log.
+	  */
+	 private long userChangeTruncateIntervalMillis = 600000;
 }
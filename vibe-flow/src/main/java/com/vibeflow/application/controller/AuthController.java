@@ -0,0 +1,90 @@
+package com.vibeflow.application.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.vibeflow.application.dto.LoginDto;
+import com.vibeflow.application.dto.RefreshTokenDto;
+import com.vibeflow.application.dto.TokenDto;
+import com.vibeflow.application.exception.InternalErrorCode;
+import com.vibeflow.application.exception.ServerBusyException;
+import com.vibeflow.application.exception.VibeFlowException;
+import com.vibeflow.application.messages.Message;
+import com.vibeflow.application.security.VibeFlowUserPrincipal;
+import com.vibeflow.application.service.RefreshTokenService;
+
+/**
+ * The AuthController class is a REST controller that issues the tokens of the stateless authentication.
+ * It is only available when the stateless authentication is enabled; the form login keeps working alongside it.
+ * @author Denis
+ */
+@RestController
+@RequestMapping("/api/auth")
+@ConditionalOnProperty(prefix = "vibe.flow", name = "statelessAuthEnabled", havingValue = "true")
+public class AuthController {
+
+	/**
+	 * The authentication manager checking the credentials, as the form login does.
+	 */
+	@Autowired
+	private AuthenticationManager authenticationManager;
+
+	/**
+	 * RefreshTokenService used to issue, rotate and revoke the tokens.
+	 */
+	@Autowired
+	private RefreshTokenService refreshTokenService;
+
+	/**
+	 * Handles the POST request to log in with the email and the password of a user.
+	 * 
+	 * @param loginDto the credentials of the user
+	 * @return an access token and a refresh token
+	 */
+	@PostMapping("/token")
+	public TokenDto login(@RequestBody LoginDto loginDto) {
+		Authentication authentication;
+
+		try {
+			authentication = authenticationManager.authenticate(
+					UsernamePasswordAuthenticationToken.unauthenticated(loginDto.getEmail(), loginDto.getPassword()));
+		} catch (ServerBusyException e) {
+			throw e;
+		} catch (AuthenticationException e) {
+			throw new VibeFlowException(Message.INVALID_CREDENTIALS, HttpStatus.UNAUTHORIZED, InternalErrorCode.INVALID_CREDENTIALS);
+		}
+
+		VibeFlowUserPrincipal principal = (VibeFlowUserPrincipal) authentication.getPrincipal();
+		return refreshTokenService.issueTokens(principal.toUser());
+	}
+
+	/**
+	 * Handles the POST request to exchange a refresh token for new tokens.
+	 * 
+	 * @param refreshTokenDto the refresh token issued with the last access token
+	 * @return a new access token and a new refresh token
+	 */
+	@PostMapping("/refresh")
+	public TokenDto refresh(@RequestBody RefreshTokenDto refreshTokenDto) {
+		return refreshTokenService.refreshTokens(refreshTokenDto.getRefreshToken());
+	}
+
+	/**
+	 * Handles the POST request to log out by revoking a refresh token.
+	 * 
+	 * @param refreshTokenDto the refresh token to revoke
+	 */
+	@PostMapping("/revoke")
+	public void revoke(@RequestBody RefreshTokenDto refreshTokenDto) {
+		refreshTokenService.revokeToken(refreshTokenDto.getRefreshToken());
+	}
+}
@@ -79,7 +79,7 @@ public class UserController {
 			return userConverter.entityToDto(currentUser);
 
 		} catch (UserNotAuthenticatedException e) {
-			return new UserDto("Anonymous User", "anonymousUser", null, UserStatus.ACTIVE.getStatus(), null);
+			return new UserDto("Anonymous User", "anonymousUser", null, UserStatus.ACTIVE, null);
 		}
 	}
     
@@ -0,0 +1,54 @@
+package com.vibeflow.application.converter;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Converter storing the data of an email template as a JSON document.
+ * 
+ * @author Denis
+ */
+@Converter
+public class EmailDataConverter implements AttributeConverter<Map<String, Object>, String> {
+
+	/**
+	 * The JSON mapper, shared because it is thread-safe.
+	 */
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	/**
+	 * Converts the data of the email to the JSON stored in the database.
+	 * 
+	 * @param emailData the data of the email template
+	 * @return the JSON document
+	 */
+	@Override
+	public String convertToDatabaseColumn(Map<String, Object> emailData) {
+		try {
+			return OBJECT_MAPPER.writeValueAsString(emailData);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("The email data cannot be converted to JSON", e);
+		}
+	}
+
+	/**
+	 * Converts the JSON stored in the database to the data of the email.
+	 * 
+	 * @param json the JSON document
+	 * @return the data of the email template
+	 */
+	@Override
+	public Map<String, Object> convertToEntityAttribute(String json) {
+		try {
+			return OBJECT_MAPPER.readValue(json, new TypeReference<Map<String, Object>>() {});
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("The email data cannot be read from JSON", e);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.vibeflow.application.converter;
+
+import com.vibeflow.application.model.UserStatus;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * JPA converter that stores a {@link UserStatus} as its single character code.
+ * @author Denis
+ */
+@Converter(autoApply = true)
+public class UserStatusConverter implements AttributeConverter<UserStatus, String> {
+
+	/**
+	 * Converts the user status to the code stored in the database.
+	 * 
+	 * @param status the user status of the entity
+	 * @return the database code of the user status, or null if the status is null
+	 */
+	@Override
+	public String convertToDatabaseColumn(UserStatus status) {
+		return status == null ? null : status.getCode();
+	}
+
+	/**
+	 * Converts the code stored in the database to the user status.
+	 * 
+	 * @param code the database code of the user status
+	 * @return the user status with the given code, or null if the code is null
+	 */
+	@Override
+	public UserStatus convertToEntityAttribute(String code) {
+		return code == null ? null : UserStatus.fromCode(code);
+	}
+}
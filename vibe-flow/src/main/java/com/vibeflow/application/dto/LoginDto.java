@@ -0,0 +1,25 @@
+package com.vibeflow.application.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO representing the credentials of a token request.
+ * @author Denis
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class LoginDto {
+
+	/**
+	 * The email of the user.
+	 */
+	private String email;
+
+	/**
+	 * The password of the user.
+	 */
+	private String password;
+}
@@ -0,0 +1,40 @@
+package com.vibeflow.application.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * An object summarizing a purge run.
+ * @author Denis
+ */
+@Getter
+@Setter
+public class PurgeSummary {
+
+	/**
+	 * The number of users deleted by each chunk, in execution order.
+	 */
+	private List<Integer> purgedPerChunk = new ArrayList<>();
+
+	/**
+	 * The time spent by the purge run, in milliseconds.
+	 */
+	private long elapsedMillis;
+
+	/**
+	 * Whether the run deleted every expired user, or stopped because the time budget was exhausted.
+	 */
+	private boolean completed;
+
+	/**
+	 * Returns the total number of users deleted by the purge run.
+	 * 
+	 * @return the sum of the users deleted by every chunk
+	 */
+	public int getTotalPurged() {
+		return purgedPerChunk.stream().mapToInt(Integer::intValue).sum();
+	}
+}
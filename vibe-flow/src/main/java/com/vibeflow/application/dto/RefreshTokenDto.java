@@ -0,0 +1,20 @@
+package com.vibeflow.application.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO representing the refresh token sent to refresh or revoke the tokens.
+ * @author Denis
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class RefreshTokenDto {
+
+	/**
+	 * The refresh token issued with the last access token.
+	 */
+	private String refreshToken;
+}
@@ -0,0 +1,35 @@
+package com.vibeflow.application.dto;
+
+import java.sql.Timestamp;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A user to remind before the purge, with only the columns the reminder needs.
+ * @author Denis
+ */
+@Getter
+@AllArgsConstructor
+public class ReminderCandidate {
+
+	/**
+	 * The id of the user.
+	 */
+	private Integer id;
+
+	/**
+	 * The name of the user.
+	 */
+	private String name;
+
+	/**
+	 * The email of the user.
+	 */
+	private String email;
+
+	/**
+	 * The deletion or registration date the deadline of the user is computed from.
+	 */
+	private Timestamp referenceDate;
+}
@@ -0,0 +1,32 @@
+package com.vibeflow.application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * DTO representing the tokens issued by the stateless authentication.
+ * @author Denis
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenDto {
+
+	/**
+	 * The signed access token, sent in the Authorization header of the requests.
+	 */
+	private String accessToken;
+
+	/**
+	 * The opaque refresh token, used once to get new tokens.
+	 */
+	private String refreshToken;
+
+	/**
+	 * The time, in seconds, during which the access token is accepted.
+	 */
+	private int expiresIn;
+}
@@ -2,6 +2,8 @@ package com.vibeflow.application.dto;
 
 import java.sql.Timestamp;
 
+import com.vibeflow.application.model.UserStatus;
+
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -41,7 +43,7 @@ public class UserDto {
 	/**
 	 * The status of the user
 	 */
-	private String status;
+	private UserStatus status;
 	
 	/**
 	 * The deletion date of the user
@@ -23,14 +23,21 @@ public class RegistrationEvent extends ApplicationEvent {
 	 */
 	private final User user;
 
+	/**
+	 * The base URL of the links sent by email, captured when the event is published.
+	 */
+	private final String baseUrl;
+
 	/**
 	 * Constructs a new RegistrationEvent with the given source and associated user.
 	 * 
 	 * @param source the object on which the event initially occurred (never {@code null})
 	 * @param user the user for whom this registration event is associated
+	 * @param baseUrl the base URL of the links sent by email
 	 */
-    public RegistrationEvent(Object source, User user) {
+    public RegistrationEvent(Object source, User user, String baseUrl) {
         super(source);
         this.user = user;
+        this.baseUrl = baseUrl;
     }
 }
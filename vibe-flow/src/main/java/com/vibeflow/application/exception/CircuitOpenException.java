@@ -0,0 +1,25 @@
+package com.vibeflow.application.exception;
+
+import jakarta.mail.MessagingException;
+
+/**
+ *	This class represents a custom exception which is thrown when a batch of emails is rejected by the SMTP circuit breaker.
+ *	No email of the batch reached the SMTP server, so the rejection isn't a failed attempt to send them.
+ *	@author Denis
+ */
+public class CircuitOpenException extends MessagingException {
+
+	/**
+	 * Unique ID used in serialization to verify that the sender and receiver of a serialized object maintain compatibility.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs a new CircuitOpenException with the given message.
+	 * 
+	 * @param message the detail message.
+	 */
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+}
@@ -1,9 +1,13 @@
 package com.vibeflow.application.exception;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import com.vibeflow.application.messages.Message;
+
 /**
  * This class handles exceptions globally for the application and provides central exception handling across all HTTP requests
  */
@@ -42,5 +46,22 @@ public class GlobalExceptionHandler {
 	
 		return new ResponseEntity<>(errorResponse, exception.getStatus());
 	}
+	
+	/**
+	 * Method handles ServerBusyException that is thrown when a password cannot be hashed because the hashing queue is full.
+	 * @param exception the instance of ServerBusyException that has been thrown.
+	 * @return ResponseEntity<ErrorResponse> the 503 HTTP response, with a Retry-After header
+	 */
+	@ExceptionHandler(ServerBusyException.class)
+	public ResponseEntity<ErrorResponse> handleServerBusyException(ServerBusyException exception) {
+		ErrorResponse errorResponse = new ErrorResponse();
+		
+		errorResponse.setInternalErrorCode(InternalErrorCode.SERVER_BUSY.getInternalErrorCode());
+		errorResponse.setErrorMessage(Message.SERVER_BUSY.getMessage());
+		errorResponse.setMessageId(Message.SERVER_BUSY.getId());
+		
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+				.body(errorResponse);
+	}
 }
-
@@ -87,7 +87,22 @@ public enum InternalErrorCode {
 	/**
 	 * The error that occurs when the email does not exist
 	 */
-	USER_DOESNT_EXIST(1016);
+	USER_DOESNT_EXIST(1016),
+	
+	/**
+	 * The error that occurs when the server is too busy to hash a password
+	 */
+	SERVER_BUSY(1017),
+	
+	/**
+	 * The error that occurs when the email or the password of a token request is wrong
+	 */
+	INVALID_CREDENTIALS(1018),
+	
+	/**
+	 * The error that occurs when a refresh token is unknown, expired or already used
+	 */
+	INVALID_REFRESH_TOKEN(1019);
 	
 	/**
 	 * It represents the internal error code
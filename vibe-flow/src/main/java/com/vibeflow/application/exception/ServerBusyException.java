@@ -0,0 +1,42 @@
+package com.vibeflow.application.exception;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+
+import com.vibeflow.application.messages.Message;
+
+/**
+ *	This class represents a custom exception which is thrown when a password cannot be hashed because the hashing queue is full.
+ *	It is an authentication exception, so a login rejected this way reaches the authentication failure handler.
+ *	@author Denis
+ */
+public class ServerBusyException extends InternalAuthenticationServiceException {
+
+	/**
+	 * Unique ID used in serialization to verify that the sender and receiver of a serialized object maintain compatibility.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of seconds the client should wait before retrying.
+	 */
+	private final int retryAfterSeconds;
+
+	/**
+	 * Constructs a new ServerBusyException with the number of seconds the client should wait before retrying.
+	 * 
+	 * @param retryAfterSeconds the number of seconds sent in the Retry-After header
+	 */
+	public ServerBusyException(int retryAfterSeconds) {
+		super(Message.SERVER_BUSY.getMessage());
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * Returns the number of seconds the client should wait before retrying.
+	 * 
+	 * @return the number of seconds sent in the Retry-After header
+	 */
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
@@ -100,7 +100,22 @@ public enum Message {
 	/**
 	 * ID corresponding to the message indicating that the email does not exist in the database
 	 */
-	USER_DOESNT_EXIST("USER_DOESNT_EXIST", "This user doesn't exist");
+	USER_DOESNT_EXIST("USER_DOESNT_EXIST", "This user doesn't exist"),
+	
+	/**
+	 * ID corresponding to the message indicating that the server is too busy to process the request
+	 */
+	SERVER_BUSY("SERVER_BUSY", "The server is busy, please try again later."),
+	
+	/**
+	 * ID corresponding to the message indicating that the email or the password is wrong
+	 */
+	INVALID_CREDENTIALS("INVALID_CREDENTIALS", "The email or the password is incorrect."),
+	
+	/**
+	 * ID corresponding to the message indicating that the refresh token cannot be used
+	 */
+	INVALID_REFRESH_TOKEN("INVALID_REFRESH_TOKEN", "The session has expired, please log in again.");
 
 	/**
 	 * Unique identifier corresponding to each type of message.
@@ -0,0 +1,103 @@
+package com.vibeflow.application.model;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+import com.vibeflow.application.converter.EmailDataConverter;
+import com.vibeflow.application.type.EmailType;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing an email of the outbox.
+ * The email is written in the transaction of the change it announces, and sent later by the outbox relay.
+ * @author Denis
+ */
+@Data
+@Entity
+@Table(name = "email_outbox")
+@NoArgsConstructor
+public class EmailOutbox {
+
+	/**
+	 * Unique id of the email.
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	/**
+	 * The type of the email.
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "type")
+	private EmailType type;
+
+	/**
+	 * The email address of the recipient.
+	 */
+	@Column(name = "email_address")
+	private String emailAddress;
+
+	/**
+	 * Data for constructing the email content.
+	 */
+	@Column(name = "payload")
+	@Convert(converter = EmailDataConverter.class)
+	private Map<String, Object> emailData;
+
+	/**
+	 * The status of the email.
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status")
+	private OutboxStatus status;
+
+	/**
+	 * The number of times the relay tried to send the email.
+	 */
+	@Column(name = "attempts")
+	private int attempts;
+
+	/**
+	 * The date from which the relay may try to send the email.
+	 * A relay claiming the email moves it forward by the lease, so an email claimed by a relay that crashed is sent again.
+	 */
+	@Column(name = "next_attempt_at")
+	private Timestamp nextAttemptAt;
+
+	/**
+	 * The token of the last claim of the email. Only the relay worker holding the claim records the outcome of the email,
+	 * so a worker whose lease expired while it was sending cannot overwrite the outcome recorded by the worker which claimed the email again.
+	 */
+	@Column(name = "claim_token")
+	private String claimToken;
+
+	/**
+	 * The error of the last failed attempt.
+	 */
+	@Column(name = "last_error")
+	private String lastError;
+
+	/**
+	 * The date when the email was written to the outbox.
+	 */
+	@Column(name = "created_at")
+	private Timestamp createdAt;
+
+	/**
+	 * The date when the email was sent.
+	 */
+	@Column(name = "sent_at")
+	private Timestamp sentAt;
+}
@@ -0,0 +1,53 @@
+package com.vibeflow.application.model;
+
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing the progress of an incremental expiry job.
+ * Every user whose deadline is at or before the watermark has been processed, so a run resumes after it.
+ * @author Denis
+ */
+@Data
+@Entity
+@Table(name = "expiry_watermark")
+@NoArgsConstructor
+public class ExpiryWatermark {
+
+	/**
+	 * The name of the expiry job.
+	 */
+	@Id
+	@Column(name = "job")
+	private String job;
+
+	/**
+	 * The latest deadline processed by the job.
+	 */
+	@Column(name = "watermark")
+	private Timestamp watermark;
+
+	/**
+	 * The date when the watermark was last moved.
+	 */
+	@Column(name = "updated_at")
+	private Timestamp updatedAt;
+
+	/**
+	 * The number of days after which a user expired when the watermark was last moved.
+	 */
+	@Column(name = "retention_days")
+	private Integer retentionDays;
+
+	/**
+	 * The date of the last run that scanned all the expired users.
+	 */
+	@Column(name = "full_scan_at")
+	private Timestamp fullScanAt;
+}
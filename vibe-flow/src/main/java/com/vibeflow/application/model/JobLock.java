@@ -0,0 +1,47 @@
+package com.vibeflow.application.model;
+
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing the lock of a scheduled job, shared by the nodes of the application.
+ * The node holding the lock runs the job until its lease ends; an expired lease may be taken by any node.
+ * @author Denis
+ */
+@Data
+@Entity
+@Table(name = "job_lock")
+@NoArgsConstructor
+public class JobLock {
+
+	/**
+	 * The name of the job.
+	 */
+	@Id
+	@Column(name = "name")
+	private String name;
+
+	/**
+	 * The node holding the lock, or that held it last.
+	 */
+	@Column(name = "owner")
+	private String owner;
+
+	/**
+	 * The date when the lock was acquired.
+	 */
+	@Column(name = "locked_at")
+	private Timestamp lockedAt;
+
+	/**
+	 * The date when the lease of the lock ends.
+	 */
+	@Column(name = "locked_until")
+	private Timestamp lockedUntil;
+}
@@ -0,0 +1,23 @@
+package com.vibeflow.application.model;
+
+/**
+ * The OutboxStatus enumeration contains the states of an email of the outbox.
+ * @author Denis
+ */
+public enum OutboxStatus {
+
+	/**
+	 * Status used to indicate that the email is waiting to be sent
+	 */
+	PENDING,
+
+	/**
+	 * Status used to indicate that the email was sent
+	 */
+	SENT,
+
+	/**
+	 * Status used to indicate that the email failed too many times and won't be sent again
+	 */
+	DEAD;
+}
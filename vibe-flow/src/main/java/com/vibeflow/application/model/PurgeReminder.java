@@ -0,0 +1,52 @@
+package com.vibeflow.application.model;
+
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing a reminder queued before the purge of a user.
+ * The reminder is keyed by the date the deadline is computed from, so a user is reminded once per deadline.
+ * The reminders are deleted with their user.
+ * @author Denis
+ */
+@Data
+@Entity
+@Table(name = "purge_reminder")
+@IdClass(PurgeReminderId.class)
+@NoArgsConstructor
+public class PurgeReminder {
+
+	/**
+	 * The id of the reminded user.
+	 */
+	@Id
+	@Column(name = "user_id")
+	private Integer userId;
+
+	/**
+	 * The type of the reminder email.
+	 */
+	@Id
+	@Column(name = "type")
+	private String type;
+
+	/**
+	 * The deletion or registration date of the user when the reminder was queued.
+	 */
+	@Id
+	@Column(name = "reference_date")
+	private Timestamp referenceDate;
+
+	/**
+	 * The date when the reminder was queued.
+	 */
+	@Column(name = "created_at")
+	private Timestamp createdAt;
+}
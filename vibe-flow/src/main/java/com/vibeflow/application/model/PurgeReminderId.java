@@ -0,0 +1,38 @@
+package com.vibeflow.application.model;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The key of a purge reminder: the user, the type of the reminder and the date its deadline is computed from.
+ * @author Denis
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurgeReminderId implements Serializable {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The id of the reminded user.
+	 */
+	private Integer userId;
+
+	/**
+	 * The type of the reminder email.
+	 */
+	private String type;
+
+	/**
+	 * The deletion or registration date of the user when the reminder was queued.
+	 */
+	private Timestamp referenceDate;
+}
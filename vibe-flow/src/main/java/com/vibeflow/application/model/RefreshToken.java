@@ -0,0 +1,54 @@
+package com.vibeflow.application.model;
+
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing a refresh token of the stateless authentication.
+ * Only the SHA-256 hash of the token is stored, so the tokens cannot be used by someone reading the table.
+ * A token is used once: refreshing revokes it and issues a new one.
+ * @author Denis
+ */
+@Data
+@Entity
+@Table(name = "refresh_token")
+@NoArgsConstructor
+public class RefreshToken {
+
+	/**
+	 * The hex encoded SHA-256 hash of the token.
+	 */
+	@Id
+	@Column(name = "token_hash")
+	private String tokenHash;
+
+	/**
+	 * The id of the user the token was issued to.
+	 */
+	@Column(name = "user_id")
+	private Integer userId;
+
+	/**
+	 * The date when the token was issued.
+	 */
+	@Column(name = "created_at")
+	private Timestamp createdAt;
+
+	/**
+	 * The date after which the token cannot be used.
+	 */
+	@Column(name = "expires_at")
+	private Timestamp expiresAt;
+
+	/**
+	 * The date when the token was used or revoked, or null if it can still be used.
+	 */
+	@Column(name = "revoked_at")
+	private Timestamp revokedAt;
+}
@@ -1,12 +1,23 @@
 package com.vibeflow.application.model;
 
 import java.sql.Timestamp;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
+import com.vibeflow.application.config.CacheConfig;
+import com.vibeflow.application.converter.UserStatusConverter;
+
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,12 +27,15 @@ import lombok.NoArgsConstructor;
 /**
  *	The User class represents a user entity in the system.
  *	The class includes basic user information such as username, email, registration date, and password.
+ *	The users are kept in the second-level cache, both by id and by email.
  *	@author Denis
  */
 
 @Data
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.USER_REGION)
+@NaturalIdCache(region = CacheConfig.USER_NATURAL_ID_REGION)
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
@@ -39,8 +53,9 @@ public class User {
 	private String name;
 
 	/**
-	 *  The email address of the user.
+	 *  The email address of the user, which is also the natural id of the user.
 	 */
+	@NaturalId
 	@Column(name = "email")
 	private String email;
 
@@ -59,15 +74,22 @@ public class User {
 	private String password;
 
 	/**
-	 * The status of the user
+	 * The status of the user, stored as the code of the status while the column of the names is still read by the previous release
 	 */
-	@Column(name = "status")
-	private String status;
+	@Column(name = "status_code", length = 1)
+	@Convert(converter = UserStatusConverter.class)
+	private UserStatus status;
 
 	/**
 	 * The deletion date of the user
 	 */
 	@Column(name = "deletion_date")
 	private Timestamp deletionDate;
+
+	/**
+	 * The version of the user, incremented by every change of the user.
+	 */
+	@Version
+	private Integer version;
 }
 
@@ -0,0 +1,61 @@
+package com.vibeflow.application.model;
+
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing a change of a user, appended to the change log in the transaction of the change.
+ * Every node reads the change log to evict the stale copies of the changed users from its caches.
+ * @author Denis
+ */
+@Data
+@Entity
+@Table(name = "user_change_log")
+@NoArgsConstructor
+public class UserChangeLog {
+
+	/**
+	 * Unique id of the change, increasing with the order of the changes.
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	/**
+	 * The id of the changed user.
+	 */
+	@Column(name = "user_id")
+	private Integer userId;
+
+	/**
+	 * The email of the changed user, which keys the caches of the logins.
+	 */
+	@Column(name = "email")
+	private String email;
+
+	/**
+	 * The version of the user after the change.
+	 */
+	@Column(name = "version")
+	private Integer version;
+
+	/**
+	 * Whether the user was deleted by the change.
+	 */
+	@Column(name = "deleted")
+	private boolean deleted;
+
+	/**
+	 * The date of the change.
+	 */
+	@Column(name = "changed_at")
+	private Timestamp changedAt;
+}
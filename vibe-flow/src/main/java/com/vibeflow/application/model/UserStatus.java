@@ -1,5 +1,7 @@
 package com.vibeflow.application.model;
 
+import com.fasterxml.jackson.annotation.JsonValue;
+
 import lombok.Getter;
 
 /**
@@ -12,29 +14,51 @@ public enum UserStatus {
 	/**
 	 * Status used to indicate that the user is deleted
 	 */
-	DELETED("deleted"),
+	DELETED("deleted", "D"),
 	
 	/**
 	 * Status used to indicate that the user is active
 	 */
-	ACTIVE("active"),
+	ACTIVE("active", "A"),
 	
 	/**
 	 * Status used to indicate that the user is new
 	 */
-	NEW("new");
+	NEW("new", "N");
 	
 	/**
-	 * The string representation of the user status. 
+	 * The string representation of the user status, used in the HTTP responses. 
 	 */
+	@JsonValue
 	private final String status;
 
 	/**
-	 * Constructs a new {@code UserStatus} enumeration instance with the specified string representation.
+	 * The single character code of the user status, stored in the database.
+	 */
+	private final String code;
+
+	/**
+	 * Constructs a new {@code UserStatus} enumeration instance with the specified string representation and database code.
 	 * @param status The string representation of the user status
+	 * @param code The database code of the user status
 	 */
-	private UserStatus(String status) {
+	private UserStatus(String status, String code) {
 		this.status = status;
+		this.code = code;
 	}
-}
 
+	/**
+	 * Returns the user status stored in the database with the given code.
+	 * @param code The database code of the user status
+	 * @return the user status with the given code
+	 * @throws IllegalArgumentException if no user status has the given code
+	 */
+	public static UserStatus fromCode(String code) {
+		for (UserStatus userStatus : values()) {
+			if (userStatus.code.equals(code)) {
+				return userStatus;
+			}
+		}
+		throw new IllegalArgumentException("Unknown user status code: " + code);
+	}
+}
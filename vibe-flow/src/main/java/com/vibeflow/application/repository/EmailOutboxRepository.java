@@ -0,0 +1,117 @@
+package com.vibeflow.application.repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vibeflow.application.model.EmailOutbox;
+import com.vibeflow.application.model.OutboxStatus;
+
+import jakarta.persistence.QueryHint;
+
+/**
+ * The EmailOutboxRepository interface extends the JpaRepository interface to provide database access methods for the emails of the outbox.
+ * 
+ * @author Denis
+ *
+ */
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+	/**
+	 * Locks a batch of emails with the given status whose next attempt is due.
+	 * The emails already locked by another relay are skipped, so concurrent relays never claim the same email.
+	 * It must be called in a transaction, which holds the locks until it ends.
+	 * 
+	 * @param status The name of the status of the emails to claim.
+	 * @param now The current UTC timestamp.
+	 * @param limit The maximum number of emails to claim.
+	 * @return The locked emails, the oldest due first.
+	 */
+	@Query(value = "SELECT * FROM email_outbox WHERE status = :status AND next_attempt_at <= CAST(:now AS DATETIME) "
+			+ "ORDER BY next_attempt_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	public List<EmailOutbox> findDueForUpdate(@Param("status") String status, @Param("now") Timestamp now, @Param("limit") int limit);
+	
+	/**
+	 * Marks the email with the given ID as sent, only if it is still pending under the given claim.
+	 * 
+	 * @param id The ID of the email.
+	 * @param claimToken The token of the claim of the relay worker.
+	 * @param sentAt The date when the email was sent.
+	 * @return The number of updated emails, zero if the claim was lost.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE EmailOutbox e SET e.status = com.vibeflow.application.model.OutboxStatus.SENT, e.sentAt = :sentAt, e.lastError = null, "
+			+ "e.claimToken = null WHERE e.id = :id AND e.claimToken = :claimToken AND e.status = com.vibeflow.application.model.OutboxStatus.PENDING")
+	public int markSent(@Param("id") long id, @Param("claimToken") String claimToken, @Param("sentAt") Timestamp sentAt);
+	
+	/**
+	 * Records a failed attempt to send the email with the given ID, only if it is still pending under the given claim.
+	 * 
+	 * @param id The ID of the email.
+	 * @param claimToken The token of the claim of the relay worker.
+	 * @param status The new status of the email, pending to retry it or dead to give up.
+	 * @param nextAttemptAt The date of the next attempt.
+	 * @param lastError The error of the failed attempt.
+	 * @return The number of updated emails, zero if the claim was lost.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE EmailOutbox e SET e.status = :status, e.nextAttemptAt = :nextAttemptAt, e.lastError = :lastError, e.claimToken = null "
+			+ "WHERE e.id = :id AND e.claimToken = :claimToken AND e.status = com.vibeflow.application.model.OutboxStatus.PENDING")
+	public int markFailed(@Param("id") long id, @Param("claimToken") String claimToken, @Param("status") OutboxStatus status,
+			@Param("nextAttemptAt") Timestamp nextAttemptAt, @Param("lastError") String lastError);
+	
+	/**
+	 * Gives back the claim of the email with the given ID without counting its attempt, because the email was never sent.
+	 * The email is only given back if it is still pending under the given claim.
+	 * 
+	 * @param id The ID of the email.
+	 * @param claimToken The token of the claim of the relay worker.
+	 * @param nextAttemptAt The date when the email is due again.
+	 * @return The number of updated emails, zero if the claim was lost.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE EmailOutbox e SET e.attempts = e.attempts - 1, e.nextAttemptAt = :nextAttemptAt, e.claimToken = null "
+			+ "WHERE e.id = :id AND e.claimToken = :claimToken AND e.status = com.vibeflow.application.model.OutboxStatus.PENDING")
+	public int release(@Param("id") long id, @Param("claimToken") String claimToken, @Param("nextAttemptAt") Timestamp nextAttemptAt);
+	
+	/**
+	 * Permanently deletes a bounded chunk of emails sent before the given date.
+	 * The statement is declared to touch only the outbox table, so it doesn't evict the second-level cache of the users.
+	 * 
+	 * @param status The name of the sent status.
+	 * @param before The exclusive upper bound of the sending date.
+	 * @param limit The maximum number of emails to delete.
+	 * @return The number of deleted emails.
+	 */
+	@Modifying
+	@Transactional
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "email_outbox"))
+	@Query(value = "DELETE FROM email_outbox WHERE status = :status AND sent_at < CAST(:before AS DATETIME) LIMIT :limit", nativeQuery = true)
+	public int deleteChunkBySentBefore(@Param("status") String status, @Param("before") Timestamp before, @Param("limit") int limit);
+	
+	/**
+	 * Counts the emails with the given status.
+	 * 
+	 * @param status The status of the emails.
+	 * @return The number of emails with the given status.
+	 */
+	public long countByStatus(OutboxStatus status);
+	
+	/**
+	 * Finds the emails sent to the given address.
+	 * 
+	 * @param emailAddress The email address of the recipient.
+	 * @return The emails of the outbox sent to the address.
+	 */
+	public List<EmailOutbox> findByEmailAddress(String emailAddress);
+}
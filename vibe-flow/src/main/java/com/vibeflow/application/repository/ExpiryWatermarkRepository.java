@@ -0,0 +1,14 @@
+package com.vibeflow.application.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.vibeflow.application.model.ExpiryWatermark;
+
+/**
+ * The ExpiryWatermarkRepository interface extends the JpaRepository interface to provide database access methods for the watermarks of the expiry jobs.
+ * 
+ * @author Denis
+ *
+ */
+public interface ExpiryWatermarkRepository extends JpaRepository<ExpiryWatermark, String> {
+}
@@ -0,0 +1,64 @@
+package com.vibeflow.application.repository;
+
+import java.sql.Timestamp;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vibeflow.application.model.JobLock;
+
+/**
+ * The JobLockRepository interface extends the JpaRepository interface to provide database access methods for the locks of the scheduled jobs.
+ * Every method is a single conditional update, so the database decides which node holds a lock.
+ * 
+ * @author Denis
+ *
+ */
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+	/**
+	 * Acquires the lock of the given job if its lease has ended.
+	 * 
+	 * @param name The name of the job.
+	 * @param owner The node acquiring the lock.
+	 * @param now The current UTC timestamp.
+	 * @param lockedUntil The date when the lease ends.
+	 * @return 1 if the lock was acquired, 0 if another node holds it.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE JobLock l SET l.owner = :owner, l.lockedAt = :now, l.lockedUntil = :lockedUntil WHERE l.name = :name AND l.lockedUntil <= :now")
+	public int acquire(@Param("name") String name, @Param("owner") String owner, @Param("now") Timestamp now,
+			@Param("lockedUntil") Timestamp lockedUntil);
+
+	/**
+	 * Extends the lease of the lock of the given job, if the given node still holds it.
+	 * 
+	 * @param name The name of the job.
+	 * @param owner The node holding the lock.
+	 * @param now The current UTC timestamp.
+	 * @param lockedUntil The new date when the lease ends.
+	 * @return 1 if the lease was extended, 0 if the node lost the lock.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE JobLock l SET l.lockedUntil = :lockedUntil WHERE l.name = :name AND l.owner = :owner AND l.lockedUntil > :now")
+	public int renew(@Param("name") String name, @Param("owner") String owner, @Param("now") Timestamp now,
+			@Param("lockedUntil") Timestamp lockedUntil);
+
+	/**
+	 * Releases the lock of the given job at the given date, if the given node holds it.
+	 * 
+	 * @param name The name of the job.
+	 * @param owner The node holding the lock.
+	 * @param lockedUntil The date when the lease ends, the current UTC timestamp to release the lock at once.
+	 * @return 1 if the lock was released, 0 if the node didn't hold it.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE JobLock l SET l.lockedUntil = :lockedUntil WHERE l.name = :name AND l.owner = :owner")
+	public int release(@Param("name") String name, @Param("owner") String owner, @Param("lockedUntil") Timestamp lockedUntil);
+}
@@ -0,0 +1,46 @@
+package com.vibeflow.application.repository;
+
+import java.sql.Timestamp;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vibeflow.application.model.PurgeReminder;
+import com.vibeflow.application.model.PurgeReminderId;
+
+/**
+ * The PurgeReminderRepository interface extends the JpaRepository interface to provide database access methods for the purge reminders.
+ * 
+ * @author Denis
+ *
+ */
+public interface PurgeReminderRepository extends JpaRepository<PurgeReminder, PurgeReminderId> {
+
+	/**
+	 * Records a queued reminder with a single insert, without reading it first.
+	 * The key of the table rejects a second reminder for the same deadline.
+	 * 
+	 * @param userId The id of the reminded user.
+	 * @param type The type of the reminder email.
+	 * @param referenceDate The deletion or registration date of the user.
+	 * @param createdAt The current UTC timestamp.
+	 * @return The number of inserted reminders.
+	 */
+	@Modifying
+	@Transactional
+	@Query(value = "INSERT INTO purge_reminder (user_id, type, reference_date, created_at) "
+			+ "VALUES (:userId, :type, CAST(:referenceDate AS DATETIME), CAST(:createdAt AS DATETIME))", nativeQuery = true)
+	public int insert(@Param("userId") int userId, @Param("type") String type, @Param("referenceDate") Timestamp referenceDate,
+			@Param("createdAt") Timestamp createdAt);
+
+	/**
+	 * Counts the reminders of the given type.
+	 * 
+	 * @param type The type of the reminder email.
+	 * @return The number of reminders of the type.
+	 */
+	public long countByType(String type);
+}
@@ -0,0 +1,87 @@
+package com.vibeflow.application.repository;
+
+import java.sql.Timestamp;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vibeflow.application.model.RefreshToken;
+
+import jakarta.persistence.QueryHint;
+
+/**
+ * The RefreshTokenRepository interface extends the JpaRepository interface to provide database access methods for the refresh tokens.
+ * 
+ * @author Denis
+ *
+ */
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+	/**
+	 * Revokes the token with the given hash, only if it is not revoked yet.
+	 * It is a single conditional update, so of two concurrent uses of the same token only one succeeds.
+	 * 
+	 * @param tokenHash The hash of the token.
+	 * @param now The current UTC timestamp.
+	 * @return The number of revoked tokens, zero if the token was already revoked.
+	 */
+	@Modifying(clearAutomatically = true, flushAutomatically = true)
+	@Transactional
+	@Query("UPDATE RefreshToken t SET t.revokedAt = :now WHERE t.tokenHash = :tokenHash AND t.revokedAt IS NULL")
+	public int revoke(@Param("tokenHash") String tokenHash, @Param("now") Timestamp now);
+
+	/**
+	 * Revokes all the tokens of the given user which are not revoked yet.
+	 * 
+	 * @param userId The id of the user.
+	 * @param now The current UTC timestamp.
+	 * @return The number of revoked tokens.
+	 */
+	@Modifying(clearAutomatically = true, flushAutomatically = true)
+	@Transactional
+	@Query("UPDATE RefreshToken t SET t.revokedAt = :now WHERE t.userId = :userId AND t.revokedAt IS NULL")
+	public int revokeAllByUserId(@Param("userId") int userId, @Param("now") Timestamp now);
+
+	/**
+	 * Deletes the tokens of the given user which expired before the given timestamp.
+	 * 
+	 * @param userId The id of the user.
+	 * @param before The exclusive upper bound of the expiry date.
+	 * @return The number of deleted tokens.
+	 */
+	@Modifying
+	@Transactional
+	@Query("DELETE FROM RefreshToken t WHERE t.userId = :userId AND t.expiresAt < :before")
+	public int deleteExpired(@Param("userId") int userId, @Param("before") Timestamp before);
+
+	/**
+	 * Permanently deletes a bounded chunk of the tokens, of all the users, which expired before the given timestamp.
+	 * 
+	 * @param before The exclusive upper bound of the expiry date.
+	 * @param limit The maximum number of tokens to delete.
+	 * @return The number of deleted tokens.
+	 */
+	@Modifying
+	@Transactional
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "refresh_token"))
+	@Query(value = "DELETE FROM refresh_token WHERE expires_at < CAST(:before AS DATETIME) LIMIT :limit", nativeQuery = true)
+	public int deleteChunkByExpiresAtBefore(@Param("before") Timestamp before, @Param("limit") int limit);
+
+	/**
+	 * Permanently deletes a bounded chunk of the tokens, of all the users, which were revoked before the given timestamp.
+	 * 
+	 * @param before The exclusive upper bound of the revocation date.
+	 * @param limit The maximum number of tokens to delete.
+	 * @return The number of deleted tokens.
+	 */
+	@Modifying
+	@Transactional
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "refresh_token"))
+	@Query(value = "DELETE FROM refresh_token WHERE revoked_at < CAST(:before AS DATETIME) LIMIT :limit", nativeQuery = true)
+	public int deleteChunkByRevokedAtBefore(@Param("before") Timestamp before, @Param("limit") int limit);
+}
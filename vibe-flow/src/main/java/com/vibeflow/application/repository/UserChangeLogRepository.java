@@ -0,0 +1,82 @@
+package com.vibeflow.application.repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vibeflow.application.model.UserChangeLog;
+
+import jakarta.persistence.QueryHint;
+
+/**
+ * Repository interface for the change log of the users.
+ * The statements writing the change log are declared to touch only its table, so they don't evict the second-level cache of the users.
+ * 
+ * @author Denis
+ */
+public interface UserChangeLogRepository extends JpaRepository<UserChangeLog, Long> {
+
+	/**
+	 * Appends the current state of the given users to the change log, with a single statement reading the users table.
+	 * It runs in the transaction of the change, so the logged version is the version written by the change.
+	 * 
+	 * @param ids The ids of the changed users.
+	 * @param deleted Whether the users are about to be deleted.
+	 * @param changedAt The date of the change.
+	 * @return The number of logged changes.
+	 */
+	@Modifying
+	@Transactional
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_change_log"))
+	@Query(value = "INSERT INTO user_change_log (user_id, email, version, deleted, changed_at) "
+			+ "SELECT id, email, version, :deleted, CAST(:changedAt AS DATETIME) FROM users WHERE id IN (:ids)", nativeQuery = true)
+	public int logChanges(@Param("ids") Collection<Integer> ids, @Param("deleted") boolean deleted, @Param("changedAt") Timestamp changedAt);
+
+	/**
+	 * Finds a page of the changes logged after the given change, in the order they were logged.
+	 * 
+	 * @param id The id of the last change already read.
+	 * @param pageable The size of the page.
+	 * @return The changes of the page.
+	 */
+	public List<UserChangeLog> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+	/**
+	 * Finds the changes logged since the given date which are not after the given change, a range scan of the index of the dates.
+	 * 
+	 * @param changedAt The inclusive lower bound of the date of the changes.
+	 * @param id The id of the last change to read.
+	 * @return The changes logged since the date.
+	 */
+	public List<UserChangeLog> findByChangedAtGreaterThanEqualAndIdLessThanEqual(Timestamp changedAt, long id);
+
+	/**
+	 * Returns the id of the last logged change.
+	 * 
+	 * @return The highest id of the change log, or zero if it is empty.
+	 */
+	@Query("SELECT COALESCE(MAX(c.id), 0) FROM UserChangeLog c")
+	public long findMaxId();
+
+	/**
+	 * Permanently deletes a bounded chunk of the changes logged before the given date.
+	 * 
+	 * @param before The exclusive upper bound of the date of the changes.
+	 * @param limit The maximum number of changes to delete.
+	 * @return The number of deleted changes.
+	 */
+	@Modifying
+	@Transactional
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_change_log"))
+	@Query(value = "DELETE FROM user_change_log WHERE changed_at < CAST(:before AS DATETIME) LIMIT :limit", nativeQuery = true)
+	public int deleteChunkByChangedAtBefore(@Param("before") Timestamp before, @Param("limit") int limit);
+}
@@ -1,10 +1,19 @@
 package com.vibeflow.application.repository;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.vibeflow.application.dto.ReminderCandidate;
 import com.vibeflow.application.model.User;
+import com.vibeflow.application.model.UserStatus;
 
 
 /**
@@ -13,33 +22,22 @@ import com.vibeflow.application.model.User;
  * The UserRepository interface extends the JpaRepository interface to provide database access methods for the User entity.
  *
  * It handles CRUD operations for User objects. 
+ * 
+ * The conditional updates are bulk JPQL statements, which bypass the second-level cache: they don't evict the updated user by id,
+ * Hibernate implicitly invalidates the whole User region when one of them is executed. The native statements don't declare
+ * the tables they touch, so Hibernate invalidates every region when one of them is executed.
  * @author Denis
  *
  */
 
-public interface UserRepository extends JpaRepository<User, Integer> {
+public interface UserRepository extends JpaRepository<User, Integer>, UserRepositoryCustom {
 
-	/**
-	 * Checks if a User entity with the provided email exists in the database.
-	 *
-	 * @param email The email to check for in the database.
-	 * @return A boolean value representing whether a User with the provided email exists.
-	 */
-	boolean existsByEmail(String email);
-
-	/**
-	 * Finds a User entity in the database by the provided email.
-	 * @param email The email of the User entity to find in the database.
-	 * @return A User entity that matches the provided email, or null if no matching User entity is found.
-	 */
-	public User findByEmail(String email);
-	
 	/**
 	 * Finds a User entity in the database by status
 	 * @param status The status of the User entity to find in the database
 	 * @return A User entity that matches the provided status
 	 */
-	public List<User> findByStatus(String status);
+	public List<User> findByStatus(UserStatus status);
 	
 	/**
 	 * Retrieves a User entity from the database by the provided ID.
@@ -48,5 +46,146 @@ public interface UserRepository extends JpaRepository<User, Integer> {
 	 * @return A User entity with the provided ID, or null if no such User entity exists.
 	 */
 	public User findById(int id);
+	
+	/**
+	 * Updates the name of the user with the given ID.
+	 * 
+	 * @param id The ID of the user to update.
+	 * @param name The new name of the user.
+	 * @return The number of updated users.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Transactional
+	@Query("UPDATE User u SET u.name = :name, u.version = u.version + 1 WHERE u.id = :id")
+	public int updateName(@Param("id") int id, @Param("name") String name);
+	
+	/**
+	 * Updates the password of the user with the given ID, only if the stored password hash is still the expected one.
+	 * 
+	 * @param id The ID of the user to update.
+	 * @param oldPassword The password hash the user is expected to have.
+	 * @param newPassword The new password hash of the user.
+	 * @return The number of updated users, zero if the password was changed in the meantime.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Transactional
+	@Query("UPDATE User u SET u.password = :newPassword, u.version = u.version + 1 WHERE u.id = :id AND u.password = :oldPassword")
+	public int updatePassword(@Param("id") int id, @Param("oldPassword") String oldPassword, @Param("newPassword") String newPassword);
+	
+	/**
+	 * Updates the status of the user with the given ID, only if the user currently has the expected status.
+	 * 
+	 * @param id The ID of the user to update.
+	 * @param expectedStatus The status the user is expected to have.
+	 * @param newStatus The new status of the user.
+	 * @return The number of updated users, zero if the user doesn't have the expected status.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Transactional
+	@Query("UPDATE User u SET u.status = :newStatus, u.version = u.version + 1 WHERE u.id = :id AND u.status = :expectedStatus")
+	public int updateStatus(@Param("id") int id, @Param("expectedStatus") UserStatus expectedStatus, @Param("newStatus") UserStatus newStatus);
+	
+	/**
+	 * Updates the status and the deletion date of the user with the given ID, only if the user currently has the expected status.
+	 * 
+	 * @param id The ID of the user to update.
+	 * @param expectedStatus The status the user is expected to have.
+	 * @param newStatus The new status of the user.
+	 * @param deletionDate The new deletion date of the user, or null to clear it.
+	 * @return The number of updated users, zero if the user doesn't have the expected status.
+	 */
+	@Modifying(flushAutomatically = true)
+	@Transactional
+	@Query("UPDATE User u SET u.status = :newStatus, u.deletionDate = :deletionDate, u.version = u.version + 1 WHERE u.id = :id AND u.status = :expectedStatus")
+	public int updateStatusAndDeletionDate(@Param("id") int id, @Param("expectedStatus") UserStatus expectedStatus,
+			@Param("newStatus") UserStatus newStatus, @Param("deletionDate") Timestamp deletionDate);
+	
+	/**
+	 * Finds a page of the users with the given status whose deletion date is within the given range and who were not reminded
+	 * of the deadline computed from their current deletion date.
+	 * The page starts right after the given (deletion date, id) cursor and holds only the columns of the reminder.
+	 * 
+	 * @param status The status of the users to find.
+	 * @param from The exclusive lower bound of the deletion date.
+	 * @param to The inclusive upper bound of the deletion date.
+	 * @param type The type of the reminder email.
+	 * @param lastDate The deletion date of the last user of the previous page, or the lower bound for the first page.
+	 * @param lastId The id of the last user of the previous page, or zero for the first page.
+	 * @param pageable The size of the page.
+	 * @return The users of the page, ordered by deletion date and id.
+	 */
+	@Query("SELECT new com.vibeflow.application.dto.ReminderCandidate(u.id, u.name, u.email, u.deletionDate) FROM User u "
+			+ "WHERE u.status = :status AND u.deletionDate > :from AND u.deletionDate <= :to AND u.deletionDate >= :lastDate "
+			+ "AND (u.deletionDate > :lastDate OR u.id > :lastId) "
+			+ "AND NOT EXISTS (SELECT r FROM PurgeReminder r WHERE r.userId = u.id AND r.type = :type AND r.referenceDate = u.deletionDate) "
+			+ "ORDER BY u.deletionDate, u.id")
+	public List<ReminderCandidate> findDeletionReminderCandidates(@Param("status") UserStatus status, @Param("from") Timestamp from,
+			@Param("to") Timestamp to, @Param("type") String type, @Param("lastDate") Timestamp lastDate, @Param("lastId") int lastId,
+			Pageable pageable);
+	
+	/**
+	 * Finds a page of the users with the given status whose registration date is within the given range and who were not reminded
+	 * to confirm their email.
+	 * The page starts right after the given (registration date, id) cursor and holds only the columns of the reminder.
+	 * 
+	 * @param status The status of the users to find.
+	 * @param from The exclusive lower bound of the registration date.
+	 * @param to The inclusive upper bound of the registration date.
+	 * @param type The type of the reminder email.
+	 * @param lastDate The registration date of the last user of the previous page, or the lower bound for the first page.
+	 * @param lastId The id of the last user of the previous page, or zero for the first page.
+	 * @param pageable The size of the page.
+	 * @return The users of the page, ordered by registration date and id.
+	 */
+	@Query("SELECT new com.vibeflow.application.dto.ReminderCandidate(u.id, u.name, u.email, u.registrationDate) FROM User u "
+			+ "WHERE u.status = :status AND u.registrationDate > :from AND u.registrationDate <= :to AND u.registrationDate >= :lastDate "
+			+ "AND (u.registrationDate > :lastDate OR u.id > :lastId) "
+			+ "AND NOT EXISTS (SELECT r FROM PurgeReminder r WHERE r.userId = u.id AND r.type = :type AND r.referenceDate = u.registrationDate) "
+			+ "ORDER BY u.registrationDate, u.id")
+	public List<ReminderCandidate> findConfirmationReminderCandidates(@Param("status") UserStatus status, @Param("from") Timestamp from,
+			@Param("to") Timestamp to, @Param("type") String type, @Param("lastDate") Timestamp lastDate, @Param("lastId") int lastId,
+			Pageable pageable);
+	
+	/**
+	 * Finds and locks a bounded chunk of users with the given status whose deletion date is within the given range.
+	 * The statement reads an index range on the deletion date, so an incremental run only touches the users expired since the previous run.
+	 * The chunk stays locked until the end of the transaction, so it cannot change before it is deleted.
+	 * 
+	 * @param status The database code of the status of the users to delete.
+	 * @param from The exclusive lower bound of the deletion date.
+	 * @param cutoff The inclusive upper bound of the deletion date.
+	 * @param limit The maximum number of users to find.
+	 * @return The ids of the users of the chunk.
+	 */
+	@Query(value = "SELECT id FROM users WHERE status_code = :status AND deletion_date > CAST(:from AS DATETIME) "
+			+ "AND deletion_date <= CAST(:cutoff AS DATETIME) ORDER BY deletion_date, id LIMIT :limit FOR UPDATE", nativeQuery = true)
+	public List<Integer> lockChunkByDeletionDateBetween(@Param("status") String status, @Param("from") Timestamp from,
+			@Param("cutoff") Timestamp cutoff, @Param("limit") int limit);
+	
+	/**
+	 * Finds and locks a bounded chunk of users with the given status whose registration date is within the given range.
+	 * The statement reads an index range on the registration date, so an incremental run only touches the users expired since the previous run.
+	 * The chunk stays locked until the end of the transaction, so it cannot change before it is deleted.
+	 * 
+	 * @param status The database code of the status of the users to delete.
+	 * @param from The exclusive lower bound of the registration date.
+	 * @param cutoff The inclusive upper bound of the registration date.
+	 * @param limit The maximum number of users to find.
+	 * @return The ids of the users of the chunk.
+	 */
+	@Query(value = "SELECT id FROM users WHERE status_code = :status AND registration_date > CAST(:from AS DATETIME) "
+			+ "AND registration_date <= CAST(:cutoff AS DATETIME) ORDER BY registration_date, id LIMIT :limit FOR UPDATE", nativeQuery = true)
+	public List<Integer> lockChunkByRegistrationDateBetween(@Param("status") String status, @Param("from") Timestamp from,
+			@Param("cutoff") Timestamp cutoff, @Param("limit") int limit);
+	
+	/**
+	 * Permanently deletes the users with the given ids, with a single statement on the primary key.
+	 * 
+	 * @param ids The ids of the users to delete.
+	 * @return The number of deleted users.
+	 */
+	@Modifying
+	@Transactional
+	@Query(value = "DELETE FROM users WHERE id IN (:ids)", nativeQuery = true)
+	public int deleteByIds(@Param("ids") Collection<Integer> ids);
 }
-
@@ -0,0 +1,20 @@
+package com.vibeflow.application.repository;
+
+import com.vibeflow.application.model.User;
+
+/**
+ * Custom queries of the UserRepository that cannot be derived by Spring Data.
+ * 
+ * @author Denis
+ */
+public interface UserRepositoryCustom {
+
+	/**
+	 * Finds a User entity by the provided email, which is the natural id of the user.
+	 * The lookup goes through the second-level cache before querying the database.
+	 * 
+	 * @param email The email of the User entity to find in the database.
+	 * @return A User entity that matches the provided email, or null if no matching User entity is found.
+	 */
+	public User findByEmail(String email);
+}
@@ -0,0 +1,34 @@
+package com.vibeflow.application.repository;
+
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vibeflow.application.model.User;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Implementation of the custom queries of the UserRepository.
+ * 
+ * @author Denis
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+	/**
+	 * The entity manager used to access the Hibernate session.
+	 */
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public User findByEmail(String email) {
+		return entityManager.unwrap(Session.class)
+				.bySimpleNaturalId(User.class)
+				.load(email);
+	}
+}
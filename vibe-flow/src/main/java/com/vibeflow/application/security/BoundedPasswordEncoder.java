@@ -0,0 +1,165 @@
+package com.vibeflow.application.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.vibeflow.application.exception.ServerBusyException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Password encoder that runs the hashing of a delegate encoder on a dedicated, bounded pool of threads.
+ * The request threads only wait for the result, so a burst of logins cannot occupy every request thread with hashing.
+ * When the queue in front of the pool is full, the hashing is rejected right away with a {@link ServerBusyException}.
+ * 
+ * @author Denis
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+	/**
+	 * The encoder doing the hashing.
+	 */
+	private final PasswordEncoder delegate;
+
+	/**
+	 * The pool of threads hashing the passwords.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * The number of seconds a rejected client is asked to wait before retrying.
+	 */
+	private final int retryAfterSeconds;
+
+	/**
+	 * The time a hashing request waits in the queue.
+	 */
+	private final Timer queueWaitTimer;
+
+	/**
+	 * The time spent hashing a new password.
+	 */
+	private final Timer encodeTimer;
+
+	/**
+	 * The time spent matching a password against a hash.
+	 */
+	private final Timer matchesTimer;
+
+	/**
+	 * The number of hashing requests rejected because the queue was full.
+	 */
+	private final Counter rejectedCounter;
+
+	/**
+	 * Creates the encoder and registers its metrics.
+	 * 
+	 * @param delegate the encoder doing the hashing
+	 * @param threads the number of hashing threads
+	 * @param queueCapacity the maximum number of hashing requests waiting for a thread
+	 * @param retryAfterSeconds the number of seconds a rejected client is asked to wait before retrying
+	 * @param meterRegistry the registry of the metrics
+	 */
+	public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, int retryAfterSeconds,
+			MeterRegistry meterRegistry) {
+		this.delegate = delegate;
+		this.retryAfterSeconds = retryAfterSeconds;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"),
+				new ThreadPoolExecutor.AbortPolicy());
+
+		this.queueWaitTimer = Timer.builder("vibeflow.password.hashing.queue.wait")
+				.description("Time a password hashing request waits for a hashing thread")
+				.register(meterRegistry);
+		this.encodeTimer = Timer.builder("vibeflow.password.hashing.duration")
+				.description("Time spent hashing a password")
+				.tag("operation", "encode")
+				.register(meterRegistry);
+		this.matchesTimer = Timer.builder("vibeflow.password.hashing.duration")
+				.description("Time spent hashing a password")
+				.tag("operation", "matches")
+				.register(meterRegistry);
+		meterRegistry.gauge("vibeflow.password.hashing.queue.size", executor, pool -> pool.getQueue().size());
+		this.rejectedCounter = Counter.builder("vibeflow.password.hashing.rejected")
+				.description("Number of password hashing requests rejected because the queue was full")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Hashes the given password on the hashing pool.
+	 * 
+	 * @throws ServerBusyException if the hashing queue is full
+	 */
+	@Override
+	public String encode(CharSequence rawPassword) {
+		return execute(() -> delegate.encode(rawPassword), encodeTimer);
+	}
+
+	/**
+	 * Matches the given password against the hash on the hashing pool.
+	 * 
+	 * @throws ServerBusyException if the hashing queue is full
+	 */
+	@Override
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return execute(() -> delegate.matches(rawPassword, encodedPassword), matchesTimer);
+	}
+
+	/**
+	 * Checks if the hash should be encoded again. It doesn't hash, so it runs on the calling thread.
+	 */
+	@Override
+	public boolean upgradeEncoding(String encodedPassword) {
+		return delegate.upgradeEncoding(encodedPassword);
+	}
+
+	/**
+	 * Submits the given hashing to the pool and waits for its result.
+	 */
+	private <T> T execute(Callable<T> hashing, Timer hashingTimer) {
+		long submitted = System.nanoTime();
+		Future<T> result;
+
+		try {
+			result = executor.submit(() -> {
+				queueWaitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+				return hashingTimer.recordCallable(hashing);
+			});
+		} catch (RejectedExecutionException e) {
+			rejectedCounter.increment();
+			throw new ServerBusyException(retryAfterSeconds);
+		}
+
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.cancel(true);
+			throw new IllegalStateException("Interrupted while waiting for the password hashing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw new IllegalStateException("The password hashing failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the hashing pool when the application context is closed.
+	 */
+	@Override
+	public void destroy() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,86 @@
+package com.vibeflow.application.security;
+
+import java.time.Duration;
+
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded and expiring cache of the user details loaded by the logins, keyed by email, so the repeated logins of an account
+ * don't query the database. The cache holds copies of the principals and hands out copies,
+ * because the authentication erases the password of the principal it returns.
+ * The entries are evicted by the {@code UserService} whenever the user changes, and expire after the time to live otherwise.
+ * Its hits, misses and evictions are exported as the metrics of the "user-details" cache.
+ *
+ * @author Denis
+ */
+public class CaffeineUserCache implements UserCache {
+
+	/**
+	 * The name of the cache in the metrics.
+	 */
+	public static final String CACHE_NAME = "user-details";
+
+	/**
+	 * The cached principals, keyed by email.
+	 */
+	private final Cache<String, VibeFlowUserPrincipal> cache;
+
+	/**
+	 * Creates the cache and registers its metrics.
+	 *
+	 * @param maximumSize the maximum number of cached users
+	 * @param timeToLive the time after which a cached user is loaded again
+	 * @param meterRegistry the registry of the cache metrics
+	 */
+	public CaffeineUserCache(long maximumSize, Duration timeToLive, MeterRegistry meterRegistry) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(timeToLive)
+				.recordStats()
+				.build();
+
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+	}
+
+	/**
+	 * Returns a copy of the cached principal of the given email.
+	 */
+	@Override
+	public UserDetails getUserFromCache(String username) {
+		VibeFlowUserPrincipal principal = cache.getIfPresent(username);
+
+		return principal == null ? null : principal.copy();
+	}
+
+	/**
+	 * Caches a copy of the given principal. The user details of any other type are not cached.
+	 */
+	@Override
+	public void putUserInCache(UserDetails user) {
+		if (user instanceof VibeFlowUserPrincipal principal && principal.getPassword() != null) {
+			cache.put(principal.getUsername(), principal.copy());
+		}
+	}
+
+	/**
+	 * Evicts the cached principal of the given email.
+	 */
+	@Override
+	public void removeUserFromCache(String username) {
+		cache.invalidate(username);
+	}
+
+	/**
+	 * Evicts all the cached principals.
+	 */
+	public void clear() {
+		cache.invalidateAll();
+	}
+}
@@ -0,0 +1,150 @@
+package com.vibeflow.application.security;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.vibeflow.application.model.User;
+import com.vibeflow.application.model.UserStatus;
+
+/**
+ * Serializer of the attributes of the sessions stored in the database.
+ * The security context of a logged in user is written as the fields of its principal snapshot, a few dozen bytes
+ * instead of the kilobyte of its Java serialization. Any other attribute falls back to the Java serialization.
+ * The details of the authentication are not kept: they are only read during the login.
+ *
+ * @author Denis
+ */
+public class CompactSessionSerializer implements Serializer<Object>, Deserializer<Object> {
+
+	/**
+	 * The format of an attribute written with the Java serialization.
+	 */
+	private static final int JAVA_FORMAT = 0;
+
+	/**
+	 * The format of a security context written as the fields of its principal.
+	 */
+	private static final int SECURITY_CONTEXT_FORMAT = 1;
+
+	/**
+	 * The serializer of the other attributes.
+	 */
+	private final DefaultSerializer javaSerializer = new DefaultSerializer();
+
+	/**
+	 * The deserializer of the other attributes.
+	 */
+	private final DefaultDeserializer javaDeserializer;
+
+	/**
+	 * Creates the serializer, loading the classes of the other attributes with the given class loader.
+	 *
+	 * @param classLoader the class loader of the attributes written with the Java serialization
+	 */
+	public CompactSessionSerializer(ClassLoader classLoader) {
+		this.javaDeserializer = new DefaultDeserializer(classLoader);
+	}
+
+	/**
+	 * Writes the given attribute, in the compact format if it is the security context of a logged in user.
+	 */
+	@Override
+	public void serialize(Object attribute, OutputStream outputStream) throws IOException {
+		if (attribute instanceof SecurityContext context
+				&& context.getAuthentication() instanceof UsernamePasswordAuthenticationToken authentication
+				&& authentication.getPrincipal() instanceof VibeFlowUserPrincipal principal
+				&& authentication.getAuthorities().isEmpty()) {
+			DataOutputStream output = new DataOutputStream(outputStream);
+			output.writeByte(SECURITY_CONTEXT_FORMAT);
+			output.writeInt(principal.getId());
+			output.writeUTF(principal.getUsername());
+			writeNullableString(output, principal.getName());
+			writeNullableTimestamp(output, principal.getRegistrationDate());
+			writeNullableString(output, principal.getStatus() == null ? null : principal.getStatus().getCode());
+			writeNullableTimestamp(output, principal.getDeletionDate());
+			output.writeInt(principal.getVersion() == null ? -1 : principal.getVersion());
+			output.flush();
+			return;
+		}
+
+		outputStream.write(JAVA_FORMAT);
+		javaSerializer.serialize(attribute, outputStream);
+	}
+
+	/**
+	 * Reads an attribute written by {@link #serialize(Object, OutputStream)}.
+	 */
+	@Override
+	public Object deserialize(InputStream inputStream) throws IOException {
+		int format = inputStream.read();
+
+		if (format != SECURITY_CONTEXT_FORMAT) {
+			return javaDeserializer.deserialize(inputStream);
+		}
+
+		DataInputStream input = new DataInputStream(inputStream);
+		User user = new User();
+		user.setId(input.readInt());
+		user.setEmail(input.readUTF());
+		user.setName(readNullableString(input));
+		user.setRegistrationDate(readNullableTimestamp(input));
+		String status = readNullableString(input);
+		user.setStatus(status == null ? null : UserStatus.fromCode(status));
+		user.setDeletionDate(readNullableTimestamp(input));
+		int version = input.readInt();
+		user.setVersion(version == -1 ? null : version);
+
+		VibeFlowUserPrincipal principal = new VibeFlowUserPrincipal(user);
+		principal.eraseCredentials();
+
+		SecurityContext context = SecurityContextHolder.createEmptyContext();
+		context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+		return context;
+	}
+
+	/**
+	 * Writes a string which may be null.
+	 */
+	private void writeNullableString(DataOutputStream output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	/**
+	 * Reads a string written by {@link #writeNullableString(DataOutputStream, String)}.
+	 */
+	private String readNullableString(DataInputStream input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+
+	/**
+	 * Writes a timestamp which may be null.
+	 */
+	private void writeNullableTimestamp(DataOutputStream output, Timestamp value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeLong(value.getTime());
+		}
+	}
+
+	/**
+	 * Reads a timestamp written by {@link #writeNullableTimestamp(DataOutputStream, Timestamp)}.
+	 */
+	private Timestamp readNullableTimestamp(DataInputStream input) throws IOException {
+		return input.readBoolean() ? new Timestamp(input.readLong()) : null;
+	}
+}
@@ -2,11 +2,14 @@ package com.vibeflow.application.security;
 
 import java.io.IOException;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
 
 import com.vibeflow.application.exception.EmailNotConfirmedException;
+import com.vibeflow.application.exception.ServerBusyException;
 import com.vibeflow.application.type.UrlAnchor;
 
 import jakarta.servlet.ServletException;
@@ -24,10 +27,17 @@ public class CustomAuthenticationFailureHandler extends SimpleUrlAuthenticationF
 	
 	/**
 	 * Method to differentiate the failure URL based on the type of {@code AuthenticationException} received. 
+	 * A login rejected because the password hashing queue is full gets a 503 response with a Retry-After header.
 	 */
     @Override
     public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
                                         AuthenticationException exception) throws IOException, ServletException {
+        if (exception instanceof ServerBusyException serverBusyException) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(serverBusyException.getRetryAfterSeconds()));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), exception.getMessage());
+            return;
+        }
+
         if (exception instanceof BadCredentialsException) {
             setDefaultFailureUrl(UrlAnchor.INVALID_USER.getAnchor());
         }   else if (exception instanceof EmailNotConfirmedException) {
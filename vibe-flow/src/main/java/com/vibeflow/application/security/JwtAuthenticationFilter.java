@@ -0,0 +1,76 @@
+package com.vibeflow.application.security;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.vibeflow.application.service.JwtService;
+
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Filter authenticating the requests carrying an access token in their Authorization header.
+ * The principal is built from the claims of the token, so the request needs neither a session nor a database lookup.
+ * The security context is not saved, so these requests never create a session.
+ *
+ * @author Denis
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+	/**
+	 * The prefix of the Authorization header carrying an access token.
+	 */
+	private static final String BEARER_PREFIX = "Bearer ";
+
+	/**
+	 * The JWT service verifying the access tokens.
+	 */
+	private final JwtService jwtService;
+
+	/**
+	 * Creates the filter verifying the access tokens with the given service.
+	 *
+	 * @param jwtService the JWT service verifying the access tokens
+	 */
+	public JwtAuthenticationFilter(JwtService jwtService) {
+		this.jwtService = jwtService;
+	}
+
+	/**
+	 * Authenticates the request with its access token, or rejects it with a 401 response if the token is invalid or expired.
+	 * The requests without an access token are passed on unchanged.
+	 */
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+
+		if (header == null || !header.startsWith(BEARER_PREFIX)) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		VibeFlowUserPrincipal principal;
+		try {
+			principal = new VibeFlowUserPrincipal(jwtService.parseAccessToken(header.substring(BEARER_PREFIX.length())));
+		} catch (JwtException | IllegalArgumentException e) {
+			response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+			response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+			return;
+		}
+
+		SecurityContext context = SecurityContextHolder.createEmptyContext();
+		context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+		SecurityContextHolder.setContext(context);
+
+		filterChain.doFilter(request, response);
+	}
+}
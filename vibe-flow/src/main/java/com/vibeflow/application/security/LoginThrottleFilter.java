@@ -0,0 +1,158 @@
+package com.vibeflow.application.security;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.vibeflow.application.utility.TokenBucketLimiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Filter limiting the login attempts by client address, by submitted email from that address and by submitted email,
+ * before the authentication filter, so a throttled attempt costs neither a database lookup nor a password hash.
+ * The tight bucket of an email is kept per client address, so the failed attempts of another client can't lock its user out,
+ * while the looser bucket of the account bounds the guesses spread over many addresses.
+ * The client address is the one resolved by the forwarded headers of the trusted proxies.
+ * A throttled attempt gets a 429 response with a Retry-After header.
+ * The token requests of the stateless authentication carry the email in their body, so they are only limited by address.
+ *
+ * @author Denis
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+	/**
+	 * The path of the form login, which carries the email as a parameter.
+	 */
+	private static final String FORM_LOGIN_PATH = "/login";
+
+	/**
+	 * The paths of the login attempts.
+	 */
+	private static final Set<String> LOGIN_PATHS = Set.of(FORM_LOGIN_PATH, "/api/auth/token");
+
+	/**
+	 * The buckets of the client addresses.
+	 */
+	private final TokenBucketLimiter addressLimiter;
+
+	/**
+	 * The buckets of the submitted emails, per client address.
+	 */
+	private final TokenBucketLimiter emailLimiter;
+
+	/**
+	 * The buckets of the submitted emails, whatever the client address.
+	 */
+	private final TokenBucketLimiter accountLimiter;
+
+	/**
+	 * Counts the attempts let through.
+	 */
+	private final Counter allowed;
+
+	/**
+	 * Counts the attempts throttled by the bucket of their address.
+	 */
+	private final Counter throttledByAddress;
+
+	/**
+	 * Counts the attempts throttled by the bucket of their email from their address.
+	 */
+	private final Counter throttledByEmail;
+
+	/**
+	 * Counts the attempts throttled by the bucket of their account.
+	 */
+	private final Counter throttledByAccount;
+
+	/**
+	 * Creates the filter with the given limiters and registers its metrics.
+	 *
+	 * @param addressLimiter the buckets of the client addresses
+	 * @param emailLimiter the buckets of the submitted emails, per client address
+	 * @param accountLimiter the buckets of the submitted emails, whatever the client address
+	 * @param meterRegistry the registry of the metrics
+	 */
+	public LoginThrottleFilter(TokenBucketLimiter addressLimiter, TokenBucketLimiter emailLimiter, TokenBucketLimiter accountLimiter,
+			MeterRegistry meterRegistry) {
+		this.addressLimiter = addressLimiter;
+		this.emailLimiter = emailLimiter;
+		this.accountLimiter = accountLimiter;
+		this.allowed = meterRegistry.counter("vibeflow.login.attempts", "outcome", "allowed");
+		this.throttledByAddress = meterRegistry.counter("vibeflow.login.attempts", "outcome", "throttled-address");
+		this.throttledByEmail = meterRegistry.counter("vibeflow.login.attempts", "outcome", "throttled-email");
+		this.throttledByAccount = meterRegistry.counter("vibeflow.login.attempts", "outcome", "throttled-account");
+	}
+
+	/**
+	 * Only the POST requests of the login paths are limited.
+	 */
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !HttpMethod.POST.matches(request.getMethod()) || !LOGIN_PATHS.contains(getPath(request));
+	}
+
+	/**
+	 * Takes a token from the bucket of the address, then from the bucket of the email from that address, then from the bucket of the account,
+	 * and rejects the attempt if any of them is empty.
+	 */
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String address = request.getRemoteAddr();
+		long waitMillis = addressLimiter.tryAcquire(address);
+		if (waitMillis > 0) {
+			throttledByAddress.increment();
+			reject(response, waitMillis);
+			return;
+		}
+
+		String email = FORM_LOGIN_PATH.equals(getPath(request)) ? request.getParameter("email") : null;
+		if (email != null) {
+			String account = email.trim().toLowerCase(Locale.ROOT);
+
+			waitMillis = emailLimiter.tryAcquire(address + "/" + account);
+			if (waitMillis > 0) {
+				throttledByEmail.increment();
+				reject(response, waitMillis);
+				return;
+			}
+
+			waitMillis = accountLimiter.tryAcquire(account);
+			if (waitMillis > 0) {
+				throttledByAccount.increment();
+				reject(response, waitMillis);
+				return;
+			}
+		}
+
+		allowed.increment();
+		filterChain.doFilter(request, response);
+	}
+
+	/**
+	 * Rejects the attempt with a 429 response, telling the client when to retry.
+	 */
+	private void reject(HttpServletResponse response, long waitMillis) {
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000));
+		response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+	}
+
+	/**
+	 * Returns the path of the request within the application.
+	 */
+	private String getPath(HttpServletRequest request) {
+		return request.getRequestURI().substring(request.getContextPath().length());
+	}
+}
@@ -1,24 +1,113 @@
 package com.vibeflow.application.security;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Configuration class for setting up the password encoder.
- * 
+ *
  * @author Denis
  */
+@Slf4j
 @Configuration
 public class PasswordEncoderConfig {
 
 	/**
-	 * This password encoder use BCryptoPasswordEncoder to encode the password
-	 * @return a BCryptoPasswordEncoder
+	 * The id of the algorithm used to hash the new passwords.
+	 */
+	public static final String ENCODING_ID = "bcrypt";
+
+	/**
+	 * The number of verifications timed for every work factor during the calibration.
+	 */
+	private static final int CALIBRATION_SAMPLES = 3;
+
+	/**
+	 * This password encoder hashes the new passwords with BCrypt and prefixes them with the id of the algorithm,
+	 * so the algorithm or its work factor can be changed later. The hashes stored without a prefix are BCrypt hashes
+	 * and are upgraded on the next successful login.
+	 * The hashing runs on a bounded pool of threads sized to the number of processors, unless configured otherwise.
+	 *
+	 * @param vibeFlowProperties the configuration of the hashing
+	 * @param meterRegistry the registry of the hashing metrics
+	 * @return the delegating password encoder running on the hashing pool
 	 */
     @Bean("encoder")
-    public PasswordEncoder encoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder encoder(VibeFlowPropertiesConfig vibeFlowProperties, MeterRegistry meterRegistry) {
+    	int threads = vibeFlowProperties.getPasswordHashingThreads() > 0
+    			? vibeFlowProperties.getPasswordHashingThreads()
+    			: Runtime.getRuntime().availableProcessors();
+
+    	int strength = vibeFlowProperties.getPasswordHashingStrength() > 0
+    			? vibeFlowProperties.getPasswordHashingStrength()
+    			: calibrateStrength(vibeFlowProperties);
+
+    	BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+
+    	Map<String, PasswordEncoder> encoders = new HashMap<>();
+    	encoders.put(ENCODING_ID, bcrypt);
+    	encoders.put("pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+
+    	DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder(ENCODING_ID, encoders);
+    	delegatingEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        return new BoundedPasswordEncoder(delegatingEncoder, threads,
+        		vibeFlowProperties.getPasswordHashingQueueCapacity(),
+        		vibeFlowProperties.getPasswordHashingRetryAfterSeconds(), meterRegistry);
+    }
+
+    /**
+     * Chooses the highest BCrypt work factor whose verification stays within the target latency on the current hardware.
+     * Every step doubles the cost, so the calibration stops at the first work factor above the target.
+     *
+     * @param vibeFlowProperties the configuration of the calibration
+     * @return the calibrated work factor, never lower than the configured minimum
+     */
+    public static int calibrateStrength(VibeFlowPropertiesConfig vibeFlowProperties) {
+    	int strength = vibeFlowProperties.getPasswordHashingMinStrength();
+
+    	for (int candidate = strength; candidate <= vibeFlowProperties.getPasswordHashingMaxStrength(); candidate++) {
+    		long millis = medianVerificationMillis(new BCryptPasswordEncoder(candidate));
+
+    		if (millis > vibeFlowProperties.getPasswordHashingTargetMillis()) {
+    			break;
+    		}
+    		strength = candidate;
+    	}
+
+    	log.info("Calibrated the BCrypt work factor to {} for a target verification latency of {} ms",
+    			strength, vibeFlowProperties.getPasswordHashingTargetMillis());
+
+    	return strength;
+    }
+
+    /**
+     * Measures the median time of a verification with the given encoder.
+     */
+    private static long medianVerificationMillis(PasswordEncoder encoder) {
+    	String hash = encoder.encode("calibration");
+    	long[] samples = new long[CALIBRATION_SAMPLES];
+
+    	for (int i = 0; i < CALIBRATION_SAMPLES; i++) {
+    		long start = System.nanoTime();
+    		encoder.matches("calibration", hash);
+    		samples[i] = (System.nanoTime() - start) / 1_000_000L;
+    	}
+
+    	Arrays.sort(samples);
+    	return samples[CALIBRATION_SAMPLES / 2];
     }
 }
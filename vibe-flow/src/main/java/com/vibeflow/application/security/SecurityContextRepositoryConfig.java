@@ -0,0 +1,29 @@
+package com.vibeflow.application.security;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.web.context.DelegatingSecurityContextRepository;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+/**
+ * Configuration class for setting up the repository of the security context.
+ * 
+ * @author Denis
+ */
+@Configuration
+public class SecurityContextRepositoryConfig {
+
+	/**
+	 * Creates the repository in which the security context is saved between requests.
+	 * It is exposed as a bean so the principal snapshot can be replaced after the user is changed.
+	 * 
+	 * @return the security context repository
+	 */
+	@Bean
+	public SecurityContextRepository securityContextRepository() {
+		return new DelegatingSecurityContextRepository(new RequestAttributeSecurityContextRepository(),
+				new HttpSessionSecurityContextRepository());
+	}
+}
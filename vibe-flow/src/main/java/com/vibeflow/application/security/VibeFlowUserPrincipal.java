@@ -0,0 +1,119 @@
+package com.vibeflow.application.security;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import org.springframework.security.core.userdetails.User;
+
+import com.vibeflow.application.model.UserStatus;
+
+import lombok.Getter;
+
+/**
+ * The {@code VibeFlowUserPrincipal} class is the authenticated principal kept in the session.
+ * It carries a snapshot of the user taken at login, so the read-only requests of the authenticated user
+ * don't have to load the user from the database again.
+ * The snapshot is replaced whenever the user is changed through the {@code UserService}.
+ *
+ * @author Denis
+ */
+@Getter
+public class VibeFlowUserPrincipal extends User {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The id of the user.
+	 */
+	private final Integer id;
+
+	/**
+	 * The name of the user.
+	 */
+	private final String name;
+
+	/**
+	 * The registration date of the user.
+	 */
+	private final Timestamp registrationDate;
+
+	/**
+	 * The status of the user.
+	 */
+	private final UserStatus status;
+
+	/**
+	 * The deletion date of the user.
+	 */
+	private final Timestamp deletionDate;
+
+	/**
+	 * The version of the user row the snapshot was taken from.
+	 */
+	private Integer version;
+
+	/**
+	 * Creates the principal from the given user.
+	 *
+	 * @param user the user loaded from the database
+	 */
+	public VibeFlowUserPrincipal(com.vibeflow.application.model.User user) {
+		super(user.getEmail(), user.getPassword() == null ? "" : user.getPassword(), Collections.emptyList());
+		this.id = user.getId();
+		this.name = user.getName();
+		this.registrationDate = user.getRegistrationDate();
+		this.status = user.getStatus();
+		this.deletionDate = user.getDeletionDate();
+		this.version = user.getVersion();
+	}
+
+	/**
+	 * Creates a copy of the given principal, carrying its password.
+	 *
+	 * @param principal the principal to copy
+	 */
+	private VibeFlowUserPrincipal(VibeFlowUserPrincipal principal) {
+		super(principal.getUsername(), principal.getPassword(), principal.getAuthorities());
+		this.id = principal.id;
+		this.name = principal.name;
+		this.registrationDate = principal.registrationDate;
+		this.status = principal.status;
+		this.deletionDate = principal.deletionDate;
+		this.version = principal.version;
+	}
+
+	/**
+	 * Moves the snapshot to the given version of the user, after a change which only replaced the password hash.
+	 *
+	 * @param version the version of the user row after the change
+	 */
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
+
+	/**
+	 * Creates a copy of the principal, so erasing the credentials of one doesn't erase the credentials of the other.
+	 *
+	 * @return the copy of the principal
+	 */
+	public VibeFlowUserPrincipal copy() {
+		return new VibeFlowUserPrincipal(this);
+	}
+
+	/**
+	 * Builds a detached copy of the user from the snapshot. The copy never carries the password.
+	 *
+	 * @return the user described by the snapshot
+	 */
+	public com.vibeflow.application.model.User toUser() {
+		com.vibeflow.application.model.User user = new com.vibeflow.application.model.User();
+		user.setId(id);
+		user.setName(name);
+		user.setEmail(getUsername());
+		user.setRegistrationDate(registrationDate);
+		user.setStatus(status);
+		user.setDeletionDate(deletionDate);
+		user.setVersion(version);
+		return user;
+	}
+}
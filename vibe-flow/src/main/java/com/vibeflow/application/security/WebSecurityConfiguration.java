@@ -3,15 +3,26 @@ package com.vibeflow.application.security;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.SecurityContextRepository;
 
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.JwtService;
 import com.vibeflow.application.service.VibeFlowUserDetailsService;
+import com.vibeflow.application.utility.TokenBucketLimiter;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * Configuration class for web application security.
@@ -34,15 +45,52 @@ public class WebSecurityConfiguration {
 	@Autowired
 	private PasswordEncoder passwordEncoder;
 	
+	/**
+	 * The repository in which the security context is saved between requests.
+	 */
+	@Autowired
+	private SecurityContextRepository securityContextRepository;
+	
+	/**
+	 * Service verifying the access tokens of the stateless authentication.
+	 */
+	@Autowired
+	private JwtService jwtService;
+	
+	/**
+	 * Configuration object telling whether the stateless authentication is enabled.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+	
+	/**
+	 * The registry of the login throttling metrics.
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	/**
+	 * The cache of the user details loaded by the logins.
+	 */
+	@Autowired
+	private UserCache userCache;
+	
 	/**
      * Configures authentication using user details and password encoder.
+     * The user details are cached, and a login with a cached user whose password doesn't match loads the user again.
      *
      * @param auth the authentication manager builder
      * @throws Exception if any configuration issues occur
      */
 	@Autowired
 	public void configure(AuthenticationManagerBuilder auth) throws Exception{
-		auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
+		DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
+		authenticationProvider.setPasswordEncoder(passwordEncoder);
+		authenticationProvider.setUserDetailsService(userDetailsService);
+		authenticationProvider.setUserDetailsPasswordService(userDetailsService);
+		authenticationProvider.setUserCache(userCache);
+		
+		auth.authenticationProvider(authenticationProvider);
 	}
 	
 	/**
@@ -56,7 +104,21 @@ public class WebSecurityConfiguration {
 	}
 	
 	/**
-	 * This method defines security like disabling CSRF protection, defining which requests are allowed without authentication
+	 * Exposes the authentication manager built from the user details service, which checks the credentials of the token requests.
+	 * 
+	 * @param authenticationConfiguration the configuration of the authentication
+	 * @return the authentication manager
+	 * @throws Exception if the authentication manager cannot be built
+	 */
+	@Bean
+	public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
+		return authenticationConfiguration.getAuthenticationManager();
+	}
+	
+	/**
+	 * This method defines security like disabling CSRF protection, defining which requests are allowed without authentication.
+	 * The login attempts are throttled before they are authenticated.
+	 * When the stateless authentication is enabled, the requests carrying an access token are authenticated by the token, without a session.
 	 * @param http - the HttpSecurity instance
 	 * @return the build SecurityFilterChain
 	 * @throws Exception if an error occurs during the security configuration
@@ -65,8 +127,10 @@ public class WebSecurityConfiguration {
 	public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
 		http
 		.csrf(csrf -> csrf.disable())
+		.securityContext(context -> context.securityContextRepository(securityContextRepository))
 		.authorizeHttpRequests(authz->authz
 				.requestMatchers("/api/users/register", "/api/users/me", "/api/users/confirm", "/api/users/email-reset-password").permitAll()
+				.requestMatchers("/api/auth/token", "/api/auth/refresh", "/api/auth/revoke").permitAll()
 				.anyRequest().authenticated())
 		.formLogin(form -> form
 				.loginPage("/login")
@@ -75,10 +139,34 @@ public class WebSecurityConfiguration {
 			    .failureHandler(authenticationFailureHandler())
 				.permitAll())
 		.logout(logout -> logout.logoutSuccessUrl("/login"));
+		
+		if (vibeFlowProperties.isLoginThrottleEnabled()) {
+			http.addFilterBefore(loginThrottleFilter(), UsernamePasswordAuthenticationFilter.class);
+		}
+		
+		if (vibeFlowProperties.isStatelessAuthEnabled()) {
+			http.addFilterBefore(new JwtAuthenticationFilter(jwtService), UsernamePasswordAuthenticationFilter.class);
+		}
 
 		return http.build();
 	}
 	
+	/**
+	 * Creates the filter limiting the login attempts, with token buckets for the client addresses, the emails from an address and the accounts.
+	 * It is not a bean, so it only runs in the security filter chain.
+	 * 
+	 * @return the login throttling filter
+	 */
+	private LoginThrottleFilter loginThrottleFilter() {
+		long maxKeys = vibeFlowProperties.getLoginThrottleMaxKeys();
+		
+		return new LoginThrottleFilter(
+				new TokenBucketLimiter(maxKeys, vibeFlowProperties.getLoginAddressBurst(), vibeFlowProperties.getLoginAddressRefillMillis()),
+				new TokenBucketLimiter(maxKeys, vibeFlowProperties.getLoginEmailBurst(), vibeFlowProperties.getLoginEmailRefillMillis()),
+				new TokenBucketLimiter(maxKeys, vibeFlowProperties.getLoginAccountBurst(), vibeFlowProperties.getLoginAccountRefillMillis()),
+				meterRegistry);
+	}
+	
 	/**
 	 *Configures Spring Security to ignore specific URL patterns for security checks.
 	 */
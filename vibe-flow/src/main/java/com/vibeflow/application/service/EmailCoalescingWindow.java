@@ -0,0 +1,145 @@
+package com.vibeflow.application.service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.type.EmailType;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Coalescing window and throttle of the emails requested for a user. Once an email of a type is queued for a user,
+ * the requests for the same email within the window reuse the queued email instead of queueing another one,
+ * and an address receives a bounded number of emails within the throttling period, whichever user it belongs to,
+ * so repeated requests can't make the application generate tokens and send emails for any known address.
+ * Both are held in memory and bounded in size: when they are full, the least recently used entries are evicted.
+ * 
+ * @author Denis
+ */
+@Component
+public class EmailCoalescingWindow {
+
+	/**
+	 * The emails queued within the window, keyed by user and email type.
+	 */
+	private final Cache<CoalescingKey, Boolean> queued;
+
+	/**
+	 * The number of emails queued for every address within its throttling period, which starts with its first email.
+	 */
+	private final Cache<String, AtomicInteger> queuedPerAddress;
+
+	/**
+	 * The maximum number of emails queued for an address within the throttling period.
+	 */
+	private final int maxEmailsPerAddress;
+
+	/**
+	 * The registry of the coalescing metrics.
+	 */
+	private final MeterRegistry meterRegistry;
+
+	/**
+	 * Creates the window and registers its metrics.
+	 * 
+	 * @param vibeFlowProperties the configuration of the window
+	 * @param meterRegistry the registry of the coalescing metrics
+	 */
+	public EmailCoalescingWindow(VibeFlowPropertiesConfig vibeFlowProperties, MeterRegistry meterRegistry) {
+		this.queued = Caffeine.newBuilder()
+				.expireAfterWrite(Duration.ofSeconds(vibeFlowProperties.getEmailCoalescingWindowSeconds()))
+				.maximumSize(vibeFlowProperties.getEmailCoalescingMaxEntries())
+				.recordStats()
+				.build();
+		this.queuedPerAddress = Caffeine.newBuilder()
+				.expireAfterWrite(Duration.ofSeconds(vibeFlowProperties.getEmailThrottlingPeriodSeconds()))
+				.maximumSize(vibeFlowProperties.getEmailCoalescingMaxEntries())
+				.build();
+		this.maxEmailsPerAddress = vibeFlowProperties.getEmailThrottlingMaxEmails();
+		this.meterRegistry = meterRegistry;
+
+		CaffeineCacheMetrics.monitor(meterRegistry, queued, "email-coalescing");
+	}
+
+	/**
+	 * Opens the window of the given email for the given user, unless it is already open or the address was sent too many emails.
+	 * When it is called in a transaction, the window is closed again if the transaction doesn't commit,
+	 * so an email that was never queued doesn't hold back the next request.
+	 * 
+	 * @param userId the id of the recipient
+	 * @param type the type of the email
+	 * @param emailAddress the address of the recipient
+	 * @return true if the email should be queued, false if an email queued within the window is reused or the address is throttled
+	 */
+	public boolean tryAcquire(long userId, EmailType type, String emailAddress) {
+		CoalescingKey key = new CoalescingKey(userId, type, emailAddress.toLowerCase(Locale.ROOT));
+
+		if (queued.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+			meterRegistry.counter("vibeflow.email.coalesced", "type", type.name()).increment();
+			return false;
+		}
+
+		if (queuedPerAddress.get(key.emailAddress(), address -> new AtomicInteger()).incrementAndGet() > maxEmailsPerAddress) {
+			release(key);
+			meterRegistry.counter("vibeflow.email.throttled", "type", type.name()).increment();
+			return false;
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status != STATUS_COMMITTED) {
+						release(key);
+					}
+				}
+			});
+		}
+
+		return true;
+	}
+
+	/**
+	 * Closes the window of the given email, because the email acquired for it wasn't queued.
+	 * 
+	 * @param userId the id of the recipient
+	 * @param type the type of the email
+	 * @param emailAddress the address of the recipient
+	 */
+	public void release(long userId, EmailType type, String emailAddress) {
+		release(new CoalescingKey(userId, type, emailAddress.toLowerCase(Locale.ROOT)));
+	}
+
+	/**
+	 * Closes the given window and gives back the email it counted for its address.
+	 */
+	private void release(CoalescingKey key) {
+		if (queued.asMap().remove(key) == null) {
+			return;
+		}
+
+		AtomicInteger count = queuedPerAddress.getIfPresent(key.emailAddress());
+		if (count != null) {
+			count.decrementAndGet();
+		}
+	}
+
+	/**
+	 * The key of a queued email.
+	 * 
+	 * @param userId the id of the recipient
+	 * @param type the type of the email
+	 * @param emailAddress the lower-case address of the recipient
+	 */
+	private record CoalescingKey(long userId, EmailType type, String emailAddress) {
+	}
+}
@@ -0,0 +1,412 @@
+package com.vibeflow.application.service;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.model.UserStatus;
+import com.vibeflow.application.utility.BloomFilter;
+import com.vibeflow.application.utility.DateUtility;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service class holding a Bloom filter of the registered emails, so the lookups of emails which are definitely not registered
+ * are answered without querying the database.
+ * The filter is built at startup by streaming the users table in pages of ids. The registrations of this node are added directly,
+ * and the registrations of the other nodes are added by polling the ids registered since the previous poll.
+ * Every poll also reads again the users registered within the longest transaction and poll interval,
+ * so a registration committed after a higher id, or after the filter was built, is not missed,
+ * and an email missing from the filter is looked up among these users before it is reported as not registered.
+ * The purged emails cannot be removed from a Bloom filter, so the filter is rebuilt once enough of them accumulated,
+ * on a thread of its own, while the current filter keeps answering the lookups.
+ * Until the filter is built, every email might be registered.
+ * 
+ * @author Denis
+ */
+@Slf4j
+@Service
+public class EmailExistenceFilter implements DisposableBean {
+
+	/**
+	 * The page of the users streamed into the filter, ordered by id.
+	 */
+	private static final String PAGE_QUERY = "SELECT id, email FROM users WHERE id > ? ORDER BY id LIMIT ?";
+
+	/**
+	 * The condition of the users registered since a date, a range scan of the lifecycle index for every status.
+	 */
+	private static final String RECENT_CONDITION = "status_code IN (" + Arrays.stream(UserStatus.values())
+			.map(status -> "'" + status.getCode() + "'")
+			.collect(Collectors.joining(", ")) + ") AND registration_date >= ?";
+
+	/**
+	 * The users registered since a date.
+	 */
+	private static final String RECENT_QUERY = "SELECT id, email FROM users WHERE " + RECENT_CONDITION;
+
+	/**
+	 * The number of users with an email registered since a date.
+	 */
+	private static final String RECENT_EMAIL_QUERY = "SELECT COUNT(*) FROM users WHERE " + RECENT_CONDITION + " AND LOWER(email) = ?";
+
+	/**
+	 * Instance of JdbcTemplate to stream the emails, without loading the User entities.
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Configuration object holding the false positive rate, the memory budget and the page size of the filter.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * The registry of the filter metrics.
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * The filter answering the lookups, or null until it is built.
+	 */
+	private volatile BloomFilter filter;
+
+	/**
+	 * The filter being built, which receives the registrations of this node until it replaces the current filter.
+	 */
+	private volatile BloomFilter pendingFilter;
+
+	/**
+	 * The number of emails the current filter is sized for.
+	 */
+	private volatile long capacity;
+
+	/**
+	 * The approximate number of emails added to the current filter.
+	 */
+	private final AtomicLong insertions = new AtomicLong();
+
+	/**
+	 * The number of emails purged since the current filter was built.
+	 */
+	private final AtomicLong purged = new AtomicLong();
+
+	/**
+	 * The highest id read so far, from which the next poll starts.
+	 */
+	private long currentMaxId;
+
+	/**
+	 * Held while the filter is refreshed or rebuilt. A poll finding it held skips its turn instead of waiting for a rebuild.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Whether a rebuild is scheduled or running.
+	 */
+	private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+	/**
+	 * The thread rebuilding the filter, so neither the poll of the changes nor the refresh wait for a rebuild.
+	 */
+	private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "email-filter-rebuild");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Counts the lookups answered without querying the database.
+	 */
+	private Counter avoided;
+
+	/**
+	 * Counts the lookups which had to query the database.
+	 */
+	private Counter queried;
+
+	/**
+	 * Counts the lookups of emails missing from the filter which were registered recently, on another node.
+	 */
+	private Counter recent;
+
+	/**
+	 * Registers the metrics of the filter.
+	 */
+	@PostConstruct
+	public void registerMetrics() {
+		avoided = meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "avoided");
+		queried = meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "queried");
+		recent = meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "recent");
+
+		Gauge.builder("vibeflow.email.filter.false.positive.rate", this,
+				service -> service.filter == null ? Double.NaN : service.filter.getExpectedFalsePositiveRate(service.insertions.get()))
+				.description("Expected false positive rate of the email filter for the emails it holds")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Builds the filter once the application started, if it is enabled.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void init() {
+		if (vibeFlowProperties.isEmailFilterEnabled()) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * Checks whether the given email might be registered. A false answer is certain, so the database doesn't need to be queried.
+	 * An email missing from the filter is looked up among the recent registrations, which the filter may not hold yet.
+	 * The emails are compared ignoring the case, so the filter never disagrees with a case insensitive column.
+	 * 
+	 * @param email the email to look up
+	 * @return false if the email is definitely not registered, true if it might be
+	 */
+	public boolean mightContain(String email) {
+		BloomFilter current = filter;
+		if (current == null || email == null) {
+			return true;
+		}
+
+		String normalized = normalize(email);
+		if (current.mightContain(normalized)) {
+			queried.increment();
+			return true;
+		}
+
+		if (jdbcTemplate.queryForObject(RECENT_EMAIL_QUERY, Long.class, getRecentSince(), normalized) > 0) {
+			recent.increment();
+			return true;
+		}
+
+		avoided.increment();
+		return false;
+	}
+
+	/**
+	 * Adds the given email to the filter, and to the filter being built if any.
+	 * It is called before the email is saved, so the email is never reported as not registered once it is.
+	 * 
+	 * @param email the registered email
+	 */
+	public void put(String email) {
+		String normalized = normalize(email);
+
+		BloomFilter current = filter;
+		if (current != null) {
+			current.put(normalized);
+			insertions.incrementAndGet();
+		}
+
+		BloomFilter pending = pendingFilter;
+		if (pending != null) {
+			pending.put(normalized);
+		}
+	}
+
+	/**
+	 * Records that users were purged on any node, as read from the change log of the users, and schedules a rebuild of the filter
+	 * once the purged emails exceed the configured ratio of its emails.
+	 * 
+	 * @param count the number of purged users
+	 */
+	public void onPurged(long count) {
+		if (filter == null || count <= 0) {
+			return;
+		}
+
+		if (purged.addAndGet(count) > vibeFlowProperties.getEmailFilterRebuildRatio() * insertions.get()) {
+			scheduleRebuild();
+		}
+	}
+
+	/**
+	 * Adds the emails registered on the other nodes since the last poll, and those of the recent registrations again,
+	 * for the registrations committed after a higher id was read.
+	 * A rebuild is scheduled instead when the filter holds more emails than it is sized for, and the poll is skipped while the filter is rebuilt.
+	 * 
+	 * @return the number of emails read
+	 */
+	public long refresh() {
+		if (filter == null || !lock.tryLock()) {
+			return 0;
+		}
+
+		try {
+			if (insertions.get() > capacity) {
+				scheduleRebuild();
+				return 0;
+			}
+
+			BloomFilter current = filter;
+			AtomicLong maxId = new AtomicLong(currentMaxId);
+
+			long read = stream(currentMaxId, id -> {
+				insertions.incrementAndGet();
+				maxId.accumulateAndGet(id, Math::max);
+			}, current);
+
+			read += streamRecent(current);
+			currentMaxId = maxId.get();
+			return read;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Builds a new filter from the users table and replaces the current one.
+	 * The filter is sized for the current number of users with room to grow, within the memory budget.
+	 * The registrations committed while it is built are added by the next polls, which read the recent registrations again.
+	 * 
+	 * @return the number of emails added to the new filter
+	 */
+	public long rebuild() {
+		lock.lock();
+		try {
+			long start = System.nanoTime();
+			long users = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+
+			long expected = users + users / 2 + 1024;
+			BloomFilter rebuilt = BloomFilter.create(expected, vibeFlowProperties.getEmailFilterFalsePositiveRate(),
+					vibeFlowProperties.getEmailFilterMaxBytes());
+			pendingFilter = rebuilt;
+
+			AtomicLong maxId = new AtomicLong();
+			long read = stream(0, id -> maxId.accumulateAndGet(id, Math::max), rebuilt);
+
+			filter = rebuilt;
+			pendingFilter = null;
+			capacity = expected;
+			insertions.set(read);
+			purged.set(0);
+			currentMaxId = maxId.get();
+
+			double falsePositiveRate = rebuilt.getExpectedFalsePositiveRate(expected);
+			if (falsePositiveRate > vibeFlowProperties.getEmailFilterFalsePositiveRate() * 2) {
+				log.warn("The email filter is limited to {} bytes, so its false positive rate will reach {}", rebuilt.getSizeInBytes(), falsePositiveRate);
+			}
+			log.info("Built the email filter of {} emails in {} ms", read, (System.nanoTime() - start) / 1_000_000);
+
+			return read;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the thread rebuilding the filter.
+	 */
+	@Override
+	public void destroy() {
+		rebuilder.shutdownNow();
+	}
+
+	/**
+	 * Rebuilds the filter on the thread of the rebuilds, unless a rebuild is already scheduled.
+	 */
+	private void scheduleRebuild() {
+		if (!rebuildScheduled.compareAndSet(false, true)) {
+			return;
+		}
+
+		rebuilder.execute(() -> {
+			try {
+				rebuild();
+			} catch (RuntimeException e) {
+				log.warn("Could not rebuild the email filter", e);
+			} finally {
+				rebuildScheduled.set(false);
+			}
+		});
+	}
+
+	/**
+	 * Adds the emails of the recent registrations to the given filter.
+	 * 
+	 * @param target the filter receiving the emails
+	 * @return the number of read emails
+	 */
+	private long streamRecent(BloomFilter target) {
+		AtomicLong read = new AtomicLong();
+
+		jdbcTemplate.query(RECENT_QUERY, resultSet -> {
+			target.put(normalize(resultSet.getString(2)));
+			read.incrementAndGet();
+		}, getRecentSince());
+
+		return read.get();
+	}
+
+	/**
+	 * Returns the registration date from which the users are read again: a registration dated before it was committed
+	 * before the previous poll, given the longest transaction, the poll interval and the clock skew between the nodes.
+	 */
+	private Timestamp getRecentSince() {
+		return new Timestamp(DateUtility.getCurrentUTCTimestamp().getTime() - vibeFlowProperties.getMaxTransactionSeconds() * 1000L
+				- vibeFlowProperties.getEmailFilterRefreshIntervalMillis() - vibeFlowProperties.getExpirySkewAllowanceSeconds() * 1000L);
+	}
+
+	/**
+	 * Streams the emails of the users whose id is greater than the given one into the given filter, page by page.
+	 * 
+	 * @param fromId the exclusive lower bound of the ids
+	 * @param onId receives the id of every streamed user
+	 * @param target the filter receiving the emails
+	 * @return the number of streamed emails
+	 */
+	private long stream(long fromId, LongConsumer onId, BloomFilter target) {
+		int batchSize = vibeFlowProperties.getEmailFilterBatchSize();
+		long lastId = fromId;
+		long read = 0;
+
+		while (true) {
+			AtomicLong pageLastId = new AtomicLong(lastId);
+			AtomicLong pageSize = new AtomicLong();
+
+			jdbcTemplate.query(PAGE_QUERY, resultSet -> {
+				long id = resultSet.getLong(1);
+				target.put(normalize(resultSet.getString(2)));
+				onId.accept(id);
+				pageLastId.set(id);
+				pageSize.incrementAndGet();
+			}, lastId, batchSize);
+
+			read += pageSize.get();
+			lastId = pageLastId.get();
+
+			if (pageSize.get() < batchSize) {
+				return read;
+			}
+		}
+	}
+
+	/**
+	 * Returns the form of the email held by the filter.
+	 */
+	private String normalize(String email) {
+		return email.toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,236 @@
+package com.vibeflow.application.service;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.dto.EmailInfo;
+import com.vibeflow.application.model.EmailOutbox;
+import com.vibeflow.application.model.OutboxStatus;
+import com.vibeflow.application.repository.EmailOutboxRepository;
+import com.vibeflow.application.type.EmailTemplateData;
+import com.vibeflow.application.type.EmailType;
+import com.vibeflow.application.utility.DateUtility;
+
+/**
+ * Service class for the emails of the outbox.
+ * The outbox never stores a token: it stores the id of the recipient, and the token is created when the email is rendered for sending.
+ * 
+ * @author Denis
+ */
+@Service
+public class EmailOutboxService {
+
+	/**
+	 * The maximum length of the stored error of a failed attempt.
+	 */
+	private static final int MAX_ERROR_LENGTH = 1024;
+
+	/**
+	 * The number of milliseconds in a day.
+	 */
+	private static final long MILIS_IN_DAY = 24L * 60L * 60L * 1000L;
+
+	/**
+	 * Instance of EmailOutboxRepository to interact with the database.
+	 */
+	@Autowired
+	private EmailOutboxRepository emailOutboxRepository;
+
+	/**
+	 * The configuration of the outbox.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * The JWT (JSON Web Token) service creating the tokens of the emails when they are sent.
+	 */
+	@Autowired
+	private JwtService jwtService;
+
+	/**
+	 * Writes the given email to the outbox. It joins the current transaction,
+	 * so the email is only sent if the change it announces is committed.
+	 * 
+	 * @param emailInfo The email to send.
+	 * @return The email of the outbox.
+	 */
+	@Transactional
+	public EmailOutbox enqueue(EmailInfo emailInfo) {
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+
+		EmailOutbox email = new EmailOutbox();
+		email.setType(emailInfo.getType());
+		email.setEmailAddress(emailInfo.getEmailAddress());
+		email.setEmailData(emailInfo.getEmailData());
+		email.setStatus(OutboxStatus.PENDING);
+		email.setNextAttemptAt(now);
+		email.setCreatedAt(now);
+
+		return emailOutboxRepository.save(email);
+	}
+
+	/**
+	 * Claims a batch of due emails for the calling relay worker.
+	 * Every claimed email counts an attempt and is leased: it is due again only when the lease expires,
+	 * so an email whose worker stopped before recording the outcome is sent again.
+	 * The emails of a claim share a new token, which the worker presents when it records their outcome.
+	 * 
+	 * @return The claimed emails.
+	 */
+	@Transactional
+	public List<EmailOutbox> claimDue() {
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+		Timestamp leaseEnd = new Timestamp(now.getTime() + vibeFlowProperties.getOutboxLeaseSeconds() * 1000L);
+		String claimToken = UUID.randomUUID().toString();
+
+		List<EmailOutbox> emails = emailOutboxRepository.findDueForUpdate(OutboxStatus.PENDING.name(), now, getClaimSize());
+
+		for (EmailOutbox email : emails) {
+			email.setAttempts(email.getAttempts() + 1);
+			email.setNextAttemptAt(leaseEnd);
+			email.setClaimToken(claimToken);
+		}
+
+		return emails;
+	}
+
+	/**
+	 * Returns the number of emails claimed at once: the batch size, unless sending that many emails
+	 * at their longest send time would take more than half of the lease.
+	 * 
+	 * @return The maximum number of emails of a claim, at least one.
+	 */
+	public int getClaimSize() {
+		long sendableInHalfLease = vibeFlowProperties.getOutboxLeaseSeconds() * 1000L / 2 / vibeFlowProperties.getOutboxSendTimeoutMillis();
+
+		return (int) Math.max(1, Math.min(vibeFlowProperties.getOutboxBatchSize(), sendableInHalfLease));
+	}
+
+	/**
+	 * Builds the email to send from the given email of the outbox, creating the token of its link from the id of the recipient.
+	 * 
+	 * @param email The claimed email.
+	 * @return The email to send, carrying its token if its type has a link.
+	 */
+	public EmailInfo render(EmailOutbox email) {
+		Map<String, Object> emailData = new HashMap<>(email.getEmailData());
+		String token = createToken(email.getType(), emailData);
+
+		if (token != null) {
+			emailData.put(EmailTemplateData.TOKEN.getName(), token);
+		}
+
+		EmailInfo emailInfo = new EmailInfo();
+		emailInfo.setType(email.getType());
+		emailInfo.setEmailAddress(email.getEmailAddress());
+		emailInfo.setEmailData(emailData);
+
+		return emailInfo;
+	}
+
+	/**
+	 * Creates the token of the link of an email from the data stored in the outbox.
+	 * 
+	 * @param type The type of the email.
+	 * @param emailData The data stored in the outbox.
+	 * @return The token, or null if the email has no link or no recipient id.
+	 */
+	private String createToken(EmailType type, Map<String, Object> emailData) {
+		Number userId = (Number) emailData.get(EmailTemplateData.USER_ID.getName());
+
+		if (userId == null) {
+			return null;
+		}
+
+		return switch (type) {
+		case CONFIRM_REGISTRATION, CONFIRMATION_REMINDER -> {
+			Number registrationDate = (Number) emailData.get(EmailTemplateData.REGISTRATION_DATE.getName());
+			yield jwtService.generateEmailConfirmationToken(userId.intValue(), new Timestamp(registrationDate.longValue()));
+		}
+		case RESET_PASSWORD -> jwtService.generatePasswordResetToken(userId.intValue());
+		default -> null;
+		};
+	}
+
+	/**
+	 * Records that the given email was sent.
+	 * 
+	 * @param email The sent email.
+	 * @return false if the claim of the email was lost, in which case nothing is recorded.
+	 */
+	public boolean markSent(EmailOutbox email) {
+		return emailOutboxRepository.markSent(email.getId(), email.getClaimToken(), DateUtility.getCurrentUTCTimestamp()) > 0;
+	}
+
+	/**
+	 * Records a failed attempt to send the given email. The email is retried after an exponential backoff,
+	 * or moved to the dead state once it used all its attempts.
+	 * 
+	 * @param email The email that failed.
+	 * @param error The error of the attempt.
+	 * @return The new status of the email, or null if the claim of the email was lost, in which case nothing is recorded.
+	 */
+	public OutboxStatus markFailed(EmailOutbox email, Exception error) {
+		OutboxStatus status = email.getAttempts() >= vibeFlowProperties.getOutboxMaxAttempts()
+				? OutboxStatus.DEAD
+				: OutboxStatus.PENDING;
+		Timestamp nextAttemptAt = new Timestamp(DateUtility.getCurrentUTCTimestamp().getTime() + getBackoffMillis(email.getAttempts()));
+
+		String lastError = String.valueOf(error);
+		if (lastError.length() > MAX_ERROR_LENGTH) {
+			lastError = lastError.substring(0, MAX_ERROR_LENGTH);
+		}
+
+		if (emailOutboxRepository.markFailed(email.getId(), email.getClaimToken(), status, nextAttemptAt, lastError) == 0) {
+			return null;
+		}
+
+		return status;
+	}
+
+	/**
+	 * Gives back the claim of the given email, which the SMTP circuit breaker rejected before sending it.
+	 * The email is due again at once and keeps the attempt it was claimed with, so a half-open breaker doesn't use up the attempts.
+	 * 
+	 * @param email The rejected email.
+	 * @return false if the claim of the email was lost, in which case nothing is recorded.
+	 */
+	public boolean release(EmailOutbox email) {
+		return emailOutboxRepository.release(email.getId(), email.getClaimToken(), DateUtility.getCurrentUTCTimestamp()) > 0;
+	}
+
+	/**
+	 * Deletes a bounded chunk of the emails sent before the retention period.
+	 * 
+	 * @return The number of deleted emails.
+	 */
+	public int deleteExpiredSent() {
+		Timestamp before = new Timestamp(DateUtility.getCurrentUTCTimestamp().getTime()
+				- vibeFlowProperties.getOutboxRetentionDays() * MILIS_IN_DAY);
+
+		return emailOutboxRepository.deleteChunkBySentBefore(OutboxStatus.SENT.name(), before,
+				vibeFlowProperties.getOutboxBatchSize());
+	}
+
+	/**
+	 * Returns the delay before the next attempt, after the given number of failed attempts.
+	 * 
+	 * @param attempts The number of failed attempts.
+	 * @return The delay in milliseconds, doubled with every attempt and capped by the maximum delay.
+	 */
+	public long getBackoffMillis(int attempts) {
+		int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+
+		return Math.min(vibeFlowProperties.getOutboxBaseBackoffMillis() << doublings,
+				vibeFlowProperties.getOutboxMaxBackoffMillis());
+	}
+}
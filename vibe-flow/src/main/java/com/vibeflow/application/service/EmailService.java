@@ -1,17 +1,17 @@
 package com.vibeflow.application.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
-import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
 
 import com.vibeflow.application.dto.EmailInfo;
 import com.vibeflow.application.exception.EmailException;
 import com.vibeflow.application.messages.EmailMessage;
 
-import freemarker.template.Configuration;
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.AllArgsConstructor;
@@ -31,9 +31,14 @@ public class EmailService {
     final JavaMailSender javaMailSender;
     
     /**
-     * The FreeMarker configuration for processing email templates.
+     * The registry of the compiled email templates.
+     */
+    private final EmailTemplateRegistry emailTemplateRegistry;
+
+    /**
+     * The pool of SMTP connections the emails are sent over.
      */
-    private final Configuration freemarkerConfig;
+    private final SmtpTransportPool smtpTransportPool;
 
     /**
      * Sends an email based on the provided EmailInfo.
@@ -42,44 +47,80 @@ public class EmailService {
      * @throws EmailException If there is an issue with sending the email.
      */
     public void sendEmail(EmailInfo emailInfo) throws EmailException {
+    	EmailException failure = sendBatch(List.of(emailInfo)).get(0);
     	
-    	/**
-    	 * Template for the email body content.
-    	 */
-        Template templateBody;
-        
-        /**
-         * Template for the email subject.
-         */
-        Template templateSubject;
-        
-        switch (emailInfo.getType()) {
-        case CONFIRM_REGISTRATION:
-            try {
-                templateBody = freemarkerConfig.getTemplate("registration-body.ftlh");
-                templateSubject = freemarkerConfig.getTemplate("registration-subject.ftlh");
-            } catch (java.io.IOException e) {
-            	throw new EmailException(EmailMessage.EMAIL_TEMPLATE_NOT_FOUND.getMessage(), e);
-            }
-            break;
-            
-        case RESET_PASSWORD:
-            try {
-                templateBody = freemarkerConfig.getTemplate("password-reset-body.ftlh");
-                templateSubject = freemarkerConfig.getTemplate("password-reset-subject.ftlh");
-            } catch (java.io.IOException e) {
-                throw new EmailException(EmailMessage.EMAIL_TEMPLATE_NOT_FOUND.getMessage(), e);
-            }
-            break;
+    	if (failure != null) {
+    		throw failure;
+    	}
+    }
 
-        default:
-        	throw new EmailException(EmailMessage.EMAIL_TYPE_NOT_FOUND.getMessage(), null);
-        }
-        
+    /**
+     * Sends the given emails over one pooled SMTP connection.
+     * The emails are sent independently: an email that fails doesn't stop the others.
+     *
+     * @param emailInfos The emails to send.
+     * @return The failure of every email, in the order of the emails, or null for the sent emails.
+     */
+    public List<EmailException> sendBatch(List<EmailInfo> emailInfos) {
+    	List<EmailException> failures = new ArrayList<>(Collections.nCopies(emailInfos.size(), null));
+    	List<MimeMessage> messages = new ArrayList<>(emailInfos.size());
+    	List<Integer> positions = new ArrayList<>(emailInfos.size());
+    	
+    	for (int i = 0; i < emailInfos.size(); i++) {
+    		try {
+    			messages.add(createMessage(emailInfos.get(i)));
+    			positions.add(i);
+    		} catch (EmailException e) {
+    			failures.set(i, e);
+    		}
+    	}
+    	
+    	if (messages.isEmpty()) {
+    		return failures;
+    	}
+    	
+    	try {
+    		List<MessagingException> sendFailures = smtpTransportPool.send(messages);
+    		
+    		for (int i = 0; i < messages.size(); i++) {
+    			if (sendFailures.get(i) != null) {
+    				failures.set(positions.get(i), new EmailException(EmailMessage.EMAIL_SENDING_FAILED.getMessage(), sendFailures.get(i)));
+    			}
+    		}
+    	} catch (MessagingException e) {
+    		for (int position : positions) {
+    			failures.set(position, new EmailException(EmailMessage.EMAIL_SENDING_FAILED.getMessage(), e));
+    		}
+    	}
+    	
+    	return failures;
+    }
+
+    /**
+     * Returns whether the SMTP server is considered unavailable, in which case the emails fail without being sent.
+     *
+     * @return true if the SMTP circuit breaker is open
+     */
+    public boolean isCircuitOpen() {
+    	return smtpTransportPool.isCircuitOpen();
+    }
+
+    /**
+     * Renders the given email into a message.
+     *
+     * @param emailInfo The email to render.
+     * @return The message, ready to be sent.
+     * @throws EmailException If the email can't be rendered.
+     */
+    private MimeMessage createMessage(EmailInfo emailInfo) throws EmailException {
+    	if (emailInfo.getType() == null) {
+    		throw new EmailException(EmailMessage.EMAIL_TYPE_NOT_FOUND.getMessage(), null);
+    	}
+    	
+		String templateBodyContent = emailTemplateRegistry.renderBody(emailInfo.getType(), emailInfo.getEmailData());
+		String templateSubjectContent = emailTemplateRegistry.getSubject(emailInfo.getType());
+		
 		try {
-			String templateBodyContent = FreeMarkerTemplateUtils.processTemplateIntoString(templateBody, emailInfo.getEmailData());
-			String templateSubjectContent = FreeMarkerTemplateUtils.processTemplateIntoString(templateSubject, null);
-			
 			/**
 			 * MimeMessage for composing the email.
 			 */
@@ -94,9 +135,7 @@ public class EmailService {
 			helper.setSubject(templateSubjectContent);
 		    helper.setText(templateBodyContent, true);
 
-	        javaMailSender.send(mimeMessage);
-		} catch (java.io.IOException | TemplateException e) {
-			throw new EmailException(EmailMessage.EMAIL_TEMPLATE_PROCESSING_FAILED.getMessage(), e);
+	        return mimeMessage;
 		} catch (MessagingException e) {
 			throw new EmailException(EmailMessage.EMAIL_PROPERTIES_NOT_FOUND.getMessage(), e);
 		}
@@ -0,0 +1,106 @@
+package com.vibeflow.application.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.vibeflow.application.exception.EmailException;
+import com.vibeflow.application.messages.EmailMessage;
+import com.vibeflow.application.type.EmailType;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+/**
+ * Registry of the compiled email templates. The templates of every email type are loaded when the application starts,
+ * so a missing template stops the startup instead of failing the sending. The subjects take no data and are rendered once.
+ * 
+ * @author Denis
+ */
+@Component
+public class EmailTemplateRegistry {
+
+	/**
+	 * The initial capacity of the rendering buffer of a thread.
+	 */
+	private static final int BUFFER_CAPACITY = 2048;
+
+	/**
+	 * The capacity above which a rendering buffer is dropped instead of reused, so an unusually large email doesn't stay in memory.
+	 */
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	/**
+	 * The compiled body template of every email type.
+	 */
+	private final Map<EmailType, Template> bodies = new EnumMap<>(EmailType.class);
+
+	/**
+	 * The rendered subject of every email type.
+	 */
+	private final Map<EmailType, String> subjects = new EnumMap<>(EmailType.class);
+
+	/**
+	 * The rendering buffer of every thread.
+	 */
+	private final ThreadLocal<StringWriter> buffers = ThreadLocal.withInitial(() -> new StringWriter(BUFFER_CAPACITY));
+
+	/**
+	 * Loads the templates of every email type.
+	 * 
+	 * @param freemarkerConfig the FreeMarker configuration the templates are loaded from
+	 * @throws IllegalStateException if a template is missing or the subject can't be rendered
+	 */
+	public EmailTemplateRegistry(Configuration freemarkerConfig) {
+		for (EmailType type : EmailType.values()) {
+			try {
+				bodies.put(type, freemarkerConfig.getTemplate(type.getBodyTemplate()));
+
+				StringWriter subject = new StringWriter();
+				freemarkerConfig.getTemplate(type.getSubjectTemplate()).process(Collections.emptyMap(), subject);
+				subjects.put(type, subject.toString());
+			} catch (IOException | TemplateException e) {
+				throw new IllegalStateException("Could not load the templates of the " + type + " email", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the subject of the given email type.
+	 * 
+	 * @param type the email type
+	 * @return the rendered subject
+	 */
+	public String getSubject(EmailType type) {
+		return subjects.get(type);
+	}
+
+	/**
+	 * Renders the body of the given email type into the buffer of the current thread.
+	 * 
+	 * @param type the email type
+	 * @param emailData the data of the template
+	 * @return the rendered body
+	 * @throws EmailException if the template can't be rendered with the given data
+	 */
+	public String renderBody(EmailType type, Map<String, Object> emailData) throws EmailException {
+		StringWriter buffer = buffers.get();
+		buffer.getBuffer().setLength(0);
+
+		try {
+			bodies.get(type).process(emailData, buffer);
+			return buffer.toString();
+		} catch (IOException | TemplateException e) {
+			throw new EmailException(EmailMessage.EMAIL_TEMPLATE_PROCESSING_FAILED.getMessage(), e);
+		} finally {
+			if (buffer.getBuffer().capacity() > MAX_RETAINED_CAPACITY) {
+				buffers.remove();
+			}
+		}
+	}
+}
@@ -5,19 +5,14 @@ import java.util.Map;
 
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
-import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import com.vibeflow.application.dto.EmailInfo;
 import com.vibeflow.application.events.RegistrationEvent;
 import com.vibeflow.application.events.ResetPasswordEvent;
-import com.vibeflow.application.exception.EmailException;
 import com.vibeflow.application.model.User;
 import com.vibeflow.application.type.EmailTemplateData;
 import com.vibeflow.application.type.EmailType;
 
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 
 /**
@@ -30,17 +25,20 @@ import lombok.AllArgsConstructor;
 public class EventService {
 	
 	/**
-	 * The email service responsible for sending email.
+	 * The outbox service which the emails are written to, before the relay sends them.
 	 */
-    private final EmailService emailService;
+    private final EmailOutboxService emailOutboxService;
     
     /**
-     * The JWT (JSON Web Token) service used for generating email confirmation tokens.
+     * The coalescing window, which drops the reset emails already queued for the same user and throttles them per address.
      */
-    private final JwtService jwtService;
+    private final EmailCoalescingWindow emailCoalescingWindow;
 
     /**
      * Event listener method for handling user registration events.
+     * The email is written to the outbox in the transaction of the registration, so it is sent if and only if the user is saved.
+     * The outbox only stores the id and the registration date of the user: the confirmation token is created when the email is sent.
+     * It isn't coalesced, because every registration creates a new user.
      *
      * @param event The RegistrationEvent containing user registration information.
      */
@@ -51,60 +49,59 @@ public class EventService {
         Map<String, Object> emailData = new HashMap<>();
         emailData.put(EmailTemplateData.NAME.getName(), newUser.getName());
         
-        String token = jwtService.generateEmailConfirmationToken(newUser.getId(), newUser.getRegistrationDate());
-		emailData.put(EmailTemplateData.TOKEN.getName(), token);
+        emailData.put(EmailTemplateData.USER_ID.getName(), newUser.getId());
+        emailData.put(EmailTemplateData.REGISTRATION_DATE.getName(), newUser.getRegistrationDate().getTime());
 		
-		HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
-	    String baseUrl = ServletUriComponentsBuilder.fromRequestUri(request)
-	    		.replacePath(null)
-	    		.build()
-	    		.toUriString();
-	    emailData.put(EmailTemplateData.BASEURL.getName(), baseUrl);
+	    emailData.put(EmailTemplateData.BASEURL.getName(), event.getBaseUrl());
 		
-        try {
-        	/**
-        	 * Object containing information about the email.
-        	 */
-            EmailInfo emailInfo = new EmailInfo();
-            emailInfo.setType(EmailType.CONFIRM_REGISTRATION);
-            emailInfo.setEmailAddress(newUser.getEmail());
-    		emailInfo.setEmailData(emailData);
-    		
-        	emailService.sendEmail(emailInfo);
-		} catch (EmailException e) {
-			System.err.println("Could not send registration email!");
-		}
+    	/**
+    	 * Object containing information about the email.
+    	 */
+        EmailInfo emailInfo = new EmailInfo();
+        emailInfo.setType(EmailType.CONFIRM_REGISTRATION);
+        emailInfo.setEmailAddress(newUser.getEmail());
+		emailInfo.setEmailData(emailData);
+		
+		emailOutboxService.enqueue(emailInfo);
     }
     
+    /**
+     * Event listener method for handling password reset events.
+     * The email is written to the outbox, so the request doesn't wait for the email,
+     * unless a reset email was already queued for the user within the coalescing window or the address is throttled.
+     * The window is released if the email isn't written, so a failed request doesn't hold back the next one.
+     * The outbox only stores the id of the user: the reset token is created when the email is sent.
+     *
+     * @param event The ResetPasswordEvent containing the user who forgot the password.
+     */
     @EventListener
     public void handleUserResetPassword(ResetPasswordEvent event) {
     	User forgottenUser = event.getUser();     
+    	
+    	if (!emailCoalescingWindow.tryAcquire(forgottenUser.getId(), EmailType.RESET_PASSWORD, forgottenUser.getEmail())) {
+    		return;
+    	}
         
         Map<String, Object> emailData = new HashMap<>();
         emailData.put(EmailTemplateData.NAME.getName(), forgottenUser.getName());
         
-        String token = jwtService.generatePasswordResetToken(forgottenUser.getId());
-		emailData.put(EmailTemplateData.TOKEN.getName(), token);
+        emailData.put(EmailTemplateData.USER_ID.getName(), forgottenUser.getId());
+		
+	    emailData.put(EmailTemplateData.BASEURL.getName(), event.getBaseUrl());
 		
-		HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
-	    String baseUrl = ServletUriComponentsBuilder.fromRequestUri(request)
-	    		.replacePath(null)
-	    		.build()
-	    		.toUriString();
-	    emailData.put(EmailTemplateData.BASEURL.getName(), baseUrl);
+    	/**
+    	 * Object containing information about the email.
+    	 */
+        EmailInfo emailInfo = new EmailInfo();
+        emailInfo.setType(EmailType.RESET_PASSWORD);
+        emailInfo.setEmailAddress(forgottenUser.getEmail());
+		emailInfo.setEmailData(emailData);
 		
-        try {
-        	/**
-        	 * Object containing information about the email.
-        	 */
-            EmailInfo emailInfo = new EmailInfo();
-            emailInfo.setType(EmailType.RESET_PASSWORD);
-            emailInfo.setEmailAddress(forgottenUser.getEmail());
-    		emailInfo.setEmailData(emailData);
-    		
-        	emailService.sendEmail(emailInfo);
-		} catch (EmailException e) {
-			System.err.println("Could not send registration email!");
+		try {
+			emailOutboxService.enqueue(emailInfo);
+		} catch (RuntimeException e) {
+			emailCoalescingWindow.release(forgottenUser.getId(), EmailType.RESET_PASSWORD, forgottenUser.getEmail());
+			throw e;
 		}
     }
 }
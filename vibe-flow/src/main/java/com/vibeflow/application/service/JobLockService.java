@@ -0,0 +1,216 @@
+package com.vibeflow.application.service;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.model.JobLock;
+import com.vibeflow.application.repository.JobLockRepository;
+import com.vibeflow.application.utility.DateUtility;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service class running the scheduled jobs on a single node at a time. A node runs a job only if it acquires the lock of the job,
+ * and renews the lease of the lock while the job runs, so the other nodes skip the job with a single update.
+ * A job whose lease is lost is cancelled, and a lock is held for at least the interval of its job, so a job runs once per interval across the nodes.
+ * The leases are compared with the clocks of the nodes, so the lease must be much longer than the clock skew between the nodes.
+ * 
+ * @author Denis
+ */
+@Slf4j
+@Service
+public class JobLockService implements DisposableBean {
+
+	/**
+	 * The date of a lock that was never acquired, the same UTC date the migrations write in the DATETIME columns of the locks.
+	 */
+	private static final Timestamp NEVER = Timestamp.valueOf("1970-01-01 00:00:00");
+
+	/**
+	 * Instance of JobLockRepository to interact with the database.
+	 */
+	@Autowired
+	private JobLockRepository jobLockRepository;
+
+	/**
+	 * The configuration of the leases.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * The identity of this node in the locks: the process, the host and a random suffix.
+	 */
+	private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+
+	/**
+	 * The thread renewing the leases of the running jobs.
+	 */
+	private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "job-lock-renewer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Runs the given job if this node acquires its lock. The lease is renewed every third of its duration while the job runs.
+	 * If a renewal finds the lease lost, the job thread is interrupted, so the job stops at its next chunk instead of running on two nodes.
+	 * When the job ends, the lock is held until the minimum hold has passed since it was acquired,
+	 * so the other nodes, whose runs are scheduled at other times, don't run the job again within the same interval.
+	 * 
+	 * @param <T> The type of the result of the job.
+	 * @param name The name of the job.
+	 * @param minHoldMillis The minimum time, in milliseconds, the lock is held from its acquisition, usually the interval of the job.
+	 * @param job The job.
+	 * @return The result of the job, or empty if another node holds the lock.
+	 */
+	public <T> Optional<T> runExclusively(String name, long minHoldMillis, Supplier<T> job) {
+		long leaseMillis = vibeFlowProperties.getJobLockLeaseSeconds() * 1000L;
+		Timestamp acquiredAt = DateUtility.getCurrentUTCTimestamp();
+
+		if (!acquire(name, acquiredAt, leaseMillis)) {
+			log.debug("Skipped the job {}, another node holds its lock", name);
+			return Optional.empty();
+		}
+
+		Lease lease = new Lease(Thread.currentThread());
+		ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(() -> renew(name, leaseMillis, lease),
+				leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+		try {
+			return Optional.ofNullable(job.get());
+		} finally {
+			renewal.cancel(false);
+
+			if (lease.end()) {
+				Timestamp now = DateUtility.getCurrentUTCTimestamp();
+				Timestamp heldUntil = new Timestamp(Math.max(now.getTime(), acquiredAt.getTime() + minHoldMillis));
+				jobLockRepository.release(name, owner, heldUntil);
+			} else {
+				log.warn("Cancelled the job {}, its lease was lost and another node may run it", name);
+			}
+		}
+	}
+
+	/**
+	 * Returns the identity of this node in the locks.
+	 * 
+	 * @return The owner written in the locks acquired by this node.
+	 */
+	public String getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Stops renewing the leases.
+	 */
+	@Override
+	public void destroy() {
+		renewer.shutdownNow();
+	}
+
+	/**
+	 * Acquires the lock of the given job, creating it for a job run for the first time.
+	 */
+	private boolean acquire(String name, Timestamp now, long leaseMillis) {
+		Timestamp lockedUntil = new Timestamp(now.getTime() + leaseMillis);
+
+		if (jobLockRepository.acquire(name, owner, now, lockedUntil) == 1) {
+			return true;
+		}
+
+		if (jobLockRepository.existsById(name)) {
+			return false;
+		}
+
+		try {
+			JobLock jobLock = new JobLock();
+			jobLock.setName(name);
+			jobLock.setLockedUntil(NEVER);
+			jobLockRepository.saveAndFlush(jobLock);
+		} catch (DataIntegrityViolationException e) {
+			log.debug("The lock of the job {} was created by another node", name);
+		}
+
+		return jobLockRepository.acquire(name, owner, now, lockedUntil) == 1;
+	}
+
+	/**
+	 * Extends the lease of the lock of the given job, and cancels the job if the lease was lost.
+	 */
+	private void renew(String name, long leaseMillis, Lease lease) {
+		try {
+			Timestamp now = DateUtility.getCurrentUTCTimestamp();
+
+			if (jobLockRepository.renew(name, owner, now, new Timestamp(now.getTime() + leaseMillis)) == 0) {
+				lease.lose();
+			}
+		} catch (RuntimeException e) {
+			log.warn("Could not renew the lease of the job {}", name, e);
+		}
+	}
+
+	/**
+	 * The lease of a running job, which is either still held when the job ends or lost while it runs.
+	 */
+	private static class Lease {
+
+		/**
+		 * The thread running the job.
+		 */
+		private final Thread jobThread;
+
+		/**
+		 * Whether the job has ended.
+		 */
+		private boolean ended;
+
+		/**
+		 * Whether the lease was lost while the job ran.
+		 */
+		private boolean lost;
+
+		/**
+		 * Creates the lease of the job run by the given thread.
+		 */
+		private Lease(Thread jobThread) {
+			this.jobThread = jobThread;
+		}
+
+		/**
+		 * Records that the lease was lost and interrupts the job, unless it has already ended.
+		 */
+		private synchronized void lose() {
+			if (!ended && !lost) {
+				lost = true;
+				jobThread.interrupt();
+			}
+		}
+
+		/**
+		 * Records that the job has ended, clearing the interrupt of a lost lease so it doesn't leak into the next job of the thread.
+		 * 
+		 * @return true if the lease is still held, false if it was lost.
+		 */
+		private synchronized boolean end() {
+			ended = true;
+
+			if (lost) {
+				Thread.interrupted();
+			}
+			return !lost;
+		}
+	}
+}
\ No newline at end of file
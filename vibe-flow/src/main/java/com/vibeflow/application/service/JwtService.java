@@ -1,6 +1,9 @@
 package com.vibeflow.application.service;
 
+import java.security.Key;
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,28 +13,122 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.model.User;
+import com.vibeflow.application.model.UserStatus;
 import com.vibeflow.application.type.TokenClaim;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Serializer;
+import io.jsonwebtoken.jackson.io.JacksonSerializer;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 
 /**
  * Service class for handling JWT operations such as token generation and parsing.
+ * The keys and the parser are built once, and the tokens are signed with the active key of a keyring,
+ * so the secret can be rotated without invalidating the tokens already sent.
  * 
  * @author Denis
  */
 @Service
 public class JwtService {
 
+	/**
+	 * The value of the token type claim of the access tokens.
+	 */
+	public static final String ACCESS_TOKEN_TYPE = "access";
+
 	/**
      * Instance of OxygenAccountPorpertiesConfig to get the secret key
      */
 	@Autowired
 	private VibeFlowPropertiesConfig vibeFlowProperties;
 	
+	/**
+	 * The keys of the keyring, by key id.
+	 */
+	private Map<String, SecretKey> signingKeys;
+	
+	/**
+	 * The key verifying the tokens without a key id.
+	 */
+	private SecretKey legacyKey;
+	
+	/**
+	 * The instant after which the tokens without a key id are rejected, or null if they are always verified with the legacy key.
+	 */
+	private Instant legacyKeyCutoff;
+	
+	/**
+	 * The id of the key signing the new tokens, or null if they are signed with the legacy key.
+	 */
+	private String activeKeyId;
+	
+	/**
+	 * The key signing the new tokens.
+	 */
+	private SecretKey activeKey;
+	
+	/**
+	 * The JSON serializer of the tokens. The builder would otherwise look it up on every token.
+	 */
+	private Serializer<Map<String, ?>> serializer;
+	
+	/**
+	 * The parser of the tokens. It is immutable, so it is shared by all the threads.
+	 */
+	private JwtParser parser;
+	
+	/**
+	 * Decodes the keys once and builds the parser, which selects the verification key by the key id of the token.
+	 * 
+	 * @throws IllegalStateException if the active key id is not in the keyring, or the legacy key has a cutoff without an active key
+	 */
+	@PostConstruct
+	public void init() {
+		legacyKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(vibeFlowProperties.getSecretKey()));
+		
+		signingKeys = new HashMap<>();
+		for (Map.Entry<String, String> signingKey : vibeFlowProperties.getSigningKeys().entrySet()) {
+			signingKeys.put(signingKey.getKey(), Keys.hmacShaKeyFor(Decoders.BASE64.decode(signingKey.getValue())));
+		}
+		
+		activeKeyId = vibeFlowProperties.getActiveSigningKeyId();
+		if (activeKeyId == null) {
+			activeKey = legacyKey;
+		} else if (signingKeys.containsKey(activeKeyId)) {
+			activeKey = signingKeys.get(activeKeyId);
+		} else {
+			throw new IllegalStateException("The active signing key " + activeKeyId + " is not in the keyring");
+		}
+		
+		if (vibeFlowProperties.getLegacyTokensAcceptedUntil() != null) {
+			if (activeKeyId == null) {
+				throw new IllegalStateException("The tokens without a key id cannot have a cutoff while they are still signed");
+			}
+			legacyKeyCutoff = Instant.parse(vibeFlowProperties.getLegacyTokensAcceptedUntil());
+		}
+		
+		serializer = new JacksonSerializer<>();
+		
+		parser = Jwts.parserBuilder()
+				.setSigningKeyResolver(new SigningKeyResolverAdapter() {
+					@Override
+					public Key resolveSigningKey(@SuppressWarnings("rawtypes") JwsHeader header, Claims claims) {
+						return resolveKey(header.getKeyId());
+					}
+				})
+				.build();
+	}
+	
 	/**
 	 * Generates a JWT for email confirmation using the specified user ID and account creation date.
      *
@@ -63,6 +160,62 @@ public class JwtService {
 	}
 
 	
+	/**
+	 * Generates a short-lived access token of the stateless authentication for the given user.
+	 * The token carries the snapshot of the user the principal is built from, so it is verified without any lookup.
+	 * The user ID is the subject of the token rather than a claim, so an access token is never accepted as an email token.
+	 * 
+	 * @param user The authenticated user.
+	 * @return A JWT string
+	 */
+	public String generateAccessToken(User user) {
+		Map<TokenClaim, Object> claims = new HashMap<>();
+		claims.put(TokenClaim.TOKEN_TYPE, ACCESS_TOKEN_TYPE);
+		claims.put(TokenClaim.EMAIL, user.getEmail());
+		claims.put(TokenClaim.NAME, user.getName());
+		claims.put(TokenClaim.STATUS, user.getStatus().name());
+		claims.put(TokenClaim.CREATION_DATE, user.getRegistrationDate());
+		claims.put(TokenClaim.VERSION, user.getVersion());
+		
+		if (user.getDeletionDate() != null) {
+			claims.put(TokenClaim.DELETION_DATE, user.getDeletionDate());
+		}
+		
+		Date expiration = new Date(System.currentTimeMillis() + vibeFlowProperties.getAccessTokenTtlSeconds() * 1000L);
+		
+		return generateToken(claims, String.valueOf(user.getId()), expiration);
+	}
+	
+	/**
+	 * Parses the specified access token and returns the user it was issued to, without the password.
+	 * 
+	 * @param token The access token to be parsed.
+	 * @return The user described by the token.
+	 * @throws JwtException if the token is invalid, expired or is not an access token.
+	 */
+	public User parseAccessToken(String token) {
+		Claims claims = parseToken(token);
+		
+		if (!ACCESS_TOKEN_TYPE.equals(claims.get(TokenClaim.TOKEN_TYPE.getName(), String.class))) {
+			throw new UnsupportedJwtException("Not an access token");
+		}
+		
+		User user = new User();
+		user.setId(Integer.valueOf(claims.getSubject()));
+		user.setEmail(claims.get(TokenClaim.EMAIL.getName(), String.class));
+		user.setName(claims.get(TokenClaim.NAME.getName(), String.class));
+		user.setStatus(UserStatus.valueOf(claims.get(TokenClaim.STATUS.getName(), String.class)));
+		user.setVersion(claims.get(TokenClaim.VERSION.getName(), Integer.class));
+		
+		Date registrationDate = claims.get(TokenClaim.CREATION_DATE.getName(), Date.class);
+		user.setRegistrationDate(registrationDate == null ? null : new Timestamp(registrationDate.getTime()));
+		
+		Date deletionDate = claims.get(TokenClaim.DELETION_DATE.getName(), Date.class);
+		user.setDeletionDate(deletionDate == null ? null : new Timestamp(deletionDate.getTime()));
+		
+		return user;
+	}
+	
 	/**
 	 * Generates a JWT using the specified claims.
 	 * 
@@ -70,31 +223,74 @@ public class JwtService {
 	 * @return A JWT string generated with the specified claims and signed with the secret key
 	 */
 	private String generateToken(Map<TokenClaim, Object> claims) {
-		SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(vibeFlowProperties.getSecretKey()));
-
-		JwtBuilder jwtBuilder = Jwts.builder();
+		return generateToken(claims, null, null);
+	}
+	
+	/**
+	 * Generates a JWT using the specified claims, subject and expiration.
+	 * 
+	 * @param claims A map representing the claims to be included in the token.
+	 * @param subject The subject of the token, or null for none.
+	 * @param expiration The expiration of the token, or null if it doesn't expire.
+	 * @return A JWT string generated with the specified claims and signed with the secret key
+	 */
+	private String generateToken(Map<TokenClaim, Object> claims, String subject, Date expiration) {
+		JwtBuilder jwtBuilder = Jwts.builder().serializeToJsonWith(serializer);
+		
+		if (subject != null) {
+			jwtBuilder.setSubject(subject);
+		}
+		
+		if (expiration != null) {
+			jwtBuilder.setIssuedAt(new Date()).setExpiration(expiration);
+		}
+		
+		if (activeKeyId != null) {
+			jwtBuilder.setHeaderParam(JwsHeader.KEY_ID, activeKeyId);
+		}
 
 		for (Map.Entry<TokenClaim, Object> claim : claims.entrySet()) {
 			jwtBuilder.claim(claim.getKey().getName(), claim.getValue());
 		}
 
 		return jwtBuilder
-				.signWith(key)
+				.signWith(activeKey)
 				.compact();
 	}
+	
+	/**
+	 * Returns the key verifying the tokens with the given key id.
+	 * 
+	 * @param keyId The key id of the token, or null for the tokens signed before the keyring.
+	 * @return The verification key.
+	 * @throws UnsupportedJwtException if the key id is not in the keyring, or the token has no key id and the cutoff has passed.
+	 */
+	private Key resolveKey(String keyId) {
+		if (keyId == null) {
+			if (legacyKeyCutoff != null && !Instant.now().isBefore(legacyKeyCutoff)) {
+				throw new UnsupportedJwtException("The tokens without a key id are no longer accepted");
+			}
+			return legacyKey;
+		}
+		
+		SecretKey key = signingKeys.get(keyId);
+		
+		if (key == null) {
+			throw new UnsupportedJwtException("Unknown signing key " + keyId);
+		}
+		
+		return key;
+	}
 	 
 	/**
 	 * Parses the specified JWT and returns its claims.
+	 * The token is verified with the key of the keyring matching its key id, or with the secret key if it has none.
 	 * 
 	 * @param token The JWT to be parsed.
 	 * @return The claims extracted from the JWT.
 	 */
 	public Claims parseToken(String token) {
-		SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(vibeFlowProperties.getSecretKey()));
-        
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
+        return parser
                 .parseClaimsJws(token)
                 .getBody();
     }
@@ -0,0 +1,239 @@
+package com.vibeflow.application.service;
+
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.dto.EmailInfo;
+import com.vibeflow.application.dto.ReminderCandidate;
+import com.vibeflow.application.model.UserStatus;
+import com.vibeflow.application.repository.PurgeReminderRepository;
+import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.type.EmailTemplateData;
+import com.vibeflow.application.type.EmailType;
+import com.vibeflow.application.utility.DateUtility;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Service class that queues the reminder emails of the users whose account is purged within the next days.
+ * The users are streamed in pages of a keyset cursor holding only the columns of the email, so a run never loads all of them.
+ * Every page is queued in the outbox and recorded as reminded in a single transaction,
+ * so an interrupted run is resumed by the next one and a user is never reminded twice of the same deadline.
+ *
+ * @author Denis
+ */
+@Service
+public class PurgeReminderService {
+
+	/**
+	 * The number of milliseconds in a day.
+	 */
+	private static final long MILIS_IN_DAY = 24L * 60L * 60L * 1000L;
+
+	/**
+	 * The format of the deadline shown in the reminders.
+	 */
+	private static final DateTimeFormatter DEADLINE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm 'UTC'");
+
+	/**
+	 * Instance of UserRepository to stream the users to remind.
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * Instance of PurgeReminderRepository to record the queued reminders.
+	 */
+	@Autowired
+	private PurgeReminderRepository purgeReminderRepository;
+
+	/**
+	 * The outbox service which the reminders are written to, before the relay sends them.
+	 */
+	@Autowired
+	private EmailOutboxService emailOutboxService;
+
+	/**
+	 * Configuration object holding the retention periods and the configuration of the reminders.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * The registry of the reminder metrics.
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * The transaction manager of the pages of reminders.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Runs every page of reminders in its own transaction.
+	 */
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * Creates the transaction template of the pages, and checks that the links of the reminders have a base URL.
+	 * 
+	 * @throws IllegalStateException if the reminders are enabled without a base URL
+	 */
+	@PostConstruct
+	public void init() {
+		if (vibeFlowProperties.isRemindersEnabled() && (vibeFlowProperties.getBaseUrl() == null || vibeFlowProperties.getBaseUrl().isBlank())) {
+			throw new IllegalStateException("The reminders need the base URL of their links, vibe.flow.baseUrl, or vibe.flow.remindersEnabled=false");
+		}
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Queues a reminder for the users marked as "deleted" whose recovery period ends within the configured number of days.
+	 *
+	 * @return the number of queued reminders
+	 */
+	public int remindDeletedUsers() {
+		int days = vibeFlowProperties.getDaysUntilDeletion();
+
+		return remind(EmailType.DELETION_REMINDER, days, (from, to, lastDate, lastId, limit) ->
+				userRepository.findDeletionReminderCandidates(UserStatus.DELETED, from, to, EmailType.DELETION_REMINDER.name(),
+						lastDate, lastId, PageRequest.ofSize(limit)));
+	}
+
+	/**
+	 * Queues a reminder for the users marked as "new" whose email confirmation period ends within the configured number of days.
+	 * The reminder carries a new confirmation token.
+	 *
+	 * @return the number of queued reminders
+	 */
+	public int remindUnconfirmedUsers() {
+		int days = vibeFlowProperties.getDaysForEmailConfirmation();
+
+		return remind(EmailType.CONFIRMATION_REMINDER, days, (from, to, lastDate, lastId, limit) ->
+				userRepository.findConfirmationReminderCandidates(UserStatus.NEW, from, to, EmailType.CONFIRMATION_REMINDER.name(),
+						lastDate, lastId, PageRequest.ofSize(limit)));
+	}
+
+	/**
+	 * Streams the users whose deadline is after now and not after the end of the reminder period, page by page,
+	 * and queues their reminders at no more than the configured rate.
+	 *
+	 * @param type the type of the reminder email
+	 * @param days the number of days after the reference date at which a user is purged
+	 * @param findPage the query of a single page of the users to remind
+	 * @return the number of queued reminders
+	 */
+	private int remind(EmailType type, int days, PageQuery findPage) {
+		String baseUrl = vibeFlowProperties.getBaseUrl();
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+		Timestamp from = new Timestamp(now.getTime() - days * MILIS_IN_DAY);
+		Timestamp to = new Timestamp(from.getTime() + vibeFlowProperties.getReminderDaysBefore() * MILIS_IN_DAY);
+		int batchSize = vibeFlowProperties.getReminderBatchSize();
+
+		Timestamp lastDate = from;
+		int lastId = 0;
+		int queued = 0;
+		long start = System.nanoTime();
+
+		while (!Thread.currentThread().isInterrupted()) {
+			List<ReminderCandidate> page = findPage.find(from, to, lastDate, lastId, batchSize);
+			if (page.isEmpty()) {
+				break;
+			}
+
+			transactionTemplate.executeWithoutResult(status -> page.forEach(candidate -> queue(type, days, candidate, baseUrl, now)));
+			queued += page.size();
+			meterRegistry.counter("vibeflow.reminder.queued", "type", type.name()).increment(page.size());
+
+			ReminderCandidate last = page.get(page.size() - 1);
+			lastDate = last.getReferenceDate();
+			lastId = last.getId();
+
+			if (page.size() < batchSize) {
+				break;
+			}
+			throttle(queued, start);
+		}
+
+		return queued;
+	}
+
+	/**
+	 * Records the reminder of the given user and writes its email to the outbox.
+	 */
+	private void queue(EmailType type, int days, ReminderCandidate candidate, String baseUrl, Timestamp now) {
+		purgeReminderRepository.insert(candidate.getId(), type.name(), candidate.getReferenceDate(), now);
+
+		Timestamp deadline = new Timestamp(candidate.getReferenceDate().getTime() + days * MILIS_IN_DAY);
+
+		Map<String, Object> emailData = new HashMap<>();
+		emailData.put(EmailTemplateData.NAME.getName(), candidate.getName());
+		emailData.put(EmailTemplateData.BASEURL.getName(), baseUrl);
+		emailData.put(EmailTemplateData.DEADLINE.getName(), DEADLINE_FORMAT.format(deadline.toLocalDateTime()));
+
+		if (type == EmailType.CONFIRMATION_REMINDER) {
+			emailData.put(EmailTemplateData.USER_ID.getName(), candidate.getId());
+			emailData.put(EmailTemplateData.REGISTRATION_DATE.getName(), candidate.getReferenceDate().getTime());
+		}
+
+		EmailInfo emailInfo = new EmailInfo();
+		emailInfo.setType(type);
+		emailInfo.setEmailAddress(candidate.getEmail());
+		emailInfo.setEmailData(emailData);
+
+		emailOutboxService.enqueue(emailInfo);
+	}
+
+	/**
+	 * Waits until the given number of reminders is within the configured rate since the start of the run.
+	 * A rate of zero doesn't limit the reminders.
+	 */
+	private void throttle(int queued, long start) {
+		int rate = vibeFlowProperties.getReminderRatePerSecond();
+		if (rate <= 0) {
+			return;
+		}
+
+		long aheadMillis = queued * 1000L / rate - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		if (aheadMillis > 0) {
+			try {
+				Thread.sleep(aheadMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The query of a single page of the users to remind.
+	 */
+	@FunctionalInterface
+	private interface PageQuery {
+
+		/**
+		 * Finds the users whose reference date is within the range and after the cursor.
+		 *
+		 * @param from the exclusive lower bound of the reference date
+		 * @param to the inclusive upper bound of the reference date
+		 * @param lastDate the reference date of the last user of the previous page
+		 * @param lastId the id of the last user of the previous page
+		 * @param limit the size of the page
+		 * @return the users of the page, ordered by reference date and id
+		 */
+		List<ReminderCandidate> find(Timestamp from, Timestamp to, Timestamp lastDate, int lastId, int limit);
+	}
+}
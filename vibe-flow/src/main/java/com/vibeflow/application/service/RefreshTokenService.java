@@ -0,0 +1,206 @@
+package com.vibeflow.application.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.dto.TokenDto;
+import com.vibeflow.application.exception.InternalErrorCode;
+import com.vibeflow.application.exception.VibeFlowException;
+import com.vibeflow.application.messages.Message;
+import com.vibeflow.application.model.RefreshToken;
+import com.vibeflow.application.model.User;
+import com.vibeflow.application.model.UserStatus;
+import com.vibeflow.application.repository.RefreshTokenRepository;
+import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.utility.DateUtility;
+
+/**
+ * Service class issuing the tokens of the stateless authentication.
+ * The access tokens are signed JWTs verified without any lookup; the refresh tokens are random values stored as hashes,
+ * rotated on every use, and revoked together when a used token is presented again.
+ * 
+ * @author Denis
+ */
+@Service
+public class RefreshTokenService {
+
+	/**
+	 * The number of random bytes of a refresh token.
+	 */
+	private static final int TOKEN_BYTES = 32;
+
+	/**
+	 * The number of milliseconds in a day.
+	 */
+	private static final long MILIS_IN_DAY = 24L * 60L * 60L * 1000L;
+
+	/**
+	 * The source of the refresh tokens.
+	 */
+	private final SecureRandom secureRandom = new SecureRandom();
+
+	/**
+	 * Instance of RefreshTokenRepository to interact with the database.
+	 */
+	@Autowired
+	private RefreshTokenRepository refreshTokenRepository;
+
+	/**
+	 * Instance of UserRepository to reload the user of a refresh token.
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * The JWT (JSON Web Token) service used for generating the access tokens.
+	 */
+	@Autowired
+	private JwtService jwtService;
+
+	/**
+	 * Configuration object holding the lifetimes of the tokens.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * Issues an access token and a new refresh token for the given user, and deletes the expired refresh tokens of the user.
+	 * 
+	 * @param user The authenticated user.
+	 * @return The issued tokens.
+	 */
+	public TokenDto issueTokens(User user) {
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+		refreshTokenRepository.deleteExpired(user.getId(), now);
+
+		byte[] bytes = new byte[TOKEN_BYTES];
+		secureRandom.nextBytes(bytes);
+		String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+		RefreshToken storedToken = new RefreshToken();
+		storedToken.setTokenHash(hash(refreshToken));
+		storedToken.setUserId(user.getId());
+		storedToken.setCreatedAt(now);
+		storedToken.setExpiresAt(new Timestamp(now.getTime() + vibeFlowProperties.getRefreshTokenTtlDays() * MILIS_IN_DAY));
+		refreshTokenRepository.save(storedToken);
+
+		return new TokenDto(jwtService.generateAccessToken(user), refreshToken, vibeFlowProperties.getAccessTokenTtlSeconds());
+	}
+
+	/**
+	 * Exchanges the given refresh token for new tokens, built from the current state of the user.
+	 * The token is revoked by a conditional update, so it is used only once. A token used again may have been stolen,
+	 * so all the refresh tokens of its user are revoked.
+	 * 
+	 * @param refreshToken The refresh token issued with the last access token.
+	 * @return The new tokens.
+	 * @throws VibeFlowException if the token is unknown, expired or already used, or its user cannot log in anymore.
+	 */
+	public TokenDto refreshTokens(String refreshToken) {
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+		RefreshToken storedToken = findToken(refreshToken);
+
+		if (storedToken.getRevokedAt() != null || refreshTokenRepository.revoke(storedToken.getTokenHash(), now) == 0) {
+			refreshTokenRepository.revokeAllByUserId(storedToken.getUserId(), now);
+			throw invalidToken();
+		}
+
+		if (storedToken.getExpiresAt().before(now)) {
+			throw invalidToken();
+		}
+
+		User user = userRepository.findById(storedToken.getUserId().intValue());
+		if (user == null || user.getStatus() == UserStatus.NEW) {
+			throw invalidToken();
+		}
+
+		return issueTokens(user);
+	}
+
+	/**
+	 * Revokes the given refresh token, so the client is logged out once its access token expires.
+	 * 
+	 * @param refreshToken The refresh token to revoke.
+	 * @throws VibeFlowException if the token is unknown.
+	 */
+	public void revokeToken(String refreshToken) {
+		refreshTokenRepository.revoke(findToken(refreshToken).getTokenHash(), DateUtility.getCurrentUTCTimestamp());
+	}
+
+	/**
+	 * Permanently deletes, in chunks, the refresh tokens of all the users which expired, and those revoked for longer
+	 * than the retention. The revoked tokens are kept meanwhile, so a stolen token used again is still detected.
+	 * The deletion stops when the time budget is spent, the next run resumes it.
+	 * 
+	 * @return The number of deleted tokens.
+	 */
+	public int deleteExpiredTokens() {
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+		Timestamp revokedBefore = new Timestamp(now.getTime() - TimeUnit.MINUTES.toMillis(vibeFlowProperties.getRefreshTokenRevokedRetentionMinutes()));
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(vibeFlowProperties.getPurgeTimeBudgetMillis());
+
+		return deleteInChunks(refreshTokenRepository::deleteChunkByExpiresAtBefore, now, deadline)
+				+ deleteInChunks(refreshTokenRepository::deleteChunkByRevokedAtBefore, revokedBefore, deadline);
+	}
+
+	/**
+	 * Runs the given chunked deletion until it deletes less than a chunk, the deadline passes or the thread is interrupted.
+	 */
+	private int deleteInChunks(BiFunction<Timestamp, Integer, Integer> deleteChunk, Timestamp before, long deadline) {
+		int chunkSize = vibeFlowProperties.getPurgeChunkSize();
+		int total = 0;
+
+		while (System.nanoTime() - deadline < 0 && !Thread.currentThread().isInterrupted()) {
+			int deleted = deleteChunk.apply(before, chunkSize);
+			total += deleted;
+
+			if (deleted < chunkSize) {
+				break;
+			}
+		}
+
+		return total;
+	}
+
+	/**
+	 * Finds the stored refresh token matching the given token.
+	 */
+	private RefreshToken findToken(String refreshToken) {
+		if (refreshToken == null || refreshToken.isEmpty()) {
+			throw invalidToken();
+		}
+
+		return refreshTokenRepository.findById(hash(refreshToken)).orElseThrow(this::invalidToken);
+	}
+
+	/**
+	 * Returns the hex encoded SHA-256 hash of the given token.
+	 */
+	private String hash(String refreshToken) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Creates the exception of a refresh token which cannot be used.
+	 */
+	private VibeFlowException invalidToken() {
+		return new VibeFlowException(Message.INVALID_REFRESH_TOKEN, HttpStatus.UNAUTHORIZED, InternalErrorCode.INVALID_REFRESH_TOKEN);
+	}
+}
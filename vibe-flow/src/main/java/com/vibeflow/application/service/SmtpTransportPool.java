@@ -0,0 +1,279 @@
+package com.vibeflow.application.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.exception.CircuitOpenException;
+import com.vibeflow.application.utility.CircuitBreaker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pool of authenticated SMTP connections. A batch of emails is sent over one connection, which is kept open
+ * for the next batch, so the connection, the STARTTLS handshake and the authentication are paid once per connection
+ * instead of once per email.
+ * 
+ * @author Denis
+ */
+@Slf4j
+@Component
+public class SmtpTransportPool implements DisposableBean {
+
+	/**
+	 * The mail sender holding the session and the server properties.
+	 */
+	private final JavaMailSenderImpl mailSender;
+
+	/**
+	 * The permits of the connections, which bound the number of open connections.
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * The idle connections, the most recently used first.
+	 */
+	private final ConcurrentLinkedDeque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+
+	/**
+	 * The time, in milliseconds, after which an idle connection is closed instead of reused.
+	 */
+	private final long idleTimeoutMillis;
+
+	/**
+	 * The number of emails after which a connection is replaced.
+	 */
+	private final int maxMessagesPerConnection;
+
+	/**
+	 * Counts the opened connections.
+	 */
+	private final Counter openedConnections;
+
+	/**
+	 * The circuit breaker around the SMTP server.
+	 */
+	private final CircuitBreaker circuitBreaker;
+
+	/**
+	 * Creates the pool.
+	 * 
+	 * @param mailSender the mail sender holding the session and the server properties
+	 * @param vibeFlowProperties the configuration of the pool
+	 * @param meterRegistry the registry of the pool metrics
+	 */
+	public SmtpTransportPool(JavaMailSenderImpl mailSender, VibeFlowPropertiesConfig vibeFlowProperties, MeterRegistry meterRegistry) {
+		this.mailSender = mailSender;
+		this.permits = new Semaphore(vibeFlowProperties.getSmtpPoolSize(), true);
+		this.idleTimeoutMillis = vibeFlowProperties.getSmtpIdleTimeoutSeconds() * 1000L;
+		this.maxMessagesPerConnection = vibeFlowProperties.getSmtpMaxMessagesPerConnection();
+		this.openedConnections = Counter.builder("vibeflow.smtp.connections.opened")
+				.description("SMTP connections opened by the pool")
+				.register(meterRegistry);
+		this.circuitBreaker = new CircuitBreaker("smtp", vibeFlowProperties.getSmtpCircuitFailureThreshold(),
+				vibeFlowProperties.getSmtpCircuitOpenMillis(), vibeFlowProperties.getSmtpCircuitHalfOpenTrials(), meterRegistry);
+	}
+
+	/**
+	 * Sends the given messages over one pooled connection. A message is sent again on a new connection
+	 * when the server closed the connection, and its failure is returned otherwise, so one rejected message
+	 * doesn't fail the others. If no new connection can be opened, the remaining messages fail with the same error.
+	 * A batch whose connection failed counts as a failure of the circuit breaker; while the breaker is open,
+	 * the batches are rejected without connecting to the server.
+	 * 
+	 * @param messages the messages to send
+	 * @return the failure of every message, in the order of the messages, or null for the sent messages
+	 * @throws CircuitOpenException if the circuit breaker rejects the batch, in which case no message was sent
+	 * @throws MessagingException if no connection could be opened before sending the first message
+	 */
+	public List<MessagingException> send(List<MimeMessage> messages) throws MessagingException {
+		if (!circuitBreaker.tryAcquire()) {
+			throw new CircuitOpenException("The SMTP server is unavailable, the circuit breaker is open");
+		}
+
+		List<MessagingException> failures = new ArrayList<>(messages.size());
+		boolean connectionHealthy = false;
+
+		permits.acquireUninterruptibly();
+		PooledTransport transport = null;
+		try {
+			transport = borrow();
+
+			for (MimeMessage message : messages) {
+				try {
+					if (transport.messages >= maxMessagesPerConnection) {
+						close(transport);
+						transport = null;
+						transport = connect();
+					}
+					failures.add(sendMessage(transport, message));
+				} catch (MessagingException e) {
+					if (transport != null) {
+						close(transport);
+						transport = null;
+					}
+					try {
+						transport = connect();
+						failures.add(sendMessage(transport, message));
+					} catch (MessagingException retryFailure) {
+						if (transport != null) {
+							close(transport);
+							transport = null;
+						}
+						while (failures.size() < messages.size()) {
+							failures.add(retryFailure);
+						}
+						break;
+					}
+				}
+			}
+
+			if (transport != null) {
+				connectionHealthy = true;
+				transport.lastUsed = System.currentTimeMillis();
+				idle.addFirst(transport);
+				transport = null;
+			}
+			return failures;
+		} finally {
+			if (transport != null) {
+				close(transport);
+			}
+			permits.release();
+
+			if (connectionHealthy) {
+				circuitBreaker.onSuccess();
+			} else {
+				circuitBreaker.onFailure();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the circuit breaker currently rejects the batches.
+	 * 
+	 * @return true if the circuit breaker is open
+	 */
+	public boolean isCircuitOpen() {
+		return circuitBreaker.isOpen();
+	}
+
+	/**
+	 * Closes the idle connections.
+	 */
+	@Override
+	public void destroy() {
+		PooledTransport transport;
+		while ((transport = idle.pollFirst()) != null) {
+			close(transport);
+		}
+	}
+
+	/**
+	 * Sends a message over the given connection.
+	 * 
+	 * @return the failure of the message, or null if the message was sent
+	 * @throws MessagingException if the connection is no longer usable
+	 */
+	private MessagingException sendMessage(PooledTransport transport, MimeMessage message) throws MessagingException {
+		try {
+			if (message.getSentDate() == null) {
+				message.setSentDate(new Date());
+			}
+			message.saveChanges();
+
+			transport.transport.sendMessage(message, message.getAllRecipients());
+			transport.messages++;
+			return null;
+		} catch (MessagingException e) {
+			if (!transport.transport.isConnected()) {
+				throw e;
+			}
+			return e;
+		}
+	}
+
+	/**
+	 * Takes an idle connection, closing the expired ones, or opens a new connection.
+	 */
+	private PooledTransport borrow() throws MessagingException {
+		long now = System.currentTimeMillis();
+		PooledTransport transport;
+
+		while ((transport = idle.pollFirst()) != null) {
+			if (now - transport.lastUsed < idleTimeoutMillis && transport.transport.isConnected()) {
+				return transport;
+			}
+			close(transport);
+		}
+
+		return connect();
+	}
+
+	/**
+	 * Opens and authenticates a new connection.
+	 */
+	private PooledTransport connect() throws MessagingException {
+		String protocol = mailSender.getProtocol();
+		if (protocol == null) {
+			protocol = mailSender.getSession().getProperty("mail.transport.protocol");
+		}
+
+		Transport transport = mailSender.getSession().getTransport(protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL);
+		transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+		openedConnections.increment();
+
+		return new PooledTransport(transport);
+	}
+
+	/**
+	 * Closes the given connection, ignoring the errors of a connection the server already closed.
+	 */
+	private void close(PooledTransport transport) {
+		try {
+			transport.transport.close();
+		} catch (MessagingException e) {
+			log.debug("Could not close an SMTP connection", e);
+		}
+	}
+
+	/**
+	 * An open connection with its usage.
+	 */
+	private static class PooledTransport {
+
+		/**
+		 * The connection.
+		 */
+		private final Transport transport;
+
+		/**
+		 * The number of messages sent over the connection.
+		 */
+		private int messages;
+
+		/**
+		 * The time the connection was last returned to the pool.
+		 */
+		private long lastUsed;
+
+		/**
+		 * Wraps the given connection.
+		 */
+		private PooledTransport(Transport transport) {
+			this.transport = transport;
+		}
+	}
+}
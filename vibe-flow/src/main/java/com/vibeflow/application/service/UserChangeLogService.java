@@ -0,0 +1,235 @@
+package com.vibeflow.application.service;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.stereotype.Service;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.model.User;
+import com.vibeflow.application.model.UserChangeLog;
+import com.vibeflow.application.repository.UserChangeLogRepository;
+import com.vibeflow.application.security.CaffeineUserCache;
+import com.vibeflow.application.utility.DateUtility;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service class keeping the caches of the users of every node coherent through a change log in the database, without a message broker.
+ * Every change of a user appends the id, the email and the new version of the user to the change log, in the transaction of the change.
+ * Every node polls the change log with a cursor and evicts the changed users from its second-level cache and its user details cache.
+ * Every poll reads again the changes logged within the longest transaction and poll interval, so a change committed after a higher id is not missed.
+ * The change log is truncated after the retention period, and a node which didn't poll for longer than that evicts all its users.
+ * 
+ * @author Denis
+ */
+@Slf4j
+@Service
+public class UserChangeLogService {
+
+	/**
+	 * The number of milliseconds in a minute.
+	 */
+	private static final long MILIS_IN_MINUTE = 60L * 1000L;
+
+	/**
+	 * Instance of UserChangeLogRepository to append to and read the change log.
+	 */
+	@Autowired
+	private UserChangeLogRepository userChangeLogRepository;
+
+	/**
+	 * The entity manager factory, used to evict the second-level cache of the users.
+	 */
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * The cache of the user details loaded by the logins.
+	 */
+	@Autowired
+	private UserCache userCache;
+
+	/**
+	 * The filter of the registered emails, which is told how many emails were purged.
+	 */
+	@Autowired
+	private EmailExistenceFilter emailExistenceFilter;
+
+	/**
+	 * Configuration object holding the page size and the retention period of the change log.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * The registry of the change log metrics.
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * The highest id read so far, from which the next poll reads the new changes.
+	 */
+	private long currentCursor;
+
+	/**
+	 * The time of the last poll, in milliseconds, or zero until the cursor is initialized.
+	 */
+	private volatile long lastPollMillis;
+
+	/**
+	 * Records the time between a change and its eviction by this node.
+	 */
+	private Timer lag;
+
+	/**
+	 * Registers the metrics of the change log: the lag of the evictions and the time since the last poll.
+	 */
+	@PostConstruct
+	public void registerMetrics() {
+		lag = Timer.builder("vibeflow.user.changes.lag")
+				.description("Time between a change of a user and its eviction from the caches of this node")
+				.register(meterRegistry);
+
+		Gauge.builder("vibeflow.user.changes.staleness", this, service -> service.lastPollMillis == 0
+				? Double.NaN
+				: (DateUtility.getCurrentUTCTimestamp().getTime() - service.lastPollMillis) / 1000.0)
+				.description("Time since this node last read the change log of the users")
+				.baseUnit("seconds")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Starts the cursor at the end of the change log once the application started, because the caches are empty at startup.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void init() {
+		currentCursor = userChangeLogRepository.findMaxId();
+		lastPollMillis = DateUtility.getCurrentUTCTimestamp().getTime();
+	}
+
+	/**
+	 * Appends the change of the given user to the change log. It must run in the transaction of the change.
+	 * 
+	 * @param userId the id of the changed user
+	 */
+	public void logChange(int userId) {
+		userChangeLogRepository.logChanges(List.of(userId), false, DateUtility.getCurrentUTCTimestamp());
+	}
+
+	/**
+	 * Appends the deletion of the given users to the change log. It must run in the transaction of the deletion, before the users are deleted.
+	 * 
+	 * @param userIds the ids of the users about to be deleted
+	 */
+	public void logDeletions(Collection<Integer> userIds) {
+		userChangeLogRepository.logChanges(userIds, true, DateUtility.getCurrentUTCTimestamp());
+	}
+
+	/**
+	 * Reads the changes logged since the last poll, page by page, and the recent changes again, and evicts the changed users from the caches of this node.
+	 * The recent changes are those logged within the longest transaction, the poll interval and the clock skew between the nodes,
+	 * so a change committed after a higher id was read is evicted by the first poll that can see it.
+	 * The deletions also evict the emails resolved by the second-level cache, and are counted by the email filter.
+	 * 
+	 * @return the number of changes read for the first time
+	 */
+	public synchronized int poll() {
+		if (lastPollMillis == 0) {
+			return 0;
+		}
+
+		long now = DateUtility.getCurrentUTCTimestamp().getTime();
+		if (now - lastPollMillis > vibeFlowProperties.getUserChangeRetentionMinutes() * MILIS_IN_MINUTE) {
+			log.warn("The change log of the users was not read for longer than its retention, so all the cached users are evicted");
+			entityManagerFactory.getCache().evict(User.class);
+			entityManagerFactory.unwrap(SessionFactory.class).getCache().evictNaturalIdData(User.class);
+			if (userCache instanceof CaffeineUserCache caffeineUserCache) {
+				caffeineUserCache.clear();
+			}
+		}
+
+		int batchSize = vibeFlowProperties.getUserChangePollBatchSize();
+		long knownCursor = currentCursor;
+		long cursor = knownCursor;
+		int newChanges = 0;
+		int deletions = 0;
+
+		Timestamp recentSince = new Timestamp(now - vibeFlowProperties.getMaxTransactionSeconds() * 1000L
+				- vibeFlowProperties.getUserChangePollIntervalMillis() - vibeFlowProperties.getExpirySkewAllowanceSeconds() * 1000L);
+		for (UserChangeLog change : userChangeLogRepository.findByChangedAtGreaterThanEqualAndIdLessThanEqual(recentSince, knownCursor)) {
+			evict(change);
+		}
+
+		while (true) {
+			List<UserChangeLog> page = userChangeLogRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.ofSize(batchSize));
+
+			for (UserChangeLog change : page) {
+				evict(change);
+				newChanges++;
+				deletions += change.isDeleted() ? 1 : 0;
+				lag.record(Math.max(0, now - change.getChangedAt().getTime()), TimeUnit.MILLISECONDS);
+				cursor = change.getId();
+			}
+
+			if (page.size() < batchSize) {
+				break;
+			}
+		}
+
+		if (deletions > 0) {
+			entityManagerFactory.unwrap(SessionFactory.class).getCache().evictNaturalIdData(User.class);
+			emailExistenceFilter.onPurged(deletions);
+		}
+
+		currentCursor = cursor;
+		lastPollMillis = now;
+
+		return newChanges;
+	}
+
+	/**
+	 * Evicts the user of the given change from the second-level cache and the user details cache.
+	 */
+	private void evict(UserChangeLog change) {
+		entityManagerFactory.getCache().evict(User.class, change.getUserId());
+		userCache.removeUserFromCache(change.getEmail());
+	}
+
+	/**
+	 * Deletes the changes logged before the retention period, in bounded chunks.
+	 * 
+	 * @return the number of deleted changes
+	 */
+	public int truncate() {
+		Timestamp before = new Timestamp(DateUtility.getCurrentUTCTimestamp().getTime()
+				- vibeFlowProperties.getUserChangeRetentionMinutes() * MILIS_IN_MINUTE);
+		int chunkSize = vibeFlowProperties.getPurgeChunkSize();
+		int total = 0;
+
+		while (!Thread.currentThread().isInterrupted()) {
+			int deleted = userChangeLogRepository.deleteChunkByChangedAtBefore(before, chunkSize);
+			total += deleted;
+
+			if (deleted < chunkSize) {
+				break;
+			}
+		}
+
+		return total;
+	}
+}
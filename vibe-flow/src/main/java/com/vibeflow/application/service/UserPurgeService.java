@@ -0,0 +1,267 @@
+package com.vibeflow.application.service;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.dto.PurgeSummary;
+import com.vibeflow.application.model.ExpiryWatermark;
+import com.vibeflow.application.model.UserStatus;
+import com.vibeflow.application.repository.ExpiryWatermarkRepository;
+import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.utility.DateUtility;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Service class that permanently deletes expired users in bounded chunks.
+ * Every chunk is locked by id, logged to the change log of the users and deleted by id in its own transaction,
+ * so a purge never loads users into memory, never holds the users table for longer than one chunk,
+ * and every node evicts the purged users from its caches.
+ * The purges are incremental: a run only deletes the users whose deadline passed since the watermark of the previous run,
+ * so frequent runs spread the deletions over the day. A periodic run scans all the expired users,
+ * so the users whose deadline fell below the watermark, such as those of a shortened retention period, are purged too.
+ * 
+ * @author Denis
+ */
+@Service
+public class UserPurgeService {
+
+	/**
+	 * The expiry job of the users marked as "deleted".
+	 */
+	public static final String DELETED_USERS = "deleted-users";
+
+	/**
+	 * The expiry job of the users marked as "new".
+	 */
+	public static final String UNCONFIRMED_USERS = "unconfirmed-users";
+
+	/**
+	 * The number of milliseconds in a day.
+	 */
+	private static final long MILIS_IN_DAY = 24L * 60L * 60L * 1000L;
+
+	/**
+	 * The lower bound of a full scan, and the watermark of a job that never ran.
+	 */
+	private static final Timestamp BEGINNING = Timestamp.valueOf("1970-01-01 00:00:00");
+
+	/**
+	 * Instance of UserRepository to interact with the database.
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * Instance of ExpiryWatermarkRepository to persist the progress of the expiry jobs.
+	 */
+	@Autowired
+	private ExpiryWatermarkRepository expiryWatermarkRepository;
+
+	/**
+	 * Configuration object holding the retention periods, the chunk size and the time budget.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * The registry of the expiry metrics.
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * The change log of the users, to which the purged users are appended.
+	 */
+	@Autowired
+	private UserChangeLogService userChangeLogService;
+
+	/**
+	 * The transaction manager of the chunks.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Runs every chunk in its own transaction.
+	 */
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * The last known watermark of every expiry job, in milliseconds, read by the lag gauges.
+	 */
+	private final Map<String, AtomicLong> watermarks = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates the transaction template of the chunks, and registers the lag gauge of every expiry job:
+	 * the time between the current deadline and the watermark of the job.
+	 */
+	@PostConstruct
+	public void init() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		registerLag(DELETED_USERS, vibeFlowProperties::getDaysUntilDeletion);
+		registerLag(UNCONFIRMED_USERS, vibeFlowProperties::getDaysForEmailConfirmation);
+	}
+
+	/**
+	 * Permanently deletes the users marked as "deleted" whose recovery period ended since the previous run.
+	 * 
+	 * @return the summary of the purge run
+	 */
+	public PurgeSummary purgeDeletedUsers() {
+		return purgeIncrementally(DELETED_USERS, vibeFlowProperties.getDaysUntilDeletion(),
+				(from, cutoff, limit) -> userRepository.lockChunkByDeletionDateBetween(UserStatus.DELETED.getCode(), from, cutoff, limit));
+	}
+
+	/**
+	 * Permanently deletes the users marked as "new" whose email confirmation period ended since the previous run.
+	 * 
+	 * @return the summary of the purge run
+	 */
+	public PurgeSummary purgeUnconfirmedUsers() {
+		return purgeIncrementally(UNCONFIRMED_USERS, vibeFlowProperties.getDaysForEmailConfirmation(),
+				(from, cutoff, limit) -> userRepository.lockChunkByRegistrationDateBetween(UserStatus.NEW.getCode(), from, cutoff, limit));
+	}
+
+	/**
+	 * Deletes the users whose deadline is after the watermark of the job and not after the current deadline.
+	 * The range starts a skew allowance before the watermark, so the users dated by a node whose clock is behind are not missed.
+	 * The watermark moves to the current deadline only when the run completes, so an interrupted run is resumed by the next one.
+	 * The range starts at the beginning of time instead on the first run, once per full scan interval and when the retention period changed,
+	 * so the users whose deadline is below the watermark are not left behind.
+	 * 
+	 * @param job the name of the expiry job
+	 * @param days the number of days after which a user expires
+	 * @param lockChunk the statement locking a single chunk of a range and returning the ids of its users
+	 * @return the summary of the purge run
+	 */
+	private PurgeSummary purgeIncrementally(String job, int days, ChunkLock lockChunk) {
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+		Timestamp cutoff = new Timestamp(now.getTime() - days * MILIS_IN_DAY);
+		int chunkSize = vibeFlowProperties.getPurgeChunkSize();
+
+		ExpiryWatermark watermark = expiryWatermarkRepository.findById(job).orElseGet(() -> {
+			ExpiryWatermark initial = new ExpiryWatermark();
+			initial.setJob(job);
+			initial.setWatermark(BEGINNING);
+			return initial;
+		});
+		boolean fullScan = watermark.getFullScanAt() == null
+				|| now.getTime() - watermark.getFullScanAt().getTime() >= vibeFlowProperties.getExpiryFullScanIntervalMillis()
+				|| !Integer.valueOf(days).equals(watermark.getRetentionDays());
+		Timestamp from = fullScan
+				? BEGINNING
+				: new Timestamp(watermark.getWatermark().getTime() - vibeFlowProperties.getExpirySkewAllowanceSeconds() * 1000L);
+
+		PurgeSummary summary = purge(() -> deleteChunk(lockChunk, from, cutoff, chunkSize));
+
+		if (summary.isCompleted()) {
+			watermark.setWatermark(cutoff);
+			watermark.setUpdatedAt(now);
+			watermark.setRetentionDays(days);
+			if (fullScan) {
+				watermark.setFullScanAt(now);
+				meterRegistry.counter("vibeflow.expiry.full_scans", "job", job).increment();
+			}
+			expiryWatermarkRepository.save(watermark);
+		}
+
+		watermarks.computeIfAbsent(job, key -> new AtomicLong()).set(watermark.getWatermark().getTime());
+		meterRegistry.counter("vibeflow.expiry.purged", "job", job).increment(summary.getTotalPurged());
+		meterRegistry.timer("vibeflow.expiry.run", "job", job).record(summary.getElapsedMillis(), TimeUnit.MILLISECONDS);
+
+		return summary;
+	}
+
+	/**
+	 * Locks a single chunk of the users expired within a range, appends them to the change log and deletes them, in a single transaction.
+	 * 
+	 * @param lockChunk the statement locking a single chunk of a range and returning the ids of its users
+	 * @param from the exclusive lower bound of the deadline
+	 * @param cutoff the inclusive upper bound of the deadline
+	 * @param limit the maximum number of users to delete
+	 * @return the number of deleted users
+	 */
+	private int deleteChunk(ChunkLock lockChunk, Timestamp from, Timestamp cutoff, int limit) {
+		return transactionTemplate.execute(status -> {
+			List<Integer> ids = lockChunk.lock(from, cutoff, limit);
+			if (ids.isEmpty()) {
+				return 0;
+			}
+
+			userChangeLogService.logDeletions(ids);
+			return userRepository.deleteByIds(ids);
+		});
+	}
+
+	/**
+	 * Runs the given chunk deletion until a chunk deletes fewer users than the chunk size, the time budget is exhausted
+	 * or the job is cancelled because its lease was lost.
+	 * 
+	 * @param deleteChunk the statement deleting a single chunk and returning the number of deleted users
+	 * @return the summary of the purge run
+	 */
+	private PurgeSummary purge(IntSupplier deleteChunk) {
+		PurgeSummary summary = new PurgeSummary();
+		long start = System.nanoTime();
+		long budget = TimeUnit.MILLISECONDS.toNanos(vibeFlowProperties.getPurgeTimeBudgetMillis());
+
+		while (System.nanoTime() - start < budget && !Thread.currentThread().isInterrupted()) {
+			int purged = deleteChunk.getAsInt();
+			summary.getPurgedPerChunk().add(purged);
+
+			if (purged < vibeFlowProperties.getPurgeChunkSize()) {
+				summary.setCompleted(true);
+				break;
+			}
+		}
+
+		summary.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return summary;
+	}
+
+	/**
+	 * Registers the lag gauge of the given expiry job. The gauge has no value until the job ran on this node.
+	 */
+	private void registerLag(String job, IntSupplier days) {
+		AtomicLong watermark = watermarks.computeIfAbsent(job, key -> new AtomicLong(Long.MIN_VALUE));
+
+		Gauge.builder("vibeflow.expiry.lag", watermark, value -> value.get() == Long.MIN_VALUE
+				? Double.NaN
+				: Math.max(0, DateUtility.getCurrentUTCTimestamp().getTime() - days.getAsInt() * MILIS_IN_DAY - value.get()) / 1000.0)
+				.description("Time between the current deadline and the watermark of the expiry job")
+				.baseUnit("seconds")
+				.tag("job", job)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * The statement locking a single chunk of the users expired within a range.
+	 */
+	@FunctionalInterface
+	private interface ChunkLock {
+
+		/**
+		 * Locks a chunk of the users whose deadline is after the lower bound and not after the cutoff.
+		 * 
+		 * @param from the exclusive lower bound of the deadline
+		 * @param cutoff the inclusive upper bound of the deadline
+		 * @param limit the maximum number of users to lock
+		 * @return the ids of the locked users
+		 */
+		List<Integer> lock(Timestamp from, Timestamp cutoff, int limit);
+	}
+}
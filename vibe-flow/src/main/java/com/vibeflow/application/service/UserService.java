@@ -2,14 +2,29 @@ package com.vibeflow.application.service;
 
 import java.sql.Timestamp;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.IntSupplier;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import com.vibeflow.application.config.VibeFlowPropertiesConfig;
 import com.vibeflow.application.dto.ChangePasswordDto;
@@ -23,12 +38,15 @@ import com.vibeflow.application.exception.UserNotAuthenticatedException;
 import com.vibeflow.application.messages.Message;
 import com.vibeflow.application.model.User;
 import com.vibeflow.application.model.UserStatus;
+import com.vibeflow.application.repository.RefreshTokenRepository;
 import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.security.VibeFlowUserPrincipal;
 import com.vibeflow.application.type.TokenClaim;
 import com.vibeflow.application.utility.DateUtility;
 import com.vibeflow.application.events.ResetPasswordEvent;
 
 import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpSession;
 import lombok.AllArgsConstructor;
 
 /**
@@ -43,6 +61,11 @@ public class UserService {
 	
 	private static final long MILIS_IN_DAY = 24L * 60L * 60L * 1000L;
 	
+	/**
+	 * The name of the unique index on the email of the users.
+	 */
+	private static final String EMAIL_INDEX = "idx_users_email";
+	
 	/**
 	 * Instance of UserRepository to interact with the database.
 	 */
@@ -61,60 +84,179 @@ public class UserService {
 	@Autowired
 	private VibeFlowPropertiesConfig vibeFlowProperties;
 	
+	/**
+	 * The repository in which the security context of the session is saved.
+	 */
+	@Autowired
+	private SecurityContextRepository securityContextRepository;
+	
+	/**
+	 * Instance of RefreshTokenRepository to revoke the refresh tokens of a user whose credentials changed.
+	 */
+	@Autowired
+	private RefreshTokenRepository refreshTokenRepository;
+	
+	/**
+	 * Instance of UserSessionService to invalidate the other sessions of a user whose credentials changed.
+	 */
+	@Autowired
+	private UserSessionService userSessionService;
+	
+	/**
+	 * The filter of the registered emails, answering the lookups of unregistered emails without querying the database.
+	 */
+	@Autowired
+	private EmailExistenceFilter emailExistenceFilter;
+	
+	/**
+	 * The cache of the user details loaded by the logins, which is evicted whenever a user changes.
+	 */
+	@Autowired
+	private UserCache userCache;
+	
+	/**
+	 * The change log of the users, to which every change is appended so the other nodes evict the changed user from their caches.
+	 */
+	@Autowired
+	private UserChangeLogService userChangeLogService;
+	
+	/**
+	 * Runs every change of a user and its entry of the change log in a single transaction.
+	 */
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+	
 	/**
 	 * Register a new user in the system.
 	 * 
+	 * The uniqueness of the email is enforced by the unique index on the users table,
+	 * so the registration is a single insert and concurrent registrations cannot both succeed.
+	 * Only a violation of that index is reported as an existing email, any other violation is rethrown.
+	 * The email is added to the email filter before the insert, so it is never reported as not registered.
+	 * 
+	 * The registration email is sent once the transaction is committed.
+	 * 
 	 * @param newUser The new User entity to be registered.
 	 * @return The registered User entity
 	 * @throws VibeFlowException If a user with the same email already exists.
 	 */
+	@Transactional
 	public com.vibeflow.application.model.User registerUser(User newUser) {
-				
-		if(userRepository.existsByEmail(newUser.getEmail())) {
-            throw new VibeFlowException(Message.EMAIL_ALREADY_EXISTS, HttpStatus.CONFLICT, InternalErrorCode.EMAIL_ALREADY_EXISTS);
-        }
 		
 		newUser.setPassword(passwordEncoder.encode(newUser.getPassword()));
 		newUser.setRegistrationDate(DateUtility.getCurrentUTCTimestamp());
-		newUser.setStatus(UserStatus.NEW.getStatus());
+		newUser.setStatus(UserStatus.NEW);
+		emailExistenceFilter.put(newUser.getEmail());
 		
-		newUser = userRepository.save(newUser);
+		try {
+			newUser = userRepository.saveAndFlush(newUser);
+		} catch (DataIntegrityViolationException e) {
+			if (!isEmailIndexViolation(e)) {
+				throw e;
+			}
+			throw new VibeFlowException(Message.EMAIL_ALREADY_EXISTS, HttpStatus.CONFLICT, InternalErrorCode.EMAIL_ALREADY_EXISTS);
+		}
 		
-		eventPublisher.publishEvent(new RegistrationEvent(this, newUser));
+		eventPublisher.publishEvent(new RegistrationEvent(this, newUser, getBaseUrl()));
 		
 		return newUser;
 	}
 	
+	/**
+	 * Checks if the given violation is the one of the unique index on the email of the users.
+	 * The name of the violated constraint is the one extracted by the dialect, which is prefixed by the table name on MySQL.
+	 * When the dialect doesn't extract it, as on H2, the index is looked up in the message of the driver, which names it on both databases.
+	 * 
+	 * @param e The violation raised by the insert.
+	 * @return true if the violated constraint is the unique index on the email.
+	 */
+	private static boolean isEmailIndexViolation(DataIntegrityViolationException e) {
+		String constraint = e.getCause() instanceof ConstraintViolationException violation ? violation.getConstraintName() : null;
+		if (constraint == null) {
+			constraint = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+		}
+		
+		return constraint != null && constraint.toLowerCase(Locale.ROOT).contains(EMAIL_INDEX);
+	}
+	
+	/**
+	 * Returns the base URL of the links sent by email: the configured one, or the one of the current request.
+	 * It is resolved in the request thread, because the emails are sent by another thread.
+	 * 
+	 * @return The base URL, or null if it is not configured and there is no current request.
+	 */
+	private String getBaseUrl() {
+		if (vibeFlowProperties.getBaseUrl() != null) {
+			return vibeFlowProperties.getBaseUrl();
+		}
+		
+		if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+			return ServletUriComponentsBuilder.fromRequestUri(attributes.getRequest())
+					.replacePath(null)
+					.build()
+					.toUriString();
+		}
+		
+		return null;
+	}
 	
 	/**
 	 *  Retrieves a User entity based on the provided email from the database.
+	 *  The emails which are definitely not registered are answered by the email filter, without querying the database.
 	 *  
 	 * @param email The email of the User entity to retrieve.
 	 * @return A User entity that matches the provided email, or null if no matching User entity is found.
 	 */
 	public User getUserByEmail(String email) {
+		if (!emailExistenceFilter.mightContain(email)) {
+			return null;
+		}
+		
 		return userRepository.findByEmail(email);
 	}
 	
 	/**
-	 * Saves or updates the given user entity in the repository.
+	 * Saves or updates the given user entity in the repository, and evicts it from the user details cache.
 	 * 
 	 * @param user the user entity to be saved or updated.
 	 * @return the saved or updated user entity.
 	 */
 	public User updateUser(User user) {
-		return userRepository.save(user);
+		User savedUser = transactionTemplate.execute(status -> {
+			User saved = userRepository.saveAndFlush(user);
+			userChangeLogService.logChange(saved.getId());
+			return saved;
+		});
+		userCache.removeUserFromCache(savedUser.getEmail());
+		
+		return savedUser;
 	}
 	
 	/**
 	 * Retrieves the currently authenticated user from the security context.
+	 * The user is built from the snapshot carried by the principal, so it is not resolved by email.
+	 * The snapshot of a session is checked against the version of the stored user, read by id from the second-level cache,
+	 * so a session whose user was changed, deleted or purged elsewhere is ended instead of serving the stale snapshot.
+	 * The returned user never carries the password.
 	 * 
 	 * @return The authenticated User entity.
+	 * @throws UserNotAuthenticatedException If there is no authenticated user, or the snapshot of the session is stale.
 	 */
 	public User getCurrentUser() {
 		
 		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 		
+		if (authentication.getPrincipal() instanceof VibeFlowUserPrincipal userPrincipal) {
+			HttpSession session = getCurrentSession();
+			
+			if (session != null && !isCurrentVersion(userPrincipal)) {
+				session.invalidate();
+				SecurityContextHolder.clearContext();
+				throw new UserNotAuthenticatedException();
+			}
+			return userPrincipal.toUser();
+		}
+		
 		if (authentication.getPrincipal() instanceof org.springframework.security.core.userdetails.User userPrincipal) {
 		        return userRepository.findByEmail(userPrincipal.getUsername());
 		}
@@ -122,6 +264,112 @@ public class UserService {
 		throw new UserNotAuthenticatedException();
 	}
 	
+	/**
+	 * Returns the session of the current request, if it has one.
+	 * A request authenticated by an access token has no session: its token carries the version and expires shortly.
+	 * 
+	 * @return The session of the current request, or null.
+	 */
+	private HttpSession getCurrentSession() {
+		if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+			return attributes.getRequest().getSession(false);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Checks if the snapshot carried by the principal was taken from the current version of the stored user.
+	 * 
+	 * @param userPrincipal The principal carrying the snapshot.
+	 * @return true if the user still exists and has the version of the snapshot.
+	 */
+	private boolean isCurrentVersion(VibeFlowUserPrincipal userPrincipal) {
+		User storedUser = userRepository.findById(userPrincipal.getId().intValue());
+		
+		return storedUser != null && Objects.equals(storedUser.getVersion(), userPrincipal.getVersion());
+	}
+	
+	/**
+	 * Runs the given conditional update of a user and, if it changed the user, appends the change to the change log, in a single transaction.
+	 * 
+	 * @param userId The ID of the updated user.
+	 * @param update The update, returning the number of changed rows.
+	 * @return true if the update changed the user.
+	 */
+	private boolean updateAndLog(int userId, IntSupplier update) {
+		return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+			if (update.getAsInt() == 0) {
+				return false;
+			}
+			
+			userChangeLogService.logChange(userId);
+			return true;
+		}));
+	}
+	
+	/**
+	 * Loads the stored state of the currently authenticated user, including the password hash.
+	 * 
+	 * @param currentUser The currently authenticated user.
+	 * @return The stored User entity.
+	 * @throws UserNotAuthenticatedException If the user doesn't exist anymore.
+	 */
+	private User getStoredUser(User currentUser) {
+		User storedUser = userRepository.findById(currentUser.getId().intValue());
+		
+		if (storedUser == null) {
+			throw new UserNotAuthenticatedException();
+		}
+		
+		return storedUser;
+	}
+	
+	/**
+	 * Replaces the principal snapshot in the security context with the currently authenticated user after a change,
+	 * so the following requests of the session see the change. The user is evicted from the user details cache, so the next login sees it too.
+	 * A request authenticated by an access token has no session to update: its client sees the change with its next access token.
+	 * 
+	 * @param changedUser The currently authenticated user, carrying the fields written by the change and the version it incremented.
+	 * @return The changed user.
+	 */
+	private User refreshCurrentUser(User changedUser) {
+		userCache.removeUserFromCache(changedUser.getEmail());
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		
+		if (authentication.getPrincipal() instanceof VibeFlowUserPrincipal) {
+			VibeFlowUserPrincipal principal = new VibeFlowUserPrincipal(changedUser);
+			principal.eraseCredentials();
+			
+			UsernamePasswordAuthenticationToken refreshedAuthentication = UsernamePasswordAuthenticationToken.authenticated(
+					principal, null, authentication.getAuthorities());
+			refreshedAuthentication.setDetails(authentication.getDetails());
+			
+			SecurityContext context = SecurityContextHolder.createEmptyContext();
+			context.setAuthentication(refreshedAuthentication);
+			SecurityContextHolder.setContext(context);
+			
+			if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+					&& attributes.getRequest().getSession(false) != null) {
+				securityContextRepository.saveContext(context, attributes.getRequest(), attributes.getResponse());
+			}
+		}
+		
+		return changedUser;
+	}
+	
+	/**
+	 * Moves the given user to the version written by a single update of the user.
+	 * The updates increment the version in the same statement, so the new version is known without reading the user again.
+	 * 
+	 * @param user The user before the update, carrying the fields written by the update.
+	 * @return The same user.
+	 */
+	private User nextVersion(User user) {
+		user.setVersion(user.getVersion() + 1);
+		return user;
+	}
+	
 	/**
      * Updates the name of the user identified by the given email.
      * 
@@ -131,73 +379,125 @@ public class UserService {
      */
 	public User updateCurrentUserName( UpdateUserNameDto newName) {
 		User currentUser = getCurrentUser();
-	    currentUser.setName(newName.getName());
-	    userRepository.save(currentUser);
-	    return currentUser;
+		
+		if (!updateAndLog(currentUser.getId(), () -> userRepository.updateName(currentUser.getId(), newName.getName()))) {
+			throw new UserNotAuthenticatedException();
+		}
+		
+		currentUser.setName(newName.getName());
+	    return refreshCurrentUser(nextVersion(currentUser));
 	}
 	
 	/**
 	 * Updates the password of the currently authenticated user after validating the input data.
+	 * The refresh tokens and the other sessions of the user are revoked, so the other clients have to log in with the new password.
 	 * 
 	 * @param changePasswordDto Data transfer object containing details about the old and new passwords.
 	 * @return A UserDto representation of the user after the password has been updated.
 	 */
 	public User updateCurrentUserPassword(ChangePasswordDto changePasswordDto) {
 		User currentUser = getCurrentUser();
+		String storedPassword = getStoredUser(currentUser).getPassword();
 		
-		 if (!passwordEncoder.matches(changePasswordDto.getOldPassword(), currentUser.getPassword())) {
+		 if (!passwordEncoder.matches(changePasswordDto.getOldPassword(), storedPassword)) {
 			throw new VibeFlowException(Message.INCORRECT_PASSWORD, HttpStatus.FORBIDDEN, InternalErrorCode.INCORRECT_PASSWORD);
 			
 		} else if (changePasswordDto.getOldPassword().equals(changePasswordDto.getNewPassword())) {
 			throw new VibeFlowException(Message.PASSWORD_SAME_AS_OLD, HttpStatus.FORBIDDEN, InternalErrorCode.PASSWORD_SAME_AS_OLD);
 		}
-		 currentUser.setPassword(passwordEncoder.encode(changePasswordDto.getNewPassword()));
+		 String newPassword = passwordEncoder.encode(changePasswordDto.getNewPassword());
+		 
+		 if (!updateAndLog(currentUser.getId(), () -> userRepository.updatePassword(currentUser.getId(), storedPassword, newPassword))) {
+			 throw new VibeFlowException(Message.INCORRECT_PASSWORD, HttpStatus.FORBIDDEN, InternalErrorCode.INCORRECT_PASSWORD);
+		 }
+		 refreshTokenRepository.revokeAllByUserId(currentUser.getId(), DateUtility.getCurrentUTCTimestamp());
+		 userSessionService.invalidateOtherSessions(currentUser.getEmail());
 		 
-		 return userRepository.save(currentUser);
+		 return refreshCurrentUser(nextVersion(currentUser));
+	}
+	
+	/**
+	 * Replaces the stored password hash of the user with a new hash of the same password,
+	 * only if the stored hash is still the expected one.
+	 * 
+	 * @param user The user, carrying the hash it is expected to have.
+	 * @param newPassword The new hash of the password.
+	 * @return The given user carrying the new hash and version, or null if the hash was changed in the meantime.
+	 */
+	public User upgradePasswordHash(User user, String newPassword) {
+		String oldPassword = user.getPassword();
+		
+		if (!updateAndLog(user.getId(), () -> userRepository.updatePassword(user.getId(), oldPassword, newPassword))) {
+			return null;
+		}
+		
+		userCache.removeUserFromCache(user.getEmail());
+		user.setPassword(newPassword);
+		return nextVersion(user);
 	}
 	
 	/**
 	 * Deletes the currently authenticated user by updating their status to "deleted" and setting their deletion date to the current timestamp.
+	 * The refresh tokens and the other sessions of the user are revoked.
+	 * A user who is already deleted is returned unchanged, keeping its original deletion date.
 	 * 
 	 * @param deleteUserDto Data transfer object containing the password of the user to be deleted.
 	 * @return The updated user entity with the "deleted" status and the current timestamp as the deletion date.
+	 * @throws VibeFlowException If the password is incorrect.
 	 */
 	public User deleteUser(DeleteUserDto deleteUserDto) {
         User currentUser = getCurrentUser();
 
-        if (!passwordEncoder.matches(deleteUserDto.getPassword(), currentUser.getPassword())) {
+        if (!passwordEncoder.matches(deleteUserDto.getPassword(), getStoredUser(currentUser).getPassword())) {
             throw new VibeFlowException(Message.INCORRECT_PASSWORD, HttpStatus.FORBIDDEN, InternalErrorCode.INCORRECT_PASSWORD);
         }
         
-        currentUser.setStatus(UserStatus.DELETED.getStatus());
+        Timestamp deletionDate = DateUtility.getCurrentUTCTimestamp();
         
-        currentUser.setDeletionDate(DateUtility.getCurrentUTCTimestamp());
+        if (!updateAndLog(currentUser.getId(),
+        		() -> userRepository.updateStatusAndDeletionDate(currentUser.getId(), UserStatus.ACTIVE, UserStatus.DELETED, deletionDate))) {
+        	// The user was not active, so it is returned as it is stored
+        	return refreshCurrentUser(getStoredUser(currentUser));
+        }
+        
+        refreshTokenRepository.revokeAllByUserId(currentUser.getId(), DateUtility.getCurrentUTCTimestamp());
+        userSessionService.invalidateOtherSessions(currentUser.getEmail());
         
-        return userRepository.save(currentUser);
+        currentUser.setStatus(UserStatus.DELETED);
+        currentUser.setDeletionDate(deletionDate);
+        return refreshCurrentUser(nextVersion(currentUser));
     }
 	
 	/**
 	 * Recovers the currently authenticated user by updating their status to "active" and setting their deletion date to null.
 	 * 
+	 * A user who is not deleted is returned unchanged.
+	 * 
 	 * @return The updated user entity with the "active" status and set null the deletion date.
 	 */
 	public User recoverUser() {
         User currentUser = getCurrentUser();
 
-        currentUser.setStatus(UserStatus.ACTIVE.getStatus());
-        currentUser.setDeletionDate(null);
+        if (!updateAndLog(currentUser.getId(),
+        		() -> userRepository.updateStatusAndDeletionDate(currentUser.getId(), UserStatus.DELETED, UserStatus.ACTIVE, null))) {
+        	// The user was not deleted, so it is returned as it is stored
+        	return refreshCurrentUser(getStoredUser(currentUser));
+        }
         
-        return userRepository.save(currentUser);
+        currentUser.setStatus(UserStatus.ACTIVE);
+        currentUser.setDeletionDate(null);
+        return refreshCurrentUser(nextVersion(currentUser));
     }
 	
 	/**
 	 * This method is responsible for confirming the user registration through a given token.
+	 * The confirmation is a single conditional update, so concurrent clicks on the same link confirm the user only once.
+	 * The confirmed user is evicted from the user details cache, so its next login sees the new status.
 	 * 
 	 * @param token A String representing the token used for confirming user registration.
-	 * @return User object representing the confirmed user with updated status.
-	 * @throws  OxygenAccountException if the token is invalid, expired, or the user is already active
+	 * @throws  VibeFlowException if the token is invalid, expired, or the user is already active
 	 */
-	public User confirmUserRegistration(String token) {
+	public void confirmUserRegistration(String token) {
 		Claims claims;
 
 		try {
@@ -220,15 +520,17 @@ public class UserService {
 			throw new VibeFlowException(Message.TOKEN_EXPIRED, HttpStatus.GONE, InternalErrorCode.TOKEN_EXPIRED);
 		}
 
-		User user = userRepository.findById((int) userId);
-
-		if (UserStatus.ACTIVE.getStatus().equals(user.getStatus())) {
+		if (!updateAndLog(userId, () -> userRepository.updateStatus(userId, UserStatus.NEW, UserStatus.ACTIVE))) {
+			if (!userRepository.existsById(userId)) {
+				throw new VibeFlowException(Message.INVALID_TOKEN, HttpStatus.BAD_REQUEST, InternalErrorCode.INVALID_TOKEN);
+			}
 			throw new VibeFlowException(Message.USER_ALREADY_CONFIRMED, HttpStatus.GONE, InternalErrorCode.USER_ALREADY_CONFIRMED);
-    	} 
-        
-        user.setStatus(UserStatus.ACTIVE.getStatus());
-        
-        return userRepository.save(user);
+    	}
+		
+		User confirmedUser = userRepository.findById(userId.intValue());
+		if (confirmedUser != null) {
+			userCache.removeUserFromCache(confirmedUser.getEmail());
+		}
 	}
 	
 	/**
@@ -240,12 +542,12 @@ public class UserService {
 	 */
 	public User emailResetPassword(EmailResetPasswordDto emailDto) {
 		String userEmail = emailDto.getEmail();
-		User currentUser = userRepository.findByEmail(userEmail);
+		User currentUser = getUserByEmail(userEmail);
 		
 		if(currentUser == null) {
 			throw new VibeFlowException(Message.USER_DOESNT_EXIST, HttpStatus.NOT_FOUND, InternalErrorCode.USER_DOESNT_EXIST);
 		}
-		eventPublisher.publishEvent(new ResetPasswordEvent(this, currentUser));
+		eventPublisher.publishEvent(new ResetPasswordEvent(this, currentUser, getBaseUrl()));
 		
 		return currentUser;
 	}
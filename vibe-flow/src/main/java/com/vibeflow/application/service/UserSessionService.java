@@ -0,0 +1,87 @@
+package com.vibeflow.application.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Service class for the sessions stored in the database when the JDBC sessions are enabled.
+ * The sessions are indexed by the email of their user, so the sessions of a user are found without reading any attribute.
+ * When the sessions are kept in memory, the methods do nothing: the other sessions of a changed user are ended on their next request,
+ * when UserService finds that the version of their snapshot is not the stored one.
+ * 
+ * @author Denis
+ */
+@Service
+public class UserSessionService {
+
+	/**
+	 * Instance of JdbcTemplate to run the statements on the session tables, which have no entity.
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Configuration object telling whether the JDBC sessions are enabled, and holding the chunk size and the time budget.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * Deletes all the sessions of the given user except the session of the current request, with a single statement on the principal index.
+	 * The attributes of the sessions are deleted by the foreign key.
+	 * 
+	 * @param email The email of the user, which is the principal name of the sessions.
+	 * @return The number of deleted sessions.
+	 */
+	public int invalidateOtherSessions(String email) {
+		if (!vibeFlowProperties.isJdbcSessionsEnabled()) {
+			return 0;
+		}
+
+		String currentSessionId = null;
+		if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+			HttpSession session = attributes.getRequest().getSession(false);
+			currentSessionId = session == null ? null : session.getId();
+		}
+
+		if (currentSessionId == null) {
+			return jdbcTemplate.update("DELETE FROM SPRING_SESSION WHERE PRINCIPAL_NAME = ?", email);
+		}
+
+		return jdbcTemplate.update("DELETE FROM SPRING_SESSION WHERE PRINCIPAL_NAME = ? AND SESSION_ID <> ?", email, currentSessionId);
+	}
+
+	/**
+	 * Deletes the expired sessions in chunks until a chunk deletes fewer sessions than the chunk size or the time budget is exhausted.
+	 * Every chunk is a range scan of the expiry index in its own statement, so the session table is never locked for long.
+	 * 
+	 * @return The number of deleted sessions.
+	 */
+	public int deleteExpiredSessions() {
+		int chunkSize = vibeFlowProperties.getPurgeChunkSize();
+		long start = System.nanoTime();
+		long budget = TimeUnit.MILLISECONDS.toNanos(vibeFlowProperties.getPurgeTimeBudgetMillis());
+		int total = 0;
+
+		while (System.nanoTime() - start < budget && !Thread.currentThread().isInterrupted()) {
+			int deleted = jdbcTemplate.update("DELETE FROM SPRING_SESSION WHERE EXPIRY_TIME < ? LIMIT ?",
+					System.currentTimeMillis(), chunkSize);
+			total += deleted;
+
+			if (deleted < chunkSize) {
+				break;
+			}
+		}
+
+		return total;
+	}
+}
@@ -1,22 +1,25 @@
 package com.vibeflow.application.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.userdetails.User.UserBuilder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import com.vibeflow.application.exception.EmailNotConfirmedException;
 import com.vibeflow.application.messages.Message;
+import com.vibeflow.application.model.UserStatus;
+import com.vibeflow.application.security.VibeFlowUserPrincipal;
 
 /**
  * Service implementation for loading user-specific data for authentication purposes.
+ * It also upgrades the stored password hashes which use an outdated algorithm or work factor.
  * 
  * @author Denis
  */
 @Service
-public class VibeFlowUserDetailsService implements UserDetailsService {
+public class VibeFlowUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
 	/**
 	 * Service for fetching user details from the database.
@@ -26,6 +29,7 @@ public class VibeFlowUserDetailsService implements UserDetailsService {
 
 	/**
 	 * Loads a user by their email, primarily for authentication checks.
+	 * The returned principal carries a snapshot of the user, which is kept in the session after the login.
 	 * 
 	 * @param email the email of the user to load
      * @return the user details associated with the provided email
@@ -39,13 +43,37 @@ public class VibeFlowUserDetailsService implements UserDetailsService {
 			throw new UsernameNotFoundException(Message.USER_NOT_FOUND.getMessage());
 		}
 		
-		if("new".equals(appUser.getStatus())) {
+		if(appUser.getStatus() == UserStatus.NEW) {
 			throw new EmailNotConfirmedException(Message.EMAIL_NOT_CONFIRMED.getMessage());
 		}
 
-		UserBuilder builder = org.springframework.security.core.userdetails.User.withUsername(appUser.getEmail())
-				.password(appUser.getPassword());
+		return new VibeFlowUserPrincipal(appUser);
+	}
+	
+	/**
+	 * Stores the stronger hash of the password of a user, after a successful login with an outdated hash.
+	 * The hash is only replaced if the stored hash is still the one the user logged in with.
+	 * The authentication keeps the principal it authenticated rather than the returned one, so that principal is moved
+	 * to the version of the rehashed user, otherwise its session would be taken for a stale one.
+	 * 
+	 * @param user the logged in user, carrying the outdated hash
+	 * @param newPassword the new hash of the password
+	 * @return the user details carrying the new hash, or the given user details if the hash was not replaced
+	 */
+	@Override
+	public UserDetails updatePassword(UserDetails user, String newPassword) {
+		if (user instanceof VibeFlowUserPrincipal principal) {
+			com.vibeflow.application.model.User loggedInUser = principal.toUser();
+			loggedInUser.setPassword(principal.getPassword());
+			
+			com.vibeflow.application.model.User upgradedUser = userService.upgradePasswordHash(loggedInUser, newPassword);
+			
+			if (upgradedUser != null) {
+				principal.setVersion(upgradedUser.getVersion());
+				return new VibeFlowUserPrincipal(upgradedUser);
+			}
+		}
 		
-		return builder.build();
+		return user;
 	}
 }
@@ -1,18 +1,17 @@
 package com.vibeflow.application.task;
 
-import java.util.List;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import com.vibeflow.application.model.User;
-import com.vibeflow.application.model.UserStatus;
-import com.vibeflow.application.repository.UserRepository;
-import com.vibeflow.application.utility.DateUtility;
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.dto.PurgeSummary;
+import com.vibeflow.application.service.JobLockService;
+import com.vibeflow.application.service.UserPurgeService;
 
 /**
- * A scheduled task that processes deleted users on a daily basis, checking if the deleted users should be permanently deleted from the database.
+ * A scheduled task that continuously processes the expired users, permanently deleting the users whose deadline passed since its previous run.
+ * Every node schedules the task, but only the node holding the lock of a job runs it.
  * 
  * @author Denis
  */
@@ -20,46 +19,50 @@ import com.vibeflow.application.utility.DateUtility;
 public class DeletedUsersTask {
 	
 	/**
-	 * Instance of UserRepository to interact with the database.
+	 * The name of the lock of the job purging the deleted users.
+	 */
+	public static final String PURGE_DELETED_USERS = "purge-deleted-users";
+	
+	/**
+	 * The name of the lock of the job purging the unconfirmed users.
+	 */
+	public static final String PURGE_UNCONFIRMED_USERS = "purge-unconfirmed-users";
+	
+	/**
+	 * Instance of UserPurgeService that deletes the expired users in bounded chunks.
 	 */
 	@Autowired
-	private UserRepository userRepository;
+	private UserPurgeService userPurgeService;
 	
 	/**
-	 * Instance of a utility class to calculate the number of days left before a deleted user should be permanently deleted.
+	 * Instance of JobLockService that runs every job on a single node.
 	 */
 	@Autowired
-	private DateUtility daysLeftUtility;
+	private JobLockService jobLockService;
 
 	/**
-	 * Scheduled task that runs daily at midnight to process users marked as "deleted" and check if they should be permanently deleted from the repository.
+	 * The configuration of the intervals of the jobs, for which their locks are held.
 	 */
-	@Scheduled(cron = "0 0 0 * * ?")
-	public void processDeletedUsers() {
-		List<User> deletedUsers = userRepository.findByStatus(UserStatus.DELETED.getStatus());
-
-		for (User user : deletedUsers) {
-			int daysLeft = daysLeftUtility.getDaysLeftForRecovery(user);
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
 
-			if (daysLeft == 0) {
-				userRepository.delete(user);
-			}
-		}
+	/**
+	 * Scheduled task that runs at a fixed delay to permanently delete the users marked as "deleted" whose recovery period has ended.
+	 * 
+	 * @return the summary of the purge run, or null if another node ran it
+	 */
+	@Scheduled(fixedDelayString = "${vibe.flow.expiryIntervalMillis:60000}", initialDelayString = "${vibe.flow.expiryIntervalMillis:60000}")
+	public PurgeSummary processDeletedUsers() {
+		return jobLockService.runExclusively(PURGE_DELETED_USERS, vibeFlowProperties.getExpiryIntervalMillis(), userPurgeService::purgeDeletedUsers).orElse(null);
 	}
 	
 	/**
-	 * Scheduled task that runs daily at midnight to process users marked as "new" and check if they should be permanently deleted from the repository.
+	 * Scheduled task that runs at a fixed delay to permanently delete the users marked as "new" whose confirmation period has ended.
+	 * 
+	 * @return the summary of the purge run, or null if another node ran it
 	 */
-	@Scheduled(cron = "0 0 0 * * ?")
-	public void processDeleteUnconfirmedUsers() {
-		List<User> newUsers = userRepository.findByStatus(UserStatus.NEW.getStatus());
-
-		for (User user : newUsers) {
-			int daysLeft = daysLeftUtility.getDaysLeftForConfirmAccount(user);
-
-			if (daysLeft == 0) {
-				userRepository.delete(user);
-			}
-		}
+	@Scheduled(fixedDelayString = "${vibe.flow.expiryIntervalMillis:60000}", initialDelayString = "${vibe.flow.expiryIntervalMillis:60000}")
+	public PurgeSummary processDeleteUnconfirmedUsers() {
+		return jobLockService.runExclusively(PURGE_UNCONFIRMED_USERS, vibeFlowProperties.getExpiryIntervalMillis(), userPurgeService::purgeUnconfirmedUsers).orElse(null);
 	}
 }
@@ -0,0 +1,35 @@
+package com.vibeflow.application.task;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.vibeflow.application.service.EmailExistenceFilter;
+
+/**
+ * A scheduled task that adds the emails registered on the other nodes to the email filter of this node, when the filter is enabled.
+ * Every node holds its own filter, so every node runs the task, without a lock.
+ * 
+ * @author Denis
+ */
+@Component
+@ConditionalOnProperty(prefix = "vibe.flow", name = "emailFilterEnabled", havingValue = "true", matchIfMissing = true)
+public class EmailFilterRefreshTask {
+
+	/**
+	 * Instance of EmailExistenceFilter holding the filter of this node.
+	 */
+	@Autowired
+	private EmailExistenceFilter emailExistenceFilter;
+
+	/**
+	 * Scheduled task that runs at a fixed delay to add the recently registered emails to the filter.
+	 * 
+	 * @return the number of emails read
+	 */
+	@Scheduled(fixedDelayString = "${vibe.flow.emailFilterRefreshIntervalMillis:5000}", initialDelayString = "${vibe.flow.emailFilterRefreshIntervalMillis:5000}")
+	public long refreshEmailFilter() {
+		return emailExistenceFilter.refresh();
+	}
+}
@@ -0,0 +1,245 @@
+package com.vibeflow.application.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.dto.EmailInfo;
+import com.vibeflow.application.exception.CircuitOpenException;
+import com.vibeflow.application.exception.EmailException;
+import com.vibeflow.application.model.EmailOutbox;
+import com.vibeflow.application.model.OutboxStatus;
+import com.vibeflow.application.service.EmailOutboxService;
+import com.vibeflow.application.service.EmailService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A background task that sends the emails of the outbox. Every relay worker claims a batch of due emails,
+ * sends them over one SMTP connection and records the outcome, so an SMTP outage delays the emails instead of losing them.
+ * 
+ * @author Denis
+ */
+@Slf4j
+@Component
+public class EmailOutboxRelay implements SmartLifecycle {
+
+	/**
+	 * Instance of EmailOutboxService to claim the emails and record their outcome.
+	 */
+	@Autowired
+	private EmailOutboxService emailOutboxService;
+
+	/**
+	 * The email service responsible for sending email.
+	 */
+	@Autowired
+	private EmailService emailService;
+
+	/**
+	 * The configuration of the relay.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * The registry of the relay metrics.
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * The threads of the relay workers, while the relay is running.
+	 */
+	private ExecutorService workers;
+
+	/**
+	 * Whether the relay workers keep claiming emails.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Starts the relay workers, unless the relay is disabled.
+	 */
+	@Override
+	public void start() {
+		if (!vibeFlowProperties.isOutboxRelayEnabled()) {
+			return;
+		}
+
+		AtomicInteger workerNumber = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(vibeFlowProperties.getOutboxRelayWorkers(),
+				runnable -> new Thread(runnable, "email-relay-" + workerNumber.incrementAndGet()));
+		running = true;
+
+		for (int i = 0; i < vibeFlowProperties.getOutboxRelayWorkers(); i++) {
+			workers.execute(this::relay);
+		}
+	}
+
+	/**
+	 * Stops the relay workers, waiting for them to finish the batch they are sending.
+	 */
+	@Override
+	public void stop() {
+		running = false;
+
+		if (workers == null) {
+			return;
+		}
+
+		workers.shutdown();
+		try {
+			if (!workers.awaitTermination(vibeFlowProperties.getOutboxShutdownSeconds(), TimeUnit.SECONDS)) {
+				workers.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		workers = null;
+	}
+
+	/**
+	 * Returns whether the relay workers are running.
+	 */
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Claims a batch of due emails and sends them over one SMTP connection.
+	 * When nothing is due, the sent emails past their retention are deleted instead.
+	 * Nothing is claimed while the SMTP circuit breaker is open, and the emails the breaker rejects after they were claimed,
+	 * such as those of the batches over the trials of a half-open breaker, are given back, so the emails wait without using their attempts.
+	 * 
+	 * @return The number of claimed emails the breaker didn't reject.
+	 */
+	public int relayBatch() {
+		if (emailService.isCircuitOpen()) {
+			return 0;
+		}
+
+		List<EmailOutbox> emails = emailOutboxService.claimDue();
+
+		if (emails.isEmpty()) {
+			emailOutboxService.deleteExpiredSent();
+			return 0;
+		}
+
+		List<EmailInfo> emailInfos = new ArrayList<>(emails.size());
+		for (EmailOutbox email : emails) {
+			emailInfos.add(emailOutboxService.render(email));
+		}
+
+		List<EmailException> failures = emailService.sendBatch(emailInfos);
+		int attempted = 0;
+
+		for (int i = 0; i < emails.size(); i++) {
+			if (record(emails.get(i), failures.get(i))) {
+				attempted++;
+			}
+		}
+
+		return attempted;
+	}
+
+	/**
+	 * The loop of a relay worker, which sleeps for the poll interval when nothing is due.
+	 */
+	private void relay() {
+		while (running) {
+			try {
+				if (relayBatch() == 0) {
+					Thread.sleep(vibeFlowProperties.getOutboxPollIntervalMillis());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				log.warn("The email outbox relay failed to claim a batch", e);
+				sleepQuietly();
+			}
+		}
+	}
+
+	/**
+	 * Records the outcome of sending one email.
+	 * 
+	 * The outcome is dropped if the lease of the claim expired and another worker claimed the email again, which records its own outcome.
+	 * 
+	 * @return false if the circuit breaker rejected the email, which was given back without using an attempt.
+	 */
+	private boolean record(EmailOutbox email, EmailException failure) {
+		if (failure == null) {
+			if (!emailOutboxService.markSent(email)) {
+				return lost(email);
+			}
+			outcome("sent").increment();
+			return true;
+		}
+
+		if (failure.getCause() instanceof CircuitOpenException) {
+			if (!emailOutboxService.release(email)) {
+				return lost(email);
+			}
+			outcome("rejected").increment();
+			return false;
+		}
+
+		OutboxStatus status = emailOutboxService.markFailed(email, failure);
+
+		if (status == null) {
+			return lost(email);
+		}
+		if (status == OutboxStatus.DEAD) {
+			log.error("Gave up sending the {} email {} after {} attempts", email.getType(), email.getId(), email.getAttempts(), failure);
+		}
+		outcome(status == OutboxStatus.DEAD ? "dead" : "retried").increment();
+		return true;
+	}
+
+	/**
+	 * Counts an email whose claim was lost before its outcome was recorded.
+	 * 
+	 * @return true, the email was attempted.
+	 */
+	private boolean lost(EmailOutbox email) {
+		log.warn("The claim of the {} email {} expired before its outcome was recorded", email.getType(), email.getId());
+		outcome("lost").increment();
+		return true;
+	}
+
+	/**
+	 * Returns the counter of the emails with the given outcome.
+	 */
+	private Counter outcome(String outcome) {
+		return Counter.builder("vibeflow.email.outbox.relayed")
+				.description("Emails of the outbox the relay attempted to send, by outcome")
+				.tag("outcome", outcome)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Waits for the poll interval after a failure, so a database outage doesn't make the workers spin.
+	 */
+	private void sleepQuietly() {
+		try {
+			Thread.sleep(vibeFlowProperties.getOutboxPollIntervalMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		}
+	}
+}
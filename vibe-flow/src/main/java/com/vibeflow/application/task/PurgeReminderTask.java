@@ -0,0 +1,73 @@
+package com.vibeflow.application.task;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.JobLockService;
+import com.vibeflow.application.service.PurgeReminderService;
+
+/**
+ * A scheduled task that reminds the users whose account is about to be purged.
+ * Every node schedules the task, but only the node holding the lock of a job runs it. Nothing runs while the reminders are disabled.
+ * 
+ * @author Denis
+ */
+@Component
+public class PurgeReminderTask {
+
+	/**
+	 * The name of the lock of the job reminding the deleted users.
+	 */
+	public static final String REMIND_DELETED_USERS = "remind-deleted-users";
+
+	/**
+	 * The name of the lock of the job reminding the unconfirmed users.
+	 */
+	public static final String REMIND_UNCONFIRMED_USERS = "remind-unconfirmed-users";
+
+	/**
+	 * Instance of PurgeReminderService that queues the reminders in batches.
+	 */
+	@Autowired
+	private PurgeReminderService purgeReminderService;
+
+	/**
+	 * Instance of JobLockService that runs every job on a single node.
+	 */
+	@Autowired
+	private JobLockService jobLockService;
+
+	/**
+	 * The configuration of the intervals of the jobs, for which their locks are held.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * Scheduled task that runs at a fixed delay to remind the users marked as "deleted" that their recovery period ends soon.
+	 * 
+	 * @return the number of queued reminders, or null if another node ran the job or the reminders are disabled
+	 */
+	@Scheduled(fixedDelayString = "${vibe.flow.reminderIntervalMillis:3600000}", initialDelayString = "${vibe.flow.reminderIntervalMillis:3600000}")
+	public Integer remindDeletedUsers() {
+		if (!vibeFlowProperties.isRemindersEnabled()) {
+			return null;
+		}
+		return jobLockService.runExclusively(REMIND_DELETED_USERS, vibeFlowProperties.getReminderIntervalMillis(), purgeReminderService::remindDeletedUsers).orElse(null);
+	}
+
+	/**
+	 * Scheduled task that runs at a fixed delay to remind the users marked as "new" that their confirmation period ends soon.
+	 * 
+	 * @return the number of queued reminders, or null if another node ran the job or the reminders are disabled
+	 */
+	@Scheduled(fixedDelayString = "${vibe.flow.reminderIntervalMillis:3600000}", initialDelayString = "${vibe.flow.reminderIntervalMillis:3600000}")
+	public Integer remindUnconfirmedUsers() {
+		if (!vibeFlowProperties.isRemindersEnabled()) {
+			return null;
+		}
+		return jobLockService.runExclusively(REMIND_UNCONFIRMED_USERS, vibeFlowProperties.getReminderIntervalMillis(), purgeReminderService::remindUnconfirmedUsers).orElse(null);
+	}
+}
@@ -0,0 +1,53 @@
+package com.vibeflow.application.task;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.JobLockService;
+import com.vibeflow.application.service.RefreshTokenService;
+
+/**
+ * A scheduled task that deletes the expired refresh tokens and those revoked for longer than the retention,
+ * including the tokens of the users who never log in again.
+ * Every node schedules the task, but only the node holding the lock of the job runs it.
+ * 
+ * @author Denis
+ */
+@Component
+public class RefreshTokenCleanupTask {
+
+	/**
+	 * The name of the lock of the job deleting the refresh tokens.
+	 */
+	public static final String PURGE_REFRESH_TOKENS = "purge-refresh-tokens";
+
+	/**
+	 * Instance of RefreshTokenService that deletes the refresh tokens in chunks.
+	 */
+	@Autowired
+	private RefreshTokenService refreshTokenService;
+
+	/**
+	 * Instance of JobLockService that runs every job on a single node.
+	 */
+	@Autowired
+	private JobLockService jobLockService;
+
+	/**
+	 * The configuration of the intervals of the jobs, for which their locks are held.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * Scheduled task that runs at a fixed delay to delete the expired and revoked refresh tokens.
+	 * 
+	 * @return the number of deleted tokens, or null if another node ran the job
+	 */
+	@Scheduled(fixedDelayString = "${vibe.flow.refreshTokenCleanupIntervalMillis:3600000}", initialDelayString = "${vibe.flow.refreshTokenCleanupIntervalMillis:3600000}")
+	public Integer purgeRefreshTokens() {
+		return jobLockService.runExclusively(PURGE_REFRESH_TOKENS, vibeFlowProperties.getRefreshTokenCleanupIntervalMillis(), refreshTokenService::deleteExpiredTokens).orElse(null);
+	}
+}
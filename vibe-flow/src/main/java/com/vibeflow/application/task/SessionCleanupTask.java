@@ -0,0 +1,54 @@
+package com.vibeflow.application.task;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.JobLockService;
+import com.vibeflow.application.service.UserSessionService;
+
+/**
+ * A scheduled task that deletes the expired sessions stored in the database, when the JDBC sessions are enabled.
+ * Every node schedules the task, but only the node holding the lock of the job runs it.
+ * 
+ * @author Denis
+ */
+@Component
+@ConditionalOnProperty(prefix = "vibe.flow", name = "jdbcSessionsEnabled", havingValue = "true")
+public class SessionCleanupTask {
+
+	/**
+	 * The name of the lock of the job deleting the expired sessions.
+	 */
+	public static final String PURGE_EXPIRED_SESSIONS = "purge-expired-sessions";
+
+	/**
+	 * Instance of UserSessionService that deletes the expired sessions in chunks.
+	 */
+	@Autowired
+	private UserSessionService userSessionService;
+
+	/**
+	 * Instance of JobLockService that runs every job on a single node.
+	 */
+	@Autowired
+	private JobLockService jobLockService;
+
+	/**
+	 * The configuration of the intervals of the jobs, for which their locks are held.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * Scheduled task that runs at a fixed delay to delete the expired sessions.
+	 * 
+	 * @return the number of deleted sessions, or null if another node ran the job
+	 */
+	@Scheduled(fixedDelayString = "${vibe.flow.sessionCleanupIntervalMillis:60000}", initialDelayString = "${vibe.flow.sessionCleanupIntervalMillis:60000}")
+	public Integer purgeExpiredSessions() {
+		return jobLockService.runExclusively(PURGE_EXPIRED_SESSIONS, vibeFlowProperties.getSessionCleanupIntervalMillis(), userSessionService::deleteExpiredSessions).orElse(null);
+	}
+}
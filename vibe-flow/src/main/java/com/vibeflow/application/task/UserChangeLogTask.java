@@ -0,0 +1,63 @@
+package com.vibeflow.application.task;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.JobLockService;
+import com.vibeflow.application.service.UserChangeLogService;
+
+/**
+ * The scheduled tasks of the change log of the users.
+ * Every node holds its own caches, so every node polls the change log, without a lock.
+ * The change log is truncated by the node holding the lock of the job.
+ * 
+ * @author Denis
+ */
+@Component
+public class UserChangeLogTask {
+
+	/**
+	 * The name of the lock of the job truncating the change log.
+	 */
+	public static final String TRUNCATE_USER_CHANGE_LOG = "truncate-user-change-log";
+
+	/**
+	 * Instance of UserChangeLogService that reads and truncates the change log.
+	 */
+	@Autowired
+	private UserChangeLogService userChangeLogService;
+
+	/**
+	 * Instance of JobLockService that runs every job on a single node.
+	 */
+	@Autowired
+	private JobLockService jobLockService;
+
+	/**
+	 * The configuration of the intervals of the jobs, for which their locks are held.
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * Scheduled task that runs at a fixed delay to evict the users changed by any node from the caches of this node.
+	 * 
+	 * @return the number of changes read for the first time
+	 */
+	@Scheduled(fixedDelayString = "${vibe.flow.userChangePollIntervalMillis:1000}", initialDelayString = "${vibe.flow.userChangePollIntervalMillis:1000}")
+	public int pollUserChanges() {
+		return userChangeLogService.poll();
+	}
+
+	/**
+	 * Scheduled task that runs at a fixed delay to delete the changes logged before the retention period.
+	 * 
+	 * @return the number of deleted changes, or null if another node ran the job
+	 */
+	@Scheduled(fixedDelayString = "${vibe.flow.userChangeTruncateIntervalMillis:600000}", initialDelayString = "${vibe.flow.userChangeTruncateIntervalMillis:600000}")
+	public Integer truncateUserChangeLog() {
+		return jobLockService.runExclusively(TRUNCATE_USER_CHANGE_LOG, vibeFlowProperties.getUserChangeTruncateIntervalMillis(), userChangeLogService::truncate).orElse(null);
+	}
+}
@@ -23,7 +23,22 @@ public enum EmailTemplateData {
     /**
      * Tag for the base URL of the application.
      */
-	BASEURL("baseUrl");
+	BASEURL("baseUrl"),
+
+	/**
+	 * Tag for the date after which the account is permanently deleted.
+	 */
+	DEADLINE("deadline"),
+
+	/**
+	 * Tag for the id of the recipient, from which the token of the email is created when the email is sent.
+	 */
+	USER_ID("userId"),
+
+	/**
+	 * Tag for the registration date of the recipient, in milliseconds, carried by the confirmation token.
+	 */
+	REGISTRATION_DATE("registrationDate");
 
 	/**
      * The string key used to store the actual tag.
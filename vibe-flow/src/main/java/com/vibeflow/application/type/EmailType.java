@@ -1,7 +1,7 @@
 package com.vibeflow.application.type;
 
 /**
- * An enumeration representing the types of email messages.
+ * An enumeration representing the types of email messages, with the templates of their body and subject.
  * 
  * @author Denis
  */
@@ -10,10 +10,59 @@ public enum EmailType {
 	/**
      * Email type for confirm registration.
      */
-	CONFIRM_REGISTRATION,
+	CONFIRM_REGISTRATION("registration-body.ftlh", "registration-subject.ftlh"),
 	
 	/**
 	 * Email type for reset password
 	 */
-	RESET_PASSWORD;
-}
\ No newline at end of file
+	RESET_PASSWORD("password-reset-body.ftlh", "password-reset-subject.ftlh"),
+
+	/**
+	 * Email type for the reminder sent before a deleted account is purged.
+	 */
+	DELETION_REMINDER("deletion-reminder-body.ftlh", "deletion-reminder-subject.ftlh"),
+
+	/**
+	 * Email type for the reminder sent before an unconfirmed account is purged.
+	 */
+	CONFIRMATION_REMINDER("confirmation-reminder-body.ftlh", "confirmation-reminder-subject.ftlh");
+
+	/**
+	 * The name of the template of the email body.
+	 */
+	private final String bodyTemplate;
+
+	/**
+	 * The name of the template of the email subject, which takes no data.
+	 */
+	private final String subjectTemplate;
+
+	/**
+	 * Constructs an email type with the given templates.
+	 * 
+	 * @param bodyTemplate the name of the template of the email body
+	 * @param subjectTemplate the name of the template of the email subject
+	 */
+	private EmailType(String bodyTemplate, String subjectTemplate) {
+		this.bodyTemplate = bodyTemplate;
+		this.subjectTemplate = subjectTemplate;
+	}
+
+	/**
+	 * Returns the name of the template of the email body.
+	 * 
+	 * @return the name of the body template
+	 */
+	public String getBodyTemplate() {
+		return bodyTemplate;
+	}
+
+	/**
+	 * Returns the name of the template of the email subject.
+	 * 
+	 * @return the name of the subject template
+	 */
+	public String getSubjectTemplate() {
+		return subjectTemplate;
+	}
+}
@@ -18,7 +18,37 @@ public enum TokenClaim {
 	/**
 	 * The claim representing the account creation date.
 	 */
-	CREATION_DATE("creationDate");
+	CREATION_DATE("creationDate"),
+
+	/**
+	 * The claim representing the type of the token, set only on the access tokens.
+	 */
+	TOKEN_TYPE("tokenType"),
+
+	/**
+	 * The claim representing the email of the user.
+	 */
+	EMAIL("email"),
+
+	/**
+	 * The claim representing the name of the user.
+	 */
+	NAME("name"),
+
+	/**
+	 * The claim representing the status of the user.
+	 */
+	STATUS("status"),
+
+	/**
+	 * The claim representing the deletion date of the user.
+	 */
+	DELETION_DATE("deletionDate"),
+
+	/**
+	 * The claim representing the version of the user row the token was issued from.
+	 */
+	VERSION("version");
 
 	/**
 	 * The string key used to store the claim in the JWT.
@@ -0,0 +1,139 @@
+package com.vibeflow.application.utility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of strings, answering whether a string was definitely never added or might have been added.
+ * The bits are set with compare-and-set, so additions and lookups never block each other.
+ * A string is hashed once into two 64-bit hashes, which are combined into the positions of its bits.
+ * 
+ * @author Denis
+ */
+public class BloomFilter {
+
+	/**
+	 * The bits of the filter.
+	 */
+	private final AtomicLongArray bits;
+
+	/**
+	 * The number of bits of the filter.
+	 */
+	private final long bitCount;
+
+	/**
+	 * The number of bits set for every string.
+	 */
+	private final int hashCount;
+
+	/**
+	 * Creates a filter with the given number of bits and of bits per string.
+	 * 
+	 * @param bitCount the number of bits, rounded up to a multiple of 64
+	 * @param hashCount the number of bits set for every string
+	 */
+	public BloomFilter(long bitCount, int hashCount) {
+		int words = (int) Math.max(1, (bitCount + 63) / 64);
+		this.bits = new AtomicLongArray(words);
+		this.bitCount = words * 64L;
+		this.hashCount = Math.max(1, hashCount);
+	}
+
+	/**
+	 * Creates a filter sized for the given number of strings and false positive rate, within the given memory budget.
+	 * If the budget is too small, the filter is sized to the budget and its false positive rate is higher.
+	 * 
+	 * @param expectedInsertions the number of strings the filter is sized for
+	 * @param falsePositiveRate the rate of the lookups of absent strings answered as present
+	 * @param maxBytes the maximum size of the bits, in bytes
+	 * @return the filter
+	 */
+	public static BloomFilter create(long expectedInsertions, double falsePositiveRate, long maxBytes) {
+		long insertions = Math.max(1, expectedInsertions);
+		long optimalBits = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		long bitCount = Math.min(optimalBits, Math.min(maxBytes * 8, Integer.MAX_VALUE * 64L));
+		int hashCount = (int) Math.round((double) bitCount / insertions * Math.log(2));
+
+		return new BloomFilter(bitCount, hashCount);
+	}
+
+	/**
+	 * Adds the given string to the filter.
+	 * 
+	 * @param value the string to add
+	 */
+	public void put(String value) {
+		long hash1 = hash(value);
+		long hash2 = mix(hash1 + 0x9E3779B97F4A7C15L) | 1;
+
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+
+			long current = bits.get(word);
+			while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+				current = bits.get(word);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the given string might have been added to the filter.
+	 * 
+	 * @param value the string to look up
+	 * @return false if the string was definitely never added, true if it might have been added
+	 */
+	public boolean mightContain(String value) {
+		long hash1 = hash(value);
+		long hash2 = mix(hash1 + 0x9E3779B97F4A7C15L) | 1;
+
+		for (int i = 0; i < hashCount; i++) {
+			long bit = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount;
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the false positive rate of the filter once it holds the given number of strings.
+	 * 
+	 * @param insertions the number of strings added to the filter
+	 * @return the expected false positive rate
+	 */
+	public double getExpectedFalsePositiveRate(long insertions) {
+		return Math.pow(1 - Math.exp(-hashCount * (double) insertions / bitCount), hashCount);
+	}
+
+	/**
+	 * Returns the size of the bits of the filter.
+	 * 
+	 * @return the size in bytes
+	 */
+	public long getSizeInBytes() {
+		return bitCount / 8;
+	}
+
+	/**
+	 * Hashes the characters of the given string into 64 bits, with FNV-1a followed by the finalizer of MurmurHash3.
+	 */
+	private static long hash(String value) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * Spreads the bits of the given hash, with the finalizer of MurmurHash3.
+	 */
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+		hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return hash ^ (hash >>> 33);
+	}
+}
@@ -0,0 +1,184 @@
+package com.vibeflow.application.utility;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Circuit breaker around the calls to a remote service. After a number of consecutive failures the breaker opens
+ * and rejects the calls without trying them. Once the open period ends, a limited number of trial calls is let through:
+ * the first successful trial closes the breaker, and a failed trial opens it again.
+ * 
+ * @author Denis
+ */
+public class CircuitBreaker {
+
+	/**
+	 * The states of the breaker, with the value of the state gauge.
+	 */
+	public enum State {
+
+		/**
+		 * The calls are let through.
+		 */
+		CLOSED(0),
+
+		/**
+		 * The calls are rejected.
+		 */
+		OPEN(1),
+
+		/**
+		 * Only the trial calls are let through.
+		 */
+		HALF_OPEN(2);
+
+		/**
+		 * The value of the state gauge.
+		 */
+		private final int gaugeValue;
+
+		/**
+		 * Constructs a state with the given gauge value.
+		 * 
+		 * @param gaugeValue the value of the state gauge
+		 */
+		private State(int gaugeValue) {
+			this.gaugeValue = gaugeValue;
+		}
+	}
+
+	/**
+	 * The number of consecutive failures that opens the breaker.
+	 */
+	private final int failureThreshold;
+
+	/**
+	 * The time, in nanoseconds, the breaker stays open before the trial calls.
+	 */
+	private final long openNanos;
+
+	/**
+	 * The number of trial calls let through at once while the breaker is half-open.
+	 */
+	private final int halfOpenTrials;
+
+	/**
+	 * Counts the rejected calls.
+	 */
+	private final Counter rejected;
+
+	/**
+	 * The current state.
+	 */
+	private State state = State.CLOSED;
+
+	/**
+	 * The number of consecutive failures while the breaker is closed.
+	 */
+	private int failures;
+
+	/**
+	 * The number of trial calls in flight while the breaker is half-open.
+	 */
+	private int trials;
+
+	/**
+	 * The time, from {@link System#nanoTime()}, when the open period ends.
+	 */
+	private long openUntil;
+
+	/**
+	 * Creates a closed breaker and registers its metrics, tagged with the name of the breaker.
+	 * 
+	 * @param name the name of the breaker
+	 * @param failureThreshold the number of consecutive failures that opens the breaker
+	 * @param openMillis the time, in milliseconds, the breaker stays open before the trial calls
+	 * @param halfOpenTrials the number of trial calls let through at once while the breaker is half-open
+	 * @param meterRegistry the registry of the metrics
+	 */
+	public CircuitBreaker(String name, int failureThreshold, long openMillis, int halfOpenTrials, MeterRegistry meterRegistry) {
+		this.failureThreshold = failureThreshold;
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+		this.halfOpenTrials = halfOpenTrials;
+
+		Gauge.builder("vibeflow.circuit.state", this, breaker -> breaker.getState().gaugeValue)
+				.description("State of the circuit breaker: 0 closed, 1 open, 2 half-open")
+				.tag("name", name)
+				.register(meterRegistry);
+		this.rejected = Counter.builder("vibeflow.circuit.rejected")
+				.description("Calls rejected by the open circuit breaker")
+				.tag("name", name)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Asks to make a call. Every permitted call must be followed by {@link #onSuccess()} or {@link #onFailure()}.
+	 * 
+	 * @return true if the call may be made, false if the breaker rejects it
+	 */
+	public synchronized boolean tryAcquire() {
+		if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+			state = State.HALF_OPEN;
+			trials = 0;
+		}
+
+		if (state == State.CLOSED) {
+			return true;
+		}
+
+		if (state == State.HALF_OPEN && trials < halfOpenTrials) {
+			trials++;
+			return true;
+		}
+
+		rejected.increment();
+		return false;
+	}
+
+	/**
+	 * Records a successful call, which closes a half-open breaker.
+	 */
+	public synchronized void onSuccess() {
+		state = State.CLOSED;
+		failures = 0;
+		trials = 0;
+	}
+
+	/**
+	 * Records a failed call, which opens a half-open breaker or a closed breaker that reached the failure threshold.
+	 * The calls ending after the breaker opened don't extend the open period.
+	 */
+	public synchronized void onFailure() {
+		if (state == State.OPEN) {
+			return;
+		}
+
+		if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+			state = State.OPEN;
+			openUntil = System.nanoTime() + openNanos;
+			failures = 0;
+			trials = 0;
+		}
+	}
+
+	/**
+	 * Returns whether the breaker rejects the calls for now, without counting a rejection.
+	 * 
+	 * @return true if the breaker is open and its open period hasn't ended
+	 */
+	public synchronized boolean isOpen() {
+		return state == State.OPEN && System.nanoTime() - openUntil < 0;
+	}
+
+	/**
+	 * Returns the current state.
+	 * 
+	 * @return the state of the breaker
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+}
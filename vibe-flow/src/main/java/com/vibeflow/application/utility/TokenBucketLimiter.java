@@ -0,0 +1,101 @@
+package com.vibeflow.application.utility;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Lock-free rate limiter with a token bucket per key, for keys of unbounded cardinality such as client addresses.
+ * The buckets are held in a bounded Caffeine cache keyed by the key itself, so no two keys share a bucket,
+ * and a bucket is evicted once it has been idle long enough to be full again.
+ * A bucket holds a single long, the time at which it is full again (the generic cell rate algorithm),
+ * so an update is a single compare-and-set.
+ * 
+ * @author Denis
+ */
+public class TokenBucketLimiter {
+
+	/**
+	 * The time at which the bucket of every key is full again, relative to the start of the limiter.
+	 */
+	private final Cache<String, AtomicLong> buckets;
+
+	/**
+	 * The time, in nanoseconds, to refill a single token.
+	 */
+	private final long refillNanos;
+
+	/**
+	 * The time, in nanoseconds, a bucket may run ahead of the clock: the burst minus the token being taken.
+	 */
+	private final long toleranceNanos;
+
+	/**
+	 * The source of the time in nanoseconds.
+	 */
+	private final LongSupplier nanoClock;
+
+	/**
+	 * The time of the clock when the limiter was created, so the times of the buckets start at zero.
+	 */
+	private final long start;
+
+	/**
+	 * Creates a limiter measuring the time with {@link System#nanoTime()}.
+	 * 
+	 * @param maximumKeys the maximum number of buckets kept at once
+	 * @param burst the number of tokens of a full bucket
+	 * @param refillMillis the time, in milliseconds, to refill a single token
+	 */
+	public TokenBucketLimiter(long maximumKeys, int burst, long refillMillis) {
+		this(maximumKeys, burst, refillMillis, System::nanoTime);
+	}
+
+	/**
+	 * Creates a limiter measuring the time with the given clock.
+	 * 
+	 * @param maximumKeys the maximum number of buckets kept at once
+	 * @param burst the number of tokens of a full bucket
+	 * @param refillMillis the time, in milliseconds, to refill a single token
+	 * @param nanoClock the source of the time in nanoseconds
+	 */
+	public TokenBucketLimiter(long maximumKeys, int burst, long refillMillis, LongSupplier nanoClock) {
+		this.refillNanos = TimeUnit.MILLISECONDS.toNanos(refillMillis);
+		this.toleranceNanos = refillNanos * (Math.max(1, burst) - 1);
+		this.nanoClock = nanoClock;
+		this.start = nanoClock.getAsLong() - 1;
+		this.buckets = Caffeine.newBuilder()
+				.maximumSize(maximumKeys)
+				.expireAfterAccess(Duration.ofNanos(toleranceNanos + refillNanos))
+				.ticker(nanoClock::getAsLong)
+				.build();
+	}
+
+	/**
+	 * Takes a token from the bucket of the given key.
+	 * 
+	 * @param key the key of the bucket
+	 * @return zero if a token was taken, otherwise the time in milliseconds until a token is available
+	 */
+	public long tryAcquire(String key) {
+		AtomicLong bucket = buckets.get(key, k -> new AtomicLong());
+
+		while (true) {
+			long now = nanoClock.getAsLong() - start;
+			long fullAt = bucket.get();
+			long base = Math.max(fullAt, now);
+
+			if (base - now > toleranceNanos) {
+				return Math.max(1, TimeUnit.NANOSECONDS.toMillis(base - now - toleranceNanos));
+			}
+
+			if (bucket.compareAndSet(fullAt, base + refillNanos)) {
+				return 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Adds the single character codes of the statuses of the users next to their names, while the previous release keeps running.
+ * This is the expand step of the change: triggers keep the two columns in sync in both directions, so the previous release
+ * keeps reading and writing the names while this release reads and writes the codes. The triggers are created before the backfill,
+ * so a user written by either release during the backfill is encoded by its own statement, and the backfill only fills the codes
+ * still missing, in bounded batches of the primary key, each committed on its own.
+ * The column of the names, its indexes and the triggers are dropped by a later release, once no running node reads the names.
+ * A status without a code fails the migration before any user is changed, instead of being silently mapped to a valid status.
+ * 
+ * @author Denis
+ */
+public class V1_5__encode_user_status extends BaseJavaMigration {
+	
+	/**
+	 * The number of users encoded by a single statement.
+	 */
+	private static final int BATCH_SIZE = 1000;
+	
+	/**
+	 * The code of the status name of the row being written.
+	 */
+	private static final String CODE_OF_STATUS = "CASE NEW.status WHEN 'new' THEN 'N' WHEN 'active' THEN 'A' WHEN 'deleted' THEN 'D' END";
+	
+	/**
+	 * The status name of the code of the row being written.
+	 */
+	private static final String STATUS_OF_CODE = "CASE NEW.status_code WHEN 'N' THEN 'new' WHEN 'A' THEN 'active' WHEN 'D' THEN 'deleted' END";
+	
+	/**
+	 * The batches commit one by one, so the migration doesn't run in a single transaction.
+	 */
+	@Override
+	public boolean canExecuteInTransaction() {
+		return false;
+	}
+	
+	/**
+	 * Checks the statuses, adds the column of the codes, the triggers which keep it in sync with the column of the names,
+	 * backfills it and indexes it.
+	 */
+	@Override
+	public void migrate(Context context) throws Exception {
+		Connection connection = context.getConnection();
+		
+		try (Statement statement = connection.createStatement()) {
+			checkStatuses(statement);
+			
+			// This release only writes the codes, the insert trigger fills in the name
+			statement.execute("ALTER TABLE users ADD COLUMN status_code CHAR(1) NULL, ALTER COLUMN status SET DEFAULT 'new', ALGORITHM=INSTANT");
+			statement.execute("CREATE TRIGGER users_status_code_insert BEFORE INSERT ON users FOR EACH ROW "
+					+ "IF NEW.status_code IS NULL THEN SET NEW.status_code = " + CODE_OF_STATUS + "; "
+					+ "ELSE SET NEW.status = " + STATUS_OF_CODE + "; END IF");
+			statement.execute("CREATE TRIGGER users_status_code_update BEFORE UPDATE ON users FOR EACH ROW "
+					+ "IF NOT (NEW.status_code <=> OLD.status_code) THEN SET NEW.status = " + STATUS_OF_CODE + "; "
+					+ "ELSEIF NOT (NEW.status <=> OLD.status) OR NEW.status_code IS NULL THEN SET NEW.status_code = " + CODE_OF_STATUS + "; END IF");
+			
+			encodeStatuses(connection, statement);
+			checkEncoded(statement);
+			
+			statement.execute("ALTER TABLE users ADD INDEX idx_users_status_code_deletion_date (status_code, deletion_date), "
+					+ "ADD INDEX idx_users_status_code_registration_date (status_code, registration_date), ALGORITHM=INPLACE, LOCK=NONE");
+		}
+	}
+	
+	/**
+	 * Checks that every user has a status with a code.
+	 * 
+	 * @param statement The statement used to count the users.
+	 * @throws FlywayException If a user has an unknown or missing status.
+	 */
+	private void checkStatuses(Statement statement) throws SQLException {
+		try (ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users "
+				+ "WHERE status IS NULL OR status NOT IN ('new', 'active', 'deleted')")) {
+			result.next();
+			long unknown = result.getLong(1);
+			
+			if (unknown > 0) {
+				throw new FlywayException(unknown + " users have an unknown or missing status, which must be fixed before encoding the statuses");
+			}
+		}
+	}
+	
+	/**
+	 * Checks that the backfill left no user without a code.
+	 * 
+	 * @param statement The statement used to count the users.
+	 * @throws FlywayException If a user has no code.
+	 */
+	private void checkEncoded(Statement statement) throws SQLException {
+		try (ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM users WHERE status_code IS NULL")) {
+			result.next();
+			long missing = result.getLong(1);
+			
+			if (missing > 0) {
+				throw new FlywayException(missing + " users have no status code after the backfill");
+			}
+		}
+	}
+	
+	/**
+	 * Writes the code of the status of every user, one range of ids at a time.
+	 * The users skipped by the batches are the ones already encoded by the triggers.
+	 * 
+	 * @param connection The connection of the migration, in auto-commit mode.
+	 * @param statement The statement used to read the highest id.
+	 */
+	private void encodeStatuses(Connection connection, Statement statement) throws SQLException {
+		try (PreparedStatement update = connection.prepareStatement("UPDATE users SET status_code = "
+				+ "CASE status WHEN 'new' THEN 'N' WHEN 'active' THEN 'A' WHEN 'deleted' THEN 'D' END "
+				+ "WHERE id > ? AND id <= ? AND status_code IS NULL")) {
+			long lastId = 0;
+			
+			while (lastId < getMaxId(statement)) {
+				update.setLong(1, lastId);
+				update.setLong(2, lastId + BATCH_SIZE);
+				update.executeUpdate();
+				lastId += BATCH_SIZE;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the highest id of the users.
+	 * 
+	 * @param statement The statement used to read it.
+	 * @return The highest id, or zero if there are no users.
+	 */
+	private long getMaxId(Statement statement) throws SQLException {
+		try (ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM users")) {
+			result.next();
+			return result.getLong(1);
+		}
+	}
+}
@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS purge_reminder (
+    user_id INT NOT NULL,
+    type VARCHAR(32) NOT NULL,
+    reference_date TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (user_id, type, reference_date),
+    CONSTRAINT fk_purge_reminder_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+INSERT INTO job_lock (name, locked_until) VALUES ('remind-deleted-users', '1970-01-01 00:00:00');
+INSERT INTO job_lock (name, locked_until) VALUES ('remind-unconfirmed-users', '1970-01-01 00:00:00');
\ No newline at end of file
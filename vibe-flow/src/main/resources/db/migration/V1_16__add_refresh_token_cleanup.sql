@@ -0,0 +1,3 @@
+CREATE INDEX idx_refresh_token_expires_at ON refresh_token (expires_at);
+CREATE INDEX idx_refresh_token_revoked_at ON refresh_token (revoked_at);
+INSERT INTO job_lock (name, locked_until) VALUES ('purge-refresh-tokens', '1970-01-01 00:00:00');
\ No newline at end of file
@@ -0,0 +1,2 @@
+CREATE INDEX idx_users_status_deletion_date ON users (status, deletion_date);
+CREATE INDEX idx_users_status_registration_date ON users (status, registration_date);
\ No newline at end of file
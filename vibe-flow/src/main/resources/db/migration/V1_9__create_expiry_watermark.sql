@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS expiry_watermark (
+    job VARCHAR(64) PRIMARY KEY,
+    watermark DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NULL DEFAULT NULL
+);
+
+INSERT INTO expiry_watermark (job, watermark) VALUES ('deleted-users', '1970-01-01 00:00:00');
+INSERT INTO expiry_watermark (job, watermark) VALUES ('unconfirmed-users', '1970-01-01 00:00:00');
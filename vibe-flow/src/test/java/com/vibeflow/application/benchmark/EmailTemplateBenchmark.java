@@ -0,0 +1,95 @@
+package com.vibeflow.application.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
+
+import com.vibeflow.application.service.EmailTemplateRegistry;
+import com.vibeflow.application.type.EmailTemplateData;
+import com.vibeflow.application.type.EmailType;
+
+import freemarker.template.Configuration;
+
+/**
+ * Compares the render throughput of every email type when the templates are looked up and the subject is rendered
+ * on every send, as {@code EmailService} used to do, with the precompiled templates of {@code EmailTemplateRegistry}.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=EmailTemplateBenchmark}.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailTemplateBenchmark {
+
+	/**
+	 * The rendered email type.
+	 */
+	@Param({"CONFIRM_REGISTRATION", "RESET_PASSWORD"})
+	private EmailType type;
+
+	/**
+	 * The FreeMarker configuration, with its own template cache.
+	 */
+	private Configuration freemarkerConfig;
+
+	/**
+	 * The registry of the precompiled templates.
+	 */
+	private EmailTemplateRegistry registry;
+
+	/**
+	 * The data of the rendered email.
+	 */
+	private Map<String, Object> emailData;
+
+	/**
+	 * Builds the configuration, the registry and the data of the email.
+	 */
+	@Setup
+	public void setUp() {
+		freemarkerConfig = new Configuration(Configuration.VERSION_2_3_32);
+		freemarkerConfig.setClassForTemplateLoading(getClass(), "/email-templates/");
+		freemarkerConfig.setDefaultEncoding("UTF-8");
+
+		registry = new EmailTemplateRegistry(freemarkerConfig);
+
+		emailData = Map.of(EmailTemplateData.NAME.getName(), "Denis",
+				EmailTemplateData.TOKEN.getName(), "eyJhbGciOiJIUzUxMiJ9.eyJ1c2VySWQiOjQyfQ.signature",
+				EmailTemplateData.BASEURL.getName(), "https://vibeflow.example.com");
+	}
+
+	/**
+	 * Looks up both templates and renders the body and the subject.
+	 */
+	@Benchmark
+	public void renderPerSend(Blackhole blackhole) throws Exception {
+		blackhole.consume(FreeMarkerTemplateUtils.processTemplateIntoString(freemarkerConfig.getTemplate(type.getBodyTemplate()), emailData));
+		blackhole.consume(FreeMarkerTemplateUtils.processTemplateIntoString(freemarkerConfig.getTemplate(type.getSubjectTemplate()), Collections.emptyMap()));
+	}
+
+	/**
+	 * Renders the body into the reused buffer and takes the rendered subject.
+	 */
+	@Benchmark
+	public void renderPrecompiled(Blackhole blackhole) throws Exception {
+		blackhole.consume(registry.renderBody(type, emailData));
+		blackhole.consume(registry.getSubject(type));
+	}
+}
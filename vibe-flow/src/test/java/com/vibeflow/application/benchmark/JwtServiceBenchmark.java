@@ -0,0 +1,114 @@
+package com.vibeflow.application.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.JwtService;
+import com.vibeflow.application.type.TokenClaim;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Compares the cost of generating and parsing a token when the key and the parser are built on every call,
+ * as {@code JwtService} used to do, with the prebuilt key and parser of {@code JwtService}.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtServiceBenchmark}.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+	/**
+	 * The secret key of the tokens.
+	 */
+	private static final String SECRET_KEY = "vibeFlowvibeFlowvibeFlowvibeFlowvibeFlowvibeFlowvibeFlowvibeFlowvibeFlow";
+
+	/**
+	 * The service with the prebuilt key and parser.
+	 */
+	private JwtService jwtService;
+
+	/**
+	 * A token signed with the secret key.
+	 */
+	private String token;
+
+	/**
+	 * Builds the service and a token to parse.
+	 */
+	@Setup
+	public void setUp() {
+		VibeFlowPropertiesConfig vibeFlowProperties = new VibeFlowPropertiesConfig();
+		vibeFlowProperties.setSecretKey(SECRET_KEY);
+
+		jwtService = new JwtService();
+		ReflectionTestUtils.setField(jwtService, "vibeFlowProperties", vibeFlowProperties);
+		jwtService.init();
+
+		token = jwtService.generatePasswordResetToken(42);
+	}
+
+	/**
+	 * Generates a token, decoding the key on every call.
+	 */
+	@Benchmark
+	public String generatePerCall() {
+		SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+
+		return Jwts.builder()
+				.claim(TokenClaim.USER_ID.getName(), 42)
+				.signWith(key)
+				.compact();
+	}
+
+	/**
+	 * Parses a token, decoding the key and building the parser on every call.
+	 */
+	@Benchmark
+	public Claims parsePerCall() {
+		SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+
+		return Jwts.parserBuilder()
+				.setSigningKey(key)
+				.build()
+				.parseClaimsJws(token)
+				.getBody();
+	}
+
+	/**
+	 * Generates a token with the prebuilt key.
+	 */
+	@Benchmark
+	public String generatePrebuilt() {
+		return jwtService.generatePasswordResetToken(42);
+	}
+
+	/**
+	 * Parses a token with the prebuilt parser.
+	 */
+	@Benchmark
+	public Claims parsePrebuilt() {
+		return jwtService.parseToken(token);
+	}
+}
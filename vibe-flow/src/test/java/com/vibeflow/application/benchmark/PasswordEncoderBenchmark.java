@@ -0,0 +1,72 @@
+package com.vibeflow.application.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm;
+
+/**
+ * Measures the latency of a password verification for every candidate algorithm and cost,
+ * which is the CPU time a single login spends hashing.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PasswordEncoderBenchmark}.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+	/**
+	 * The algorithm and its cost: the work factor for BCrypt, the number of iterations for PBKDF2.
+	 */
+	@Param({"bcrypt:10", "bcrypt:11", "bcrypt:12", "bcrypt:13", "pbkdf2:310000", "pbkdf2:600000"})
+	private String candidate;
+
+	/**
+	 * The encoder of the candidate.
+	 */
+	private PasswordEncoder encoder;
+
+	/**
+	 * The hash the password is verified against.
+	 */
+	private String hash;
+
+	/**
+	 * Builds the encoder of the candidate and hashes the password once.
+	 */
+	@Setup
+	public void setUp() {
+		String[] parts = candidate.split(":");
+		int cost = Integer.parseInt(parts[1]);
+
+		encoder = "bcrypt".equals(parts[0])
+				? new BCryptPasswordEncoder(cost)
+				: new Pbkdf2PasswordEncoder("", 16, cost, SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+		hash = encoder.encode("correct horse battery staple");
+	}
+
+	/**
+	 * Verifies the password against its hash, as a login does.
+	 */
+	@Benchmark
+	public boolean verify() {
+		return encoder.matches("correct horse battery staple", hash);
+	}
+}
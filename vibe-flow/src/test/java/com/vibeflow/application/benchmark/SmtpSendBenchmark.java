@@ -0,0 +1,133 @@
+package com.vibeflow.application.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.SmtpTransportPool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Compares the messages sent per second when every email opens its own SMTP connection, as {@code EmailService} used to do,
+ * with batches sent over the pooled connections of {@code SmtpTransportPool}, against an in-process SMTP server.
+ * The in-process server has no TLS and no authentication, so the gain against a real server is larger.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SmtpSendBenchmark}.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmtpSendBenchmark {
+
+	/**
+	 * The number of messages of a batch.
+	 */
+	private static final int BATCH_SIZE = 50;
+
+	/**
+	 * The in-process SMTP server.
+	 */
+	private GreenMail greenMail;
+
+	/**
+	 * The mail sender opening a connection per send.
+	 */
+	private JavaMailSenderImpl mailSender;
+
+	/**
+	 * The pool of connections.
+	 */
+	private SmtpTransportPool pool;
+
+	/**
+	 * The messages of a batch.
+	 */
+	private List<MimeMessage> messages;
+
+	/**
+	 * Starts the server and builds the messages.
+	 */
+	@Setup
+	public void setUp() throws MessagingException {
+		greenMail = new GreenMail(ServerSetupTest.SMTP.dynamicPort());
+		greenMail.start();
+
+		mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(greenMail.getSmtp().getPort());
+
+		pool = new SmtpTransportPool(mailSender, new VibeFlowPropertiesConfig(), new SimpleMeterRegistry());
+
+		messages = new ArrayList<>();
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			MimeMessage message = mailSender.createMimeMessage();
+			message.setFrom(new InternetAddress("vibeflow@localhost"));
+			message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress("user" + i + "@localhost"));
+			message.setSubject("Confirm registration");
+			message.setText("Dear user, to confirm your Vibe Flow account, you must click the link below.");
+			messages.add(message);
+		}
+	}
+
+	/**
+	 * Drops the messages received during the previous iteration.
+	 */
+	@Setup(Level.Iteration)
+	public void purgeReceived() throws Exception {
+		greenMail.purgeEmailFromAllMailboxes();
+	}
+
+	/**
+	 * Stops the pool and the server.
+	 */
+	@TearDown
+	public void tearDown() {
+		pool.destroy();
+		greenMail.stop();
+	}
+
+	/**
+	 * Sends every message of the batch on its own connection.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void sendPerMessage() {
+		for (MimeMessage message : messages) {
+			mailSender.send(message);
+		}
+	}
+
+	/**
+	 * Sends the batch over a pooled connection.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public List<MessagingException> sendPooled() throws MessagingException {
+		return pool.send(messages);
+	}
+}
@@ -0,0 +1,349 @@
+package com.vibeflow.application.email;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.dto.EmailInfo;
+import com.vibeflow.application.dto.EmailResetPasswordDto;
+import com.vibeflow.application.dto.UserDto;
+import com.vibeflow.application.exception.CircuitOpenException;
+import com.vibeflow.application.exception.EmailException;
+import com.vibeflow.application.model.EmailOutbox;
+import com.vibeflow.application.model.OutboxStatus;
+import com.vibeflow.application.repository.EmailOutboxRepository;
+import com.vibeflow.application.service.EmailCoalescingWindow;
+import com.vibeflow.application.service.EmailService;
+import com.vibeflow.application.service.JwtService;
+import com.vibeflow.application.task.EmailOutboxRelay;
+import com.vibeflow.application.type.EmailTemplateData;
+import com.vibeflow.application.type.EmailType;
+import com.vibeflow.application.type.TokenClaim;
+import com.vibeflow.application.utility.JsonUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * EmailOutboxTest tests that the emails are written to the outbox with the change they announce,
+ * that the repeated requests are coalesced and throttled, and that the relay retries them until they are sent or dead
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class, properties = {"vibe.flow.outboxBaseBackoffMillis=0", "vibe.flow.outboxMaxAttempts=3"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@TestPropertySource(locations="classpath:application-test.properties")
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = {"classpath:db/ClearDatabase.sql", "classpath:db/PopulateDatabase.sql"}),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+public class EmailOutboxTest {
+
+	/**
+	 * MockMvc instance is used for simulating HTPP requests
+	 */
+	@Autowired
+	private MockMvc mockMvc;
+
+	/**
+	 * The relay sending the emails of the outbox, run explicitly by the tests
+	 */
+	@Autowired
+	private EmailOutboxRelay emailOutboxRelay;
+
+	/**
+	 * Repository of the outbox, to check the state of the emails
+	 */
+	@Autowired
+	private EmailOutboxRepository emailOutboxRepository;
+
+	/**
+	 * Registry of the metrics, to check the coalesced requests
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * The JWT service, to read the token created when the email is sent
+	 */
+	@Autowired
+	private JwtService jwtService;
+
+	/**
+	 * The coalescing window of the emails, to check its throttling and its release
+	 */
+	@Autowired
+	private EmailCoalescingWindow emailCoalescingWindow;
+
+	/**
+	 * Template of the transactions, to roll back a request of an email
+	 */
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * Mocked email service, standing for the SMTP server
+	 */
+	@MockBean
+	private EmailService emailService;
+
+	/**
+	 * Tests that the registration writes its email to the outbox without sending it,
+	 * and that the relay sends it with the base URL of the request
+	 * @throws Exception
+	 */
+	@Test
+	void testRegistrationWritesEmailToOutbox() throws Exception {
+		registerUser("denis@gmail.com")
+		.andExpect(status().isOk());
+
+		List<EmailOutbox> emails = emailOutboxRepository.findByEmailAddress("denis@gmail.com");
+		assertEquals(1, emails.size());
+		assertEquals(OutboxStatus.PENDING, emails.get(0).getStatus());
+		assertEquals(EmailType.CONFIRM_REGISTRATION, emails.get(0).getType());
+		assertFalse(emails.get(0).getEmailData().containsKey(EmailTemplateData.TOKEN.getName()));
+		verifyNoInteractions(emailService);
+
+		when(emailService.sendBatch(anyList())).thenReturn(Collections.singletonList(null));
+		assertEquals(1, emailOutboxRelay.relayBatch());
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<EmailInfo>> emailInfos = ArgumentCaptor.forClass(List.class);
+		verify(emailService).sendBatch(emailInfos.capture());
+		assertEquals("http://localhost", emailInfos.getValue().get(0).getEmailData().get(EmailTemplateData.BASEURL.getName()));
+
+		String token = (String) emailInfos.getValue().get(0).getEmailData().get(EmailTemplateData.TOKEN.getName());
+		assertEquals(emails.get(0).getEmailData().get(EmailTemplateData.USER_ID.getName()),
+				jwtService.parseToken(token).get(TokenClaim.USER_ID.getName(), Integer.class));
+
+		EmailOutbox sent = emailOutboxRepository.findById(emails.get(0).getId()).get();
+		assertEquals(OutboxStatus.SENT, sent.getStatus());
+		assertNotNull(sent.getSentAt());
+	}
+
+	/**
+	 * Tests that no registration email is written when the registration is rejected
+	 * @throws Exception
+	 */
+	@Test
+	void testNoEmailForRejectedRegistration() throws Exception {
+		registerUser("denismateescu@gmail.com")
+		.andExpect(status().isConflict());
+
+		assertTrue(emailOutboxRepository.findByEmailAddress("denismateescu@gmail.com").isEmpty());
+	}
+
+	/**
+	 * Tests that a failed email is retried until it is sent
+	 * @throws Exception
+	 */
+	@Test
+	void testFailedEmailIsRetried() throws Exception {
+		when(emailService.sendBatch(anyList()))
+		.thenReturn(smtpDown())
+		.thenReturn(smtpDown())
+		.thenReturn(Collections.singletonList(null));
+
+		registerUser("denis@gmail.com")
+		.andExpect(status().isOk());
+
+		emailOutboxRelay.relayBatch();
+		emailOutboxRelay.relayBatch();
+		emailOutboxRelay.relayBatch();
+
+		EmailOutbox email = emailOutboxRepository.findByEmailAddress("denis@gmail.com").get(0);
+		assertEquals(OutboxStatus.SENT, email.getStatus());
+		assertEquals(3, email.getAttempts());
+		verify(emailService, times(3)).sendBatch(anyList());
+	}
+
+	/**
+	 * Tests that an email failing on every attempt is moved to the dead state and isn't claimed again
+	 * @throws Exception
+	 */
+	@Test
+	void testEmailIsDeadAfterMaxAttempts() throws Exception {
+		when(emailService.sendBatch(anyList())).thenReturn(smtpDown());
+
+		registerUser("denis@gmail.com")
+		.andExpect(status().isOk());
+
+		for (int i = 0; i < 4; i++) {
+			emailOutboxRelay.relayBatch();
+		}
+
+		EmailOutbox email = emailOutboxRepository.findByEmailAddress("denis@gmail.com").get(0);
+		assertEquals(OutboxStatus.DEAD, email.getStatus());
+		assertEquals(3, email.getAttempts());
+		assertTrue(email.getLastError().contains("SMTP down"));
+		verify(emailService, times(3)).sendBatch(anyList());
+	}
+
+	/**
+	 * Tests that the relay leaves the emails in the outbox without using their attempts while the SMTP circuit breaker is open
+	 * @throws Exception
+	 */
+	@Test
+	void testRelayWaitsWhileCircuitIsOpen() throws Exception {
+		when(emailService.isCircuitOpen()).thenReturn(true);
+
+		registerUser("denis@gmail.com")
+		.andExpect(status().isOk());
+
+		assertEquals(0, emailOutboxRelay.relayBatch());
+
+		EmailOutbox email = emailOutboxRepository.findByEmailAddress("denis@gmail.com").get(0);
+		assertEquals(OutboxStatus.PENDING, email.getStatus());
+		assertEquals(0, email.getAttempts());
+		verify(emailService, times(0)).sendBatch(anyList());
+	}
+
+	/**
+	 * Tests that the emails rejected by a half-open circuit breaker after they were claimed are given back without using an attempt
+	 * @throws Exception
+	 */
+	@Test
+	void testEmailRejectedByCircuitIsReleased() throws Exception {
+		when(emailService.sendBatch(anyList()))
+		.thenReturn(List.of(new EmailException("SMTP down", new CircuitOpenException("The circuit breaker is open"))));
+
+		registerUser("denis@gmail.com")
+		.andExpect(status().isOk());
+
+		assertEquals(0, emailOutboxRelay.relayBatch());
+
+		EmailOutbox email = emailOutboxRepository.findByEmailAddress("denis@gmail.com").get(0);
+		assertEquals(OutboxStatus.PENDING, email.getStatus());
+		assertEquals(0, email.getAttempts());
+		assertNull(email.getLastError());
+		verify(emailService, times(1)).sendBatch(anyList());
+	}
+
+	/**
+	 * Tests that a worker whose claim expired while it was sending doesn't record the outcome of the email claimed again by another worker
+	 * @throws Exception
+	 */
+	@Test
+	void testExpiredClaimDoesNotRecordOutcome() throws Exception {
+		registerUser("denis@gmail.com")
+		.andExpect(status().isOk());
+
+		when(emailService.sendBatch(anyList())).thenAnswer(invocation -> {
+			EmailOutbox claimedAgain = emailOutboxRepository.findByEmailAddress("denis@gmail.com").get(0);
+			claimedAgain.setClaimToken("other-worker");
+			emailOutboxRepository.save(claimedAgain);
+			return Collections.singletonList(null);
+		});
+
+		assertEquals(1, emailOutboxRelay.relayBatch());
+
+		EmailOutbox email = emailOutboxRepository.findByEmailAddress("denis@gmail.com").get(0);
+		assertEquals(OutboxStatus.PENDING, email.getStatus());
+		assertEquals("other-worker", email.getClaimToken());
+		assertNull(email.getSentAt());
+		assertEquals(1.0, meterRegistry.counter("vibeflow.email.outbox.relayed", "outcome", "lost").count());
+	}
+
+	/**
+	 * Tests that the repeated reset requests of a user within the coalescing window reuse the queued email
+	 * @throws Exception
+	 */
+	@Test
+	void testRepeatedResetRequestsAreCoalesced() throws Exception {
+		double coalesced = meterRegistry.counter("vibeflow.email.coalesced", "type", EmailType.RESET_PASSWORD.name()).count();
+
+		EmailResetPasswordDto emailDto = new EmailResetPasswordDto();
+		emailDto.setEmail("denismateescu@gmail.com");
+
+		for (int i = 0; i < 3; i++) {
+			mockMvc.perform(post("/api/users/email-reset-password")
+					.contentType("application/json")
+					.content(JsonUtil.asJsonString(emailDto)))
+			.andExpect(status().isOk());
+		}
+
+		assertEquals(1, emailOutboxRepository.findByEmailAddress("denismateescu@gmail.com").size());
+		assertEquals(coalesced + 2, meterRegistry.counter("vibeflow.email.coalesced", "type", EmailType.RESET_PASSWORD.name()).count());
+	}
+
+	/**
+	 * Tests that an address receives a bounded number of emails, even when it belongs to several users
+	 * @throws Exception
+	 */
+	@Test
+	void testEmailsAreThrottledPerAddress() throws Exception {
+		double throttled = meterRegistry.counter("vibeflow.email.throttled", "type", EmailType.RESET_PASSWORD.name()).count();
+
+		for (int userId = 1001; userId <= 1005; userId++) {
+			assertTrue(emailCoalescingWindow.tryAcquire(userId, EmailType.RESET_PASSWORD, "throttled@gmail.com"));
+		}
+
+		assertFalse(emailCoalescingWindow.tryAcquire(1006, EmailType.RESET_PASSWORD, "Throttled@gmail.com"));
+		assertTrue(emailCoalescingWindow.tryAcquire(1006, EmailType.RESET_PASSWORD, "other@gmail.com"));
+		assertEquals(throttled + 1, meterRegistry.counter("vibeflow.email.throttled", "type", EmailType.RESET_PASSWORD.name()).count());
+	}
+
+	/**
+	 * Tests that the window of an email requested in a transaction that rolls back is released
+	 * @throws Exception
+	 */
+	@Test
+	void testWindowIsReleasedOnRollback() throws Exception {
+		transactionTemplate.executeWithoutResult(transaction -> {
+			assertTrue(emailCoalescingWindow.tryAcquire(2001, EmailType.RESET_PASSWORD, "rollback@gmail.com"));
+			transaction.setRollbackOnly();
+		});
+
+		assertTrue(emailCoalescingWindow.tryAcquire(2001, EmailType.RESET_PASSWORD, "rollback@gmail.com"));
+		assertFalse(emailCoalescingWindow.tryAcquire(2001, EmailType.RESET_PASSWORD, "rollback@gmail.com"));
+	}
+
+	/**
+	 * Returns the outcome of a batch of one email, which the SMTP server failed to send
+	 */
+	private List<EmailException> smtpDown() {
+		return List.of(new EmailException("SMTP down", null));
+	}
+
+	/**
+	 * Registers a new user with the given email
+	 */
+	private ResultActions registerUser(String email) throws Exception {
+		UserDto newUser = new UserDto();
+		newUser.setName("Denis");
+		newUser.setEmail(email);
+		newUser.setPassword("password");
+
+		return mockMvc.perform(post("/api/users/register")
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(newUser)));
+	}
+}
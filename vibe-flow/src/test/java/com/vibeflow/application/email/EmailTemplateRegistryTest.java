@@ -0,0 +1,69 @@
+package com.vibeflow.application.email;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.vibeflow.application.service.EmailTemplateRegistry;
+import com.vibeflow.application.type.EmailTemplateData;
+import com.vibeflow.application.type.EmailType;
+
+import freemarker.template.Configuration;
+
+/**
+ * EmailTemplateRegistryTest tests the loading and the rendering of the email templates
+ *
+ */
+public class EmailTemplateRegistryTest {
+
+	/**
+	 * Tests that the subjects are rendered once and that the bodies are rendered with the data of every email
+	 * @throws Exception
+	 */
+	@Test
+	void testRendersEveryEmailType() throws Exception {
+		EmailTemplateRegistry registry = new EmailTemplateRegistry(freemarkerConfig("/email-templates/"));
+
+		assertEquals("Confirm registration", registry.getSubject(EmailType.CONFIRM_REGISTRATION));
+		assertEquals("Change Password", registry.getSubject(EmailType.RESET_PASSWORD));
+
+		String first = registry.renderBody(EmailType.CONFIRM_REGISTRATION, emailData("Denis", "first"));
+		String second = registry.renderBody(EmailType.RESET_PASSWORD, emailData("Maria", "second"));
+
+		assertTrue(first.contains("Dear Denis,"));
+		assertTrue(first.contains("http://localhost/api/users/confirm?token=first"));
+		assertTrue(second.contains("Dear Maria,"));
+		assertTrue(second.contains("http://localhost/api/users/change-password?token=second"));
+	}
+
+	/**
+	 * Tests that a missing template stops the creation of the registry
+	 */
+	@Test
+	void testMissingTemplateFailsAtStartup() {
+		assertThrows(IllegalStateException.class, () -> new EmailTemplateRegistry(freemarkerConfig("/missing-templates/")));
+	}
+
+	/**
+	 * Creates a FreeMarker configuration loading the templates from the given classpath folder
+	 */
+	private Configuration freemarkerConfig(String path) {
+		Configuration configuration = new Configuration(Configuration.VERSION_2_3_32);
+		configuration.setClassForTemplateLoading(getClass(), path);
+		configuration.setDefaultEncoding("UTF-8");
+		return configuration;
+	}
+
+	/**
+	 * Creates the data of an email
+	 */
+	private Map<String, Object> emailData(String name, String token) {
+		return Map.of(EmailTemplateData.NAME.getName(), name,
+				EmailTemplateData.TOKEN.getName(), token,
+				EmailTemplateData.BASEURL.getName(), "http://localhost");
+	}
+}
@@ -0,0 +1,266 @@
+package com.vibeflow.application.email;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.SmtpTransportPool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * SmtpCircuitBreakerTest tests the time limits and the circuit breaker of the SMTP connections,
+ * against a fake SMTP server which can be slow or failing
+ *
+ */
+public class SmtpCircuitBreakerTest {
+
+	/**
+	 * The behaviours of the fake SMTP server
+	 */
+	private enum Mode {
+
+		/**
+		 * Answers every command
+		 */
+		HEALTHY,
+
+		/**
+		 * Accepts the connections but never answers
+		 */
+		SLOW,
+
+		/**
+		 * Refuses the connections with a 421 reply
+		 */
+		FAILING
+	}
+
+	/**
+	 * The current behaviour of the fake SMTP server
+	 */
+	private volatile Mode mode = Mode.HEALTHY;
+
+	/**
+	 * The socket of the fake SMTP server
+	 */
+	private ServerSocket serverSocket;
+
+	/**
+	 * The registry of the breaker metrics
+	 */
+	private SimpleMeterRegistry meterRegistry;
+
+	/**
+	 * Starts the fake SMTP server.
+	 * @throws IOException
+	 */
+	@BeforeEach
+	void startServer() throws IOException {
+		serverSocket = new ServerSocket(0);
+		meterRegistry = new SimpleMeterRegistry();
+
+		Thread acceptor = new Thread(() -> {
+			while (!serverSocket.isClosed()) {
+				try {
+					Socket socket = serverSocket.accept();
+					Thread connection = new Thread(() -> serve(socket));
+					connection.setDaemon(true);
+					connection.start();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Stops the fake SMTP server.
+	 * @throws IOException
+	 */
+	@AfterEach
+	void stopServer() throws IOException {
+		serverSocket.close();
+	}
+
+	/**
+	 * Tests that a server which doesn't answer fails within the time limit,
+	 * and that the open breaker then rejects the emails without connecting
+	 */
+	@Test
+	void testSlowServerOpensBreaker() {
+		mode = Mode.SLOW;
+		SmtpTransportPool pool = createPool(2, 60000);
+
+		long start = System.nanoTime();
+		assertThrows(MessagingException.class, () -> pool.send(messages()));
+		assertThrows(MessagingException.class, () -> pool.send(messages()));
+		assertTrue(System.nanoTime() - start < 5_000_000_000L);
+
+		assertTrue(pool.isCircuitOpen());
+		assertEquals(1.0, gauge("vibeflow.circuit.state"));
+
+		start = System.nanoTime();
+		assertThrows(MessagingException.class, () -> pool.send(messages()));
+		assertTrue(System.nanoTime() - start < 100_000_000L);
+		assertEquals(1.0, meterRegistry.get("vibeflow.circuit.rejected").tag("name", "smtp").counter().count());
+	}
+
+	/**
+	 * Tests that a successful trial after the open period closes the breaker
+	 * @throws Exception
+	 */
+	@Test
+	void testHalfOpenTrialClosesBreaker() throws Exception {
+		mode = Mode.FAILING;
+		SmtpTransportPool pool = createPool(2, 200);
+
+		assertThrows(MessagingException.class, () -> pool.send(messages()));
+		assertThrows(MessagingException.class, () -> pool.send(messages()));
+		assertTrue(pool.isCircuitOpen());
+
+		mode = Mode.HEALTHY;
+		Thread.sleep(300);
+
+		List<MessagingException> failures = pool.send(messages());
+		pool.destroy();
+
+		assertNull(failures.get(0));
+		assertFalse(pool.isCircuitOpen());
+		assertEquals(0.0, gauge("vibeflow.circuit.state"));
+	}
+
+	/**
+	 * Tests that a failed trial after the open period opens the breaker again
+	 * @throws Exception
+	 */
+	@Test
+	void testFailedTrialReopensBreaker() throws Exception {
+		mode = Mode.FAILING;
+		SmtpTransportPool pool = createPool(1, 200);
+
+		assertThrows(MessagingException.class, () -> pool.send(messages()));
+		Thread.sleep(300);
+		assertFalse(pool.isCircuitOpen());
+
+		assertThrows(MessagingException.class, () -> pool.send(messages()));
+		assertTrue(pool.isCircuitOpen());
+
+		assertThrows(MessagingException.class, () -> pool.send(messages()));
+		assertEquals(1.0, meterRegistry.get("vibeflow.circuit.rejected").tag("name", "smtp").counter().count());
+	}
+
+	/**
+	 * Creates a pool with short time limits and the given breaker settings
+	 */
+	private SmtpTransportPool createPool(int failureThreshold, long openMillis) {
+		Properties javaMailProperties = new Properties();
+		javaMailProperties.setProperty("mail.smtp.connectiontimeout", "200");
+		javaMailProperties.setProperty("mail.smtp.timeout", "200");
+		javaMailProperties.setProperty("mail.smtp.writetimeout", "200");
+
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(serverSocket.getLocalPort());
+		mailSender.setJavaMailProperties(javaMailProperties);
+
+		VibeFlowPropertiesConfig vibeFlowProperties = new VibeFlowPropertiesConfig();
+		vibeFlowProperties.setSmtpCircuitFailureThreshold(failureThreshold);
+		vibeFlowProperties.setSmtpCircuitOpenMillis(openMillis);
+
+		return new SmtpTransportPool(mailSender, vibeFlowProperties, meterRegistry);
+	}
+
+	/**
+	 * Returns the value of the given gauge of the SMTP breaker
+	 */
+	private double gauge(String name) {
+		return meterRegistry.get(name).tag("name", "smtp").gauge().value();
+	}
+
+	/**
+	 * Creates a batch of one message
+	 */
+	private List<MimeMessage> messages() throws MessagingException {
+		MimeMessage message = new MimeMessage((Session) null);
+		message.setFrom(new InternetAddress("vibeflow@localhost"));
+		message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress("user@localhost"));
+		message.setSubject("Subject");
+		message.setText("Body");
+
+		return List.of(message);
+	}
+
+	/**
+	 * Serves one connection according to the current behaviour
+	 */
+	private void serve(Socket socket) {
+		try (socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+			switch (mode) {
+			case SLOW:
+				while (in.read() != -1) {
+					// never answers
+				}
+				return;
+			case FAILING:
+				out.print("421 Service not available\r\n");
+				out.flush();
+				return;
+			default:
+				break;
+			}
+
+			out.print("220 localhost fake SMTP\r\n");
+			out.flush();
+
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.toUpperCase();
+
+				if (command.startsWith("DATA")) {
+					out.print("354 End data with <CR><LF>.<CR><LF>\r\n");
+					out.flush();
+					while ((line = in.readLine()) != null && !line.equals(".")) {
+						// the content of the message
+					}
+					out.print("250 OK\r\n");
+				} else if (command.startsWith("QUIT")) {
+					out.print("221 Bye\r\n");
+					out.flush();
+					return;
+				} else {
+					out.print("250 OK\r\n");
+				}
+				out.flush();
+			}
+		} catch (IOException e) {
+			// the client closed the connection
+		}
+	}
+}
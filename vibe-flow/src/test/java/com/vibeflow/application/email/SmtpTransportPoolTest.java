@@ -0,0 +1,172 @@
+package com.vibeflow.application.email;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.SmtpTransportPool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * SmtpTransportPoolTest tests that the emails are sent over reused SMTP connections, against an in-process SMTP server
+ *
+ */
+public class SmtpTransportPoolTest {
+
+	/**
+	 * The in-process SMTP server
+	 */
+	private GreenMail greenMail;
+
+	/**
+	 * The mail sender pointing to the in-process server
+	 */
+	private JavaMailSenderImpl mailSender;
+
+	/**
+	 * The registry of the pool metrics
+	 */
+	private SimpleMeterRegistry meterRegistry;
+
+	/**
+	 * Starts the SMTP server.
+	 */
+	@BeforeEach
+	void startServer() {
+		greenMail = new GreenMail(ServerSetupTest.SMTP.dynamicPort());
+		greenMail.start();
+
+		mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(greenMail.getSmtp().getPort());
+
+		meterRegistry = new SimpleMeterRegistry();
+	}
+
+	/**
+	 * Stops the SMTP server.
+	 */
+	@AfterEach
+	void stopServer() {
+		greenMail.stop();
+	}
+
+	/**
+	 * Tests that consecutive batches share one connection until it reaches the cap of messages
+	 * @throws Exception
+	 */
+	@Test
+	void testBatchesReuseConnection() throws Exception {
+		SmtpTransportPool pool = createPool(60, 25);
+
+		for (int batch = 0; batch < 5; batch++) {
+			List<MessagingException> failures = pool.send(messages(10));
+			failures.forEach(failure -> assertNull(failure));
+		}
+		pool.destroy();
+
+		assertEquals(50, greenMail.getReceivedMessages().length);
+		assertEquals(2.0, meterRegistry.get("vibeflow.smtp.connections.opened").counter().count());
+	}
+
+	/**
+	 * Tests that an idle connection past its timeout is replaced
+	 * @throws Exception
+	 */
+	@Test
+	void testIdleConnectionIsReplaced() throws Exception {
+		SmtpTransportPool pool = createPool(0, 100);
+
+		pool.send(messages(1));
+		pool.send(messages(1));
+		pool.destroy();
+
+		assertEquals(2, greenMail.getReceivedMessages().length);
+		assertEquals(2.0, meterRegistry.get("vibeflow.smtp.connections.opened").counter().count());
+	}
+
+	/**
+	 * Tests that a connection closed by the server is replaced without failing the batch
+	 * @throws Exception
+	 */
+	@Test
+	void testClosedConnectionIsReplaced() throws Exception {
+		SmtpTransportPool pool = createPool(60, 100);
+
+		pool.send(messages(1));
+		greenMail.stop();
+		greenMail = new GreenMail(ServerSetupTest.SMTP.port(mailSender.getPort()));
+		greenMail.start();
+
+		List<MessagingException> failures = pool.send(messages(2));
+		pool.destroy();
+
+		failures.forEach(failure -> assertNull(failure));
+		assertEquals(2, greenMail.getReceivedMessages().length);
+	}
+
+	/**
+	 * Tests that a message the server can't take fails alone
+	 * @throws Exception
+	 */
+	@Test
+	void testFailedMessageDoesNotFailBatch() throws Exception {
+		SmtpTransportPool pool = createPool(60, 100);
+
+		List<MimeMessage> messages = messages(3);
+		messages.set(1, mailSender.createMimeMessage());
+
+		List<MessagingException> failures = pool.send(messages);
+		pool.destroy();
+
+		assertNull(failures.get(0));
+		assertNotNull(failures.get(1));
+		assertNull(failures.get(2));
+		assertEquals(2, greenMail.getReceivedMessages().length);
+	}
+
+	/**
+	 * Creates a pool with the given idle timeout and cap of messages per connection
+	 */
+	private SmtpTransportPool createPool(int idleTimeoutSeconds, int maxMessagesPerConnection) {
+		VibeFlowPropertiesConfig vibeFlowProperties = new VibeFlowPropertiesConfig();
+		vibeFlowProperties.setSmtpPoolSize(2);
+		vibeFlowProperties.setSmtpIdleTimeoutSeconds(idleTimeoutSeconds);
+		vibeFlowProperties.setSmtpMaxMessagesPerConnection(maxMessagesPerConnection);
+
+		return new SmtpTransportPool(mailSender, vibeFlowProperties, meterRegistry);
+	}
+
+	/**
+	 * Creates the given number of messages
+	 */
+	private List<MimeMessage> messages(int count) throws MessagingException {
+		List<MimeMessage> messages = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			MimeMessage message = mailSender.createMimeMessage();
+			message.setFrom(new InternetAddress("vibeflow@localhost"));
+			message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress("user" + i + "@localhost"));
+			message.setSubject("Message " + i);
+			message.setText("Body " + i);
+			messages.add(message);
+		}
+
+		return messages;
+	}
+}
@@ -0,0 +1,128 @@
+package com.vibeflow.application.jwt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.service.JwtService;
+import com.vibeflow.application.type.TokenClaim;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * The JwtKeyringTest class tests the rotation of the JWT signing keys
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class, properties = {
+		"vibe.flow.signingKeys.old=" + JwtKeyringTest.OLD_KEY,
+		"vibe.flow.signingKeys.new=" + JwtKeyringTest.NEW_KEY,
+		"vibe.flow.activeSigningKeyId=new"
+})
+@ActiveProfiles("test")
+public class JwtKeyringTest {
+
+	/**
+	 * The secret of the key being rotated out
+	 */
+	static final String OLD_KEY = "Z3dfF5hzNv1eKZwMoP89OtyNWBl8cIFlJ+FbzZtDUR8moUcAw53F226WCkUqONLj";
+
+	/**
+	 * The secret of the active key
+	 */
+	static final String NEW_KEY = "RTY6UA6G96vei2S6t+9SsZeyglmfGAtEF0/lBXd0tHue/2ex6/RId/LQB7l7JKKn";
+
+	/**
+	 * Instance of JwtService to interact with the methods from JwtService.
+	 */
+	@Autowired
+	private JwtService jwtService;
+
+	/**
+	 * The configuration holding the legacy secret key
+	 */
+	@Autowired
+	private VibeFlowPropertiesConfig vibeFlowProperties;
+
+	/**
+	 * Tests that the new tokens are signed with the active key and carry its key id.
+	 */
+	@Test
+	void testTokenSignedWithActiveKey() {
+		String token = jwtService.generatePasswordResetToken(7);
+
+		String keyId = Jwts.parserBuilder()
+				.setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(NEW_KEY)))
+				.build()
+				.parseClaimsJws(token)
+				.getHeader()
+				.getKeyId();
+
+		assertEquals("new", keyId);
+		assertEquals(7, jwtService.parseToken(token).get(TokenClaim.USER_ID.getName(), Integer.class));
+	}
+
+	/**
+	 * Tests that the tokens signed before the rotation are still valid.
+	 */
+	@Test
+	void testTokensSignedBeforeRotationStayValid() {
+		String oldKeyToken = signToken("old", OLD_KEY);
+		String legacyToken = signToken(null, vibeFlowProperties.getSecretKey());
+
+		assertEquals(7, jwtService.parseToken(oldKeyToken).get(TokenClaim.USER_ID.getName(), Integer.class));
+		assertEquals(7, jwtService.parseToken(legacyToken).get(TokenClaim.USER_ID.getName(), Integer.class));
+	}
+
+	/**
+	 * Tests that the tokens with an unknown key id or signed with the wrong key are rejected.
+	 */
+	@Test
+	void testUnknownOrMismatchedKeyRejected() {
+		assertThrows(JwtException.class, () -> jwtService.parseToken(signToken("removed", OLD_KEY)));
+		assertThrows(JwtException.class, () -> jwtService.parseToken(signToken("new", OLD_KEY)));
+	}
+
+	/**
+	 * Tests that the tokens without a key id are rejected after the cutoff, while the tokens of the keyring stay valid.
+	 */
+	@Test
+	void testTokensWithoutKeyIdRejectedAfterCutoff() {
+		VibeFlowPropertiesConfig cutoffProperties = new VibeFlowPropertiesConfig();
+		cutoffProperties.setSecretKey(vibeFlowProperties.getSecretKey());
+		cutoffProperties.setSigningKeys(Map.of("old", OLD_KEY, "new", NEW_KEY));
+		cutoffProperties.setActiveSigningKeyId("new");
+		cutoffProperties.setLegacyTokensAcceptedUntil(Instant.now().minusSeconds(1).toString());
+
+		JwtService cutoffJwtService = new JwtService();
+		ReflectionTestUtils.setField(cutoffJwtService, "vibeFlowProperties", cutoffProperties);
+		cutoffJwtService.init();
+
+		assertThrows(JwtException.class, () -> cutoffJwtService.parseToken(signToken(null, vibeFlowProperties.getSecretKey())));
+		assertEquals(7, cutoffJwtService.parseToken(signToken("old", OLD_KEY)).get(TokenClaim.USER_ID.getName(), Integer.class));
+	}
+
+	/**
+	 * Signs a token with the given key, as a previous configuration would have.
+	 */
+	private String signToken(String keyId, String secret) {
+		return Jwts.builder()
+				.setHeader(keyId == null ? Map.of() : Map.of(JwsHeader.KEY_ID, keyId))
+				.claim(TokenClaim.USER_ID.getName(), 7)
+				.signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+				.compact();
+	}
+}
@@ -0,0 +1,162 @@
+package com.vibeflow.application.login;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.dto.ChangePasswordDto;
+import com.vibeflow.application.task.SessionCleanupTask;
+import com.vibeflow.application.utility.JsonUtil;
+
+import jakarta.servlet.http.Cookie;
+
+/**
+ * The JdbcSessionTest class tests the sessions stored in the database
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@TestPropertySource(locations="classpath:application-test.properties", properties={"vibe.flow.jdbcSessionsEnabled=true", "vibe.flow.purgeChunkSize=2"})
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = {"classpath:db/ClearDatabase.sql", "classpath:db/PopulateDatabase.sql"}),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+class JdbcSessionTest {
+
+	/**
+	 * The email of the populated user
+	 */
+	private static final String EMAIL = "denismateescu@gmail.com";
+
+	/**
+	 * MockMvc instance is used for simulating HTPP requests
+	 */
+	@Autowired
+	private MockMvc mockMvc;
+
+	/**
+	 * Instance for reading the session tables
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Instance for access the task deleting the expired sessions
+	 */
+	@Autowired
+	private SessionCleanupTask sessionCleanupTask;
+
+	/**
+	 * Tests that the session of a form login is stored in the database, indexed by the user, with a compact security context
+	 * @throws Exception
+	 */
+	@Test
+	void testSessionStoredCompactly() throws Exception {
+		Cookie session = login();
+
+		mockMvc.perform(get("/api/users/me").cookie(session))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.name", is("Denis Mateescu")))
+			.andExpect(jsonPath("$.email", is(EMAIL)));
+
+		assertEquals(1, countSessions());
+
+		byte[] securityContext = jdbcTemplate.queryForObject("SELECT a.ATTRIBUTE_BYTES FROM SPRING_SESSION_ATTRIBUTES a "
+				+ "JOIN SPRING_SESSION s ON s.PRIMARY_ID = a.SESSION_PRIMARY_ID WHERE s.PRINCIPAL_NAME = ? AND a.ATTRIBUTE_NAME = ?",
+				byte[].class, EMAIL, HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+		assertTrue(securityContext.length < 128);
+	}
+
+	/**
+	 * Tests that changing the password invalidates the other sessions of the user, but keeps the current one
+	 * @throws Exception
+	 */
+	@Test
+	void testPasswordChangeInvalidatesOtherSessions() throws Exception {
+		Cookie current = login();
+		Cookie other = login();
+		assertEquals(2, countSessions());
+
+		ChangePasswordDto changePasswordDto = new ChangePasswordDto();
+		changePasswordDto.setOldPassword("password");
+		changePasswordDto.setNewPassword("newPassword");
+
+		mockMvc.perform(put("/api/users/password").cookie(current)
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(changePasswordDto)))
+			.andExpect(status().isOk());
+
+		assertEquals(1, countSessions());
+
+		mockMvc.perform(get("/api/users/me").cookie(current))
+			.andExpect(jsonPath("$.email", is(EMAIL)));
+
+		mockMvc.perform(get("/api/users/me").cookie(other))
+			.andExpect(jsonPath("$.email", is("anonymousUser")));
+	}
+
+	/**
+	 * Tests that the expired sessions are deleted in chunks, and that the live sessions are kept
+	 * @throws Exception
+	 */
+	@Test
+	void testExpiredSessionsDeletedInChunks() throws Exception {
+		login();
+
+		long expired = System.currentTimeMillis() - 60000;
+		for (int i = 0; i < 3; i++) {
+			jdbcTemplate.update("INSERT INTO SPRING_SESSION (PRIMARY_ID, SESSION_ID, CREATION_TIME, LAST_ACCESS_TIME, MAX_INACTIVE_INTERVAL, EXPIRY_TIME) "
+					+ "VALUES (?, ?, ?, ?, 1, ?)", UUID.randomUUID().toString(), UUID.randomUUID().toString(), expired, expired, expired);
+		}
+
+		assertEquals(3, sessionCleanupTask.purgeExpiredSessions());
+		assertEquals(1, countSessions());
+	}
+
+	/**
+	 * Logs in the populated user and returns the cookie of the session.
+	 */
+	private Cookie login() throws Exception {
+		Cookie session = mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", EMAIL)
+				.param("password", "password"))
+			.andExpect(status().isFound())
+			.andReturn().getResponse().getCookie("SESSION");
+
+		assertNotNull(session);
+		return session;
+	}
+
+	/**
+	 * Counts the stored sessions of the populated user.
+	 */
+	private int countSessions() {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION WHERE PRINCIPAL_NAME = ?", Integer.class, EMAIL);
+	}
+}
@@ -0,0 +1,142 @@
+package com.vibeflow.application.login;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.utility.TokenBucketLimiter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The LoginThrottleTest class tests the throttling of the login attempts by client address and by email
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@TestPropertySource(locations="classpath:application-test.properties", properties={"vibe.flow.loginThrottleEnabled=true",
+		"vibe.flow.loginAddressBurst=4", "vibe.flow.loginEmailBurst=2", "vibe.flow.loginAddressRefillMillis=600000",
+		"vibe.flow.loginEmailRefillMillis=600000", "vibe.flow.loginAccountBurst=3", "vibe.flow.loginAccountRefillMillis=600000"})
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = {"classpath:db/ClearDatabase.sql", "classpath:db/PopulateDatabase.sql"}),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+class LoginThrottleTest {
+
+	/**
+	 * MockMvc instance is used for simulating HTPP requests
+	 */
+	@Autowired
+	private MockMvc mockMvc;
+
+	/**
+	 * The registry of the throttling metrics
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * Tests that the attempts beyond the burst of an email from an address, then of an address, are rejected with a 429 response
+	 * before they are authenticated, that the user can still log in from another address, and that the attempts beyond the burst
+	 * of the account are rejected from any address
+	 * @throws Exception
+	 */
+	@Test
+	void testAttemptsThrottledByEmailThenByAddress() throws Exception {
+		login("10.0.0.1", "denismateescu@gmail.com", "wrong-password").andExpect(status().isFound());
+		login("10.0.0.1", "DenisMateescu@gmail.com", "wrong-password").andExpect(status().isFound());
+		login("10.0.0.1", "denismateescu@gmail.com", "password")
+			.andExpect(status().isTooManyRequests())
+			.andExpect(header().string(HttpHeaders.RETRY_AFTER, "600"));
+
+		login("10.0.0.1", "other@gmail.com", "password").andExpect(status().isFound());
+		login("10.0.0.1", "another@gmail.com", "password").andExpect(status().isTooManyRequests());
+
+		login("10.0.0.2", "another@gmail.com", "password").andExpect(status().isFound());
+		login("10.0.0.3", "denismateescu@gmail.com", "password")
+			.andExpect(status().isFound())
+			.andExpect(redirectedUrl("/"));
+		login("10.0.0.4", "denismateescu@gmail.com", "password").andExpect(status().isTooManyRequests());
+
+		assertEquals(1, meterRegistry.counter("vibeflow.login.attempts", "outcome", "throttled-email").count());
+		assertEquals(1, meterRegistry.counter("vibeflow.login.attempts", "outcome", "throttled-address").count());
+		assertEquals(1, meterRegistry.counter("vibeflow.login.attempts", "outcome", "throttled-account").count());
+	}
+
+	/**
+	 * Tests that a bucket refills a token every refill period, up to its burst
+	 */
+	@Test
+	void testBucketRefill() {
+		AtomicLong clock = new AtomicLong();
+		TokenBucketLimiter limiter = new TokenBucketLimiter(16, 3, 1000, clock::get);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.tryAcquire("key"));
+		}
+		assertEquals(1000, limiter.tryAcquire("key"));
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+		assertEquals(600, limiter.tryAcquire("key"));
+
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+		assertEquals(0, limiter.tryAcquire("key"));
+		assertTrue(limiter.tryAcquire("key") > 0);
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.tryAcquire("key"));
+		}
+		assertTrue(limiter.tryAcquire("key") > 0);
+	}
+
+	/**
+	 * Tests that keys with the same hash code keep buckets of their own
+	 */
+	@Test
+	void testCollidingKeysDoNotShareBucket() {
+		TokenBucketLimiter limiter = new TokenBucketLimiter(16, 1, 1000);
+
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		assertEquals(0, limiter.tryAcquire("Aa"));
+		assertTrue(limiter.tryAcquire("Aa") > 0);
+		assertEquals(0, limiter.tryAcquire("BB"));
+	}
+
+	/**
+	 * Attempts a form login from the given address.
+	 */
+	private ResultActions login(String address, String email, String password) throws Exception {
+		return mockMvc.perform(post("/login")
+				.with(request -> {
+					request.setRemoteAddr(address);
+					return request;
+				})
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", email)
+				.param("password", password));
+	}
+}
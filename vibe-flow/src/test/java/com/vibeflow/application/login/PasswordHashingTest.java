@@ -0,0 +1,174 @@
+package com.vibeflow.application.login;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.vibeflow.application.config.VibeFlowPropertiesConfig;
+import com.vibeflow.application.exception.ErrorResponse;
+import com.vibeflow.application.exception.GlobalExceptionHandler;
+import com.vibeflow.application.exception.InternalErrorCode;
+import com.vibeflow.application.exception.ServerBusyException;
+import com.vibeflow.application.security.BoundedPasswordEncoder;
+import com.vibeflow.application.security.CustomAuthenticationFailureHandler;
+import com.vibeflow.application.security.PasswordEncoderConfig;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The PasswordHashingTest class tests the admission control and the calibration of the password hashing
+ *
+ */
+public class PasswordHashingTest {
+
+	/**
+	 * Released to let the blocked hashing finish
+	 */
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	/**
+	 * Counted down when a hashing thread starts hashing
+	 */
+	private final CountDownLatch started = new CountDownLatch(1);
+
+	/**
+	 * The registry of the hashing metrics
+	 */
+	private SimpleMeterRegistry meterRegistry;
+
+	/**
+	 * The encoder under test, with one hashing thread and a queue of one request
+	 */
+	private BoundedPasswordEncoder encoder;
+
+	/**
+	 * Creates the encoder around a delegate that blocks until it is released.
+	 */
+	@BeforeEach
+	void buildEncoder() {
+		meterRegistry = new SimpleMeterRegistry();
+		encoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(), 1, 1, 3, meterRegistry);
+	}
+
+	/**
+	 * Stops the hashing pool.
+	 */
+	@AfterEach
+	void stopEncoder() {
+		release.countDown();
+		encoder.destroy();
+	}
+
+	/**
+	 * Tests that a hashing request is rejected right away when the thread and the queue are busy,
+	 * and that the accepted requests complete once the thread is free.
+	 * @throws Exception
+	 */
+	@Test
+	void testRejectsWhenQueueIsFull() throws Exception {
+		CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+		waitForQueuedRequest();
+
+		ServerBusyException exception = assertThrows(ServerBusyException.class, () -> encoder.matches("third", "hash"));
+		assertEquals(3, exception.getRetryAfterSeconds());
+
+		release.countDown();
+
+		assertEquals("hashed-first", running.get(5, TimeUnit.SECONDS));
+		assertEquals("hashed-second", queued.get(5, TimeUnit.SECONDS));
+		assertEquals(1.0, meterRegistry.get("vibeflow.password.hashing.rejected").counter().count());
+		assertEquals(2, meterRegistry.get("vibeflow.password.hashing.duration").tag("operation", "encode").timer().count());
+		assertEquals(2, meterRegistry.get("vibeflow.password.hashing.queue.wait").timer().count());
+	}
+
+	/**
+	 * Tests that a login rejected by the hashing queue gets a 503 response with a Retry-After header.
+	 * @throws Exception
+	 */
+	@Test
+	void testLoginFailureIsServiceUnavailable() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		new CustomAuthenticationFailureHandler().onAuthenticationFailure(new MockHttpServletRequest(), response,
+				new ServerBusyException(3));
+
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+		assertEquals("3", response.getHeader(HttpHeaders.RETRY_AFTER));
+	}
+
+	/**
+	 * Tests that a request of the API rejected by the hashing queue gets a 503 response with a Retry-After header.
+	 */
+	@Test
+	void testApiFailureIsServiceUnavailable() {
+		ResponseEntity<ErrorResponse> response = new GlobalExceptionHandler().handleServerBusyException(new ServerBusyException(3));
+
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+		assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		assertEquals(InternalErrorCode.SERVER_BUSY.getInternalErrorCode(), response.getBody().getInternalErrorCode());
+	}
+
+	/**
+	 * Tests that the calibration keeps the work factor within the configured bounds.
+	 */
+	@Test
+	void testCalibrationStaysWithinBounds() {
+		VibeFlowPropertiesConfig vibeFlowProperties = new VibeFlowPropertiesConfig();
+		vibeFlowProperties.setPasswordHashingMinStrength(4);
+		vibeFlowProperties.setPasswordHashingMaxStrength(6);
+
+		vibeFlowProperties.setPasswordHashingTargetMillis(0);
+		assertEquals(4, PasswordEncoderConfig.calibrateStrength(vibeFlowProperties));
+
+		vibeFlowProperties.setPasswordHashingTargetMillis(60000);
+		assertEquals(6, PasswordEncoderConfig.calibrateStrength(vibeFlowProperties));
+	}
+
+	/**
+	 * Waits until the second hashing request is queued.
+	 */
+	private void waitForQueuedRequest() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (meterRegistry.get("vibeflow.password.hashing.queue.size").gauge().value() < 1 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Password encoder that blocks until the test releases it.
+	 */
+	private class BlockingPasswordEncoder implements PasswordEncoder {
+
+		@Override
+		public String encode(CharSequence rawPassword) {
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "hashed-" + rawPassword;
+		}
+
+		@Override
+		public boolean matches(CharSequence rawPassword, String encodedPassword) {
+			return encode(rawPassword).equals(encodedPassword);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package com.vibeflow.application.login;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.jayway.jsonpath.JsonPath;
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.dto.DeleteUserDto;
+import com.vibeflow.application.dto.LoginDto;
+import com.vibeflow.application.dto.RefreshTokenDto;
+import com.vibeflow.application.exception.InternalErrorCode;
+import com.vibeflow.application.service.JwtService;
+import com.vibeflow.application.task.RefreshTokenCleanupTask;
+import com.vibeflow.application.utility.JsonUtil;
+
+import io.jsonwebtoken.JwtException;
+
+/**
+ * The TokenAuthenticationTest class tests the stateless authentication with access and refresh tokens
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@TestPropertySource(locations="classpath:application-test.properties", properties="vibe.flow.statelessAuthEnabled=true")
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = {"classpath:db/ClearDatabase.sql", "classpath:db/PopulateDatabase.sql"}),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+class TokenAuthenticationTest {
+
+	/**
+	 * MockMvc instance is used for simulating HTPP requests
+	 */
+	@Autowired
+	private MockMvc mockMvc;
+
+	/**
+	 * The service verifying the tokens
+	 */
+	@Autowired
+	private JwtService jwtService;
+
+	/**
+	 * The task deleting the expired and revoked refresh tokens
+	 */
+	@Autowired
+	private RefreshTokenCleanupTask refreshTokenCleanupTask;
+
+	/**
+	 * JdbcTemplate used to insert the tokens of the cleanup test
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Tests that the access token authenticates the requests without creating a session
+	 * @throws Exception
+	 */
+	@Test
+	void testAccessTokenAuthenticatesWithoutSession() throws Exception {
+		String accessToken = JsonPath.read(login("password").andReturn().getResponse().getContentAsString(), "$.accessToken");
+
+		MvcResult result = mockMvc.perform(get("/api/users/me")
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.email", is("denismateescu@gmail.com")))
+			.andReturn();
+
+		assertNull(result.getRequest().getSession(false));
+	}
+
+	/**
+	 * Tests that a wrong password or an invalid access token is rejected with a 401 response
+	 * @throws Exception
+	 */
+	@Test
+	void testInvalidCredentialsAreRejected() throws Exception {
+		login("wrong-password")
+			.andExpect(status().isUnauthorized())
+			.andExpect(jsonPath("$.internalErrorCode", is(InternalErrorCode.INVALID_CREDENTIALS.getInternalErrorCode())));
+
+		mockMvc.perform(get("/api/users/me")
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtService.generatePasswordResetToken(1)))
+			.andExpect(status().isUnauthorized());
+
+		assertThrows(JwtException.class, () -> jwtService.parseAccessToken("not-a-token"));
+	}
+
+	/**
+	 * Tests that a refresh token is used once, and that using it again revokes the tokens issued after it
+	 * @throws Exception
+	 */
+	@Test
+	void testRefreshTokenRotation() throws Exception {
+		String refreshToken = JsonPath.read(login("password").andReturn().getResponse().getContentAsString(), "$.refreshToken");
+
+		String rotatedToken = JsonPath.read(refresh(refreshToken)
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString(), "$.refreshToken");
+		assertNotEquals(refreshToken, rotatedToken);
+
+		refresh(refreshToken)
+			.andExpect(status().isUnauthorized())
+			.andExpect(jsonPath("$.internalErrorCode", is(InternalErrorCode.INVALID_REFRESH_TOKEN.getInternalErrorCode())));
+
+		refresh(rotatedToken).andExpect(status().isUnauthorized());
+	}
+
+	/**
+	 * Tests that deleting the account revokes its refresh tokens
+	 * @throws Exception
+	 */
+	@Test
+	void testDeletionRevokesRefreshTokens() throws Exception {
+		String response = login("password").andReturn().getResponse().getContentAsString();
+		String accessToken = JsonPath.read(response, "$.accessToken");
+		String refreshToken = JsonPath.read(response, "$.refreshToken");
+
+		DeleteUserDto deleteUserDto = new DeleteUserDto();
+		deleteUserDto.setPassword("password");
+
+		mockMvc.perform(put("/api/users/delete")
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(deleteUserDto)))
+			.andExpect(status().isOk());
+
+		refresh(refreshToken)
+			.andExpect(status().isUnauthorized())
+			.andExpect(jsonPath("$.internalErrorCode", is(InternalErrorCode.INVALID_REFRESH_TOKEN.getInternalErrorCode())));
+	}
+
+	/**
+	 * Tests that the cleanup deletes the expired tokens and those revoked before the retention, of any user,
+	 * but keeps the recently revoked ones, so a reused token still revokes the tokens of its user
+	 * @throws Exception
+	 */
+	@Test
+	void testCleanupDeletesExpiredAndRevokedTokens() throws Exception {
+		String usedToken = JsonPath.read(login("password").andReturn().getResponse().getContentAsString(), "$.refreshToken");
+		String refreshToken = JsonPath.read(refresh(usedToken).andReturn().getResponse().getContentAsString(), "$.refreshToken");
+
+		int userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'denismateescu@yahoo.com'", Integer.class);
+		jdbcTemplate.update("INSERT INTO refresh_token (token_hash, user_id, created_at, expires_at) VALUES "
+				+ "(REPEAT('a', 64), ?, DATEADD('DAY', -20, CURRENT_TIMESTAMP()), DATEADD('DAY', -6, CURRENT_TIMESTAMP()))", userId);
+		jdbcTemplate.update("INSERT INTO refresh_token (token_hash, user_id, created_at, expires_at, revoked_at) VALUES "
+				+ "(REPEAT('b', 64), ?, DATEADD('DAY', -3, CURRENT_TIMESTAMP()), DATEADD('DAY', 11, CURRENT_TIMESTAMP()), DATEADD('DAY', -2, CURRENT_TIMESTAMP()))", userId);
+
+		assertEquals(2, refreshTokenCleanupTask.purgeRefreshTokens());
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM refresh_token", Integer.class));
+
+		refresh(usedToken)
+			.andExpect(status().isUnauthorized());
+		refresh(refreshToken)
+			.andExpect(status().isUnauthorized())
+			.andExpect(jsonPath("$.internalErrorCode", is(InternalErrorCode.INVALID_REFRESH_TOKEN.getInternalErrorCode())));
+	}
+
+	/**
+	 * Requests the tokens of the populated user with the given password.
+	 */
+	private ResultActions login(String password) throws Exception {
+		LoginDto loginDto = new LoginDto();
+		loginDto.setEmail("denismateescu@gmail.com");
+		loginDto.setPassword(password);
+
+		return mockMvc.perform(post("/api/auth/token")
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(loginDto)));
+	}
+
+	/**
+	 * Exchanges the given refresh token for new tokens.
+	 */
+	private ResultActions refresh(String refreshToken) throws Exception {
+		RefreshTokenDto refreshTokenDto = new RefreshTokenDto();
+		refreshTokenDto.setRefreshToken(refreshToken);
+
+		return mockMvc.perform(post("/api/auth/refresh")
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(refreshTokenDto)));
+	}
+}
@@ -0,0 +1,131 @@
+package com.vibeflow.application.login;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.dto.ChangePasswordDto;
+import com.vibeflow.application.security.CaffeineUserCache;
+import com.vibeflow.application.utility.JsonUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * The UserDetailsCacheTest class tests the cache of the user details loaded by the logins
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@TestPropertySource(locations="classpath:application-test.properties", properties="vibe.flow.userDetailsCacheEnabled=true")
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = {"classpath:db/ClearDatabase.sql", "classpath:db/PopulateDatabase.sql"}),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+class UserDetailsCacheTest {
+
+	/**
+	 * The email of the populated user
+	 */
+	private static final String EMAIL = "denismateescu@gmail.com";
+
+	/**
+	 * MockMvc instance is used for simulating HTPP requests
+	 */
+	@Autowired
+	private MockMvc mockMvc;
+
+	/**
+	 * The entity manager factory, used to access the Hibernate statistics
+	 */
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * The registry of the cache metrics
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * Tests that a burst of logins for the same account produces a single query.
+	 * The first login upgrades the legacy hash of the populated user, which evicts the user, so the burst starts with a cold cache
+	 * @throws Exception
+	 */
+	@Test
+	void testLoginBurstQueriesOnce() throws Exception {
+		login("password").andExpect(redirectedUrl("/"));
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		double hits = cacheGets("hit");
+
+		for (int i = 0; i < 5; i++) {
+			login("password").andExpect(redirectedUrl("/"));
+		}
+
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertEquals(hits + 4, cacheGets("hit"));
+	}
+
+	/**
+	 * Tests that changing the password evicts the cached user, so the old password doesn't log in anymore
+	 * @throws Exception
+	 */
+	@Test
+	void testPasswordChangeEvictsUser() throws Exception {
+		MockHttpSession session = (MockHttpSession) login("password")
+				.andExpect(redirectedUrl("/"))
+				.andReturn().getRequest().getSession();
+
+		ChangePasswordDto changePasswordDto = new ChangePasswordDto();
+		changePasswordDto.setOldPassword("password");
+		changePasswordDto.setNewPassword("newPassword");
+
+		mockMvc.perform(put("/api/users/password").session(session)
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(changePasswordDto)))
+			.andExpect(status().isOk());
+
+		login("password").andExpect(redirectedUrl("/login#invalid-user"));
+		login("newPassword").andExpect(redirectedUrl("/"));
+	}
+
+	/**
+	 * Logs in the populated user with the given password.
+	 */
+	private ResultActions login(String password) throws Exception {
+		return mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", EMAIL)
+				.param("password", password));
+	}
+
+	/**
+	 * Returns the number of lookups of the user details cache with the given result.
+	 */
+	private double cacheGets(String result) {
+		return meterRegistry.get("cache.gets").tags("cache", CaffeineUserCache.CACHE_NAME, "result", result).functionCounter().count();
+	}
+}
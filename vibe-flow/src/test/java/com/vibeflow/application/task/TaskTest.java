@@ -1,86 +1,384 @@
 package com.vibeflow.application.task;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
-
-import java.util.Collections;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
 import com.vibeflow.application.VibeFlowApplication;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
 
+import com.vibeflow.application.dto.PurgeSummary;
+import com.vibeflow.application.model.EmailOutbox;
+import com.vibeflow.application.model.ExpiryWatermark;
 import com.vibeflow.application.model.User;
+import com.vibeflow.application.model.UserStatus;
+import com.vibeflow.application.repository.EmailOutboxRepository;
+import com.vibeflow.application.repository.ExpiryWatermarkRepository;
+import com.vibeflow.application.repository.JobLockRepository;
+import com.vibeflow.application.repository.PurgeReminderRepository;
 import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.service.EmailOutboxService;
+import com.vibeflow.application.service.JobLockService;
+import com.vibeflow.application.service.UserPurgeService;
+import com.vibeflow.application.type.EmailTemplateData;
+import com.vibeflow.application.type.EmailType;
 import com.vibeflow.application.utility.DateUtility;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
- * Class that tests the tasks 
+ * Class that tests the tasks
  *
  */
 @SpringBootTest(classes=VibeFlowApplication.class)
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
-@TestPropertySource(locations="classpath:application-test.properties")
+@TestPropertySource(locations="classpath:application-test.properties", properties={"vibe.flow.purgeChunkSize=2", "vibe.flow.jobLockLeaseSeconds=1",
+		"vibe.flow.reminderBatchSize=2", "vibe.flow.reminderRatePerSecond=0"})
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql"),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
 class TaskTest {
 
+	/**
+	 * The number of milliseconds in a day
+	 */
+	private static final long MILIS_IN_DAY = 24L * 60L * 60L * 1000L;
+
 	/**
 	 * Instance for interaction with database
 	 */
-    @Mock
+    @Autowired
     private UserRepository userRepository;
 
     /**
-     * Instance to access the methods from DateUtility
+     * Instance for interaction with the locks of the jobs
+     */
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    /**
+     * Instance for interaction with the watermarks of the expiry
+     */
+    @Autowired
+    private ExpiryWatermarkRepository expiryWatermarkRepository;
+
+    /**
+     * Registry of the expiry metrics
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Instance running the jobs on a single node
      */
-    @Mock
-    private DateUtility dateUtility;
+    @Autowired
+    private JobLockService jobLockService;
 
     /**
      * Instance for access the tasks from DeletedUsersTask
      */
-    @InjectMocks
+    @Autowired
     private DeletedUsersTask deletedUsersTask;
 
+    /**
+     * Instance for access the tasks from PurgeReminderTask
+     */
+    @Autowired
+    private PurgeReminderTask purgeReminderTask;
+
+    /**
+     * Instance for interaction with the outbox
+     */
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    /**
+     * Instance rendering the emails of the outbox as the relay sends them
+     */
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    /**
+     * Instance for interaction with the queued reminders
+     */
+    @Autowired
+    private PurgeReminderRepository purgeReminderRepository;
+
     /**
      * Tests the task for deleted users
      */
     @Test
     void testProcessRemoveDeletedUsers() {
-        User user = mock(User.class);
-        
-        when(userRepository.findByStatus(anyString())).thenReturn(Collections.singletonList(user));
-
-        when(dateUtility.getDaysLeftForRecovery(any())).thenReturn(0);
+        for (int i = 0; i < 5; i++) {
+        	saveUser("expired" + i + "@test.com", UserStatus.DELETED, 1, daysAgo(10));
+        }
+        saveUser("recoverable@test.com", UserStatus.DELETED, 1, daysAgo(1));
+        saveUser("active@test.com", UserStatus.ACTIVE, 10, null);
 
-        deletedUsersTask.processDeletedUsers();
+        PurgeSummary summary = deletedUsersTask.processDeletedUsers();
 
-        verify(userRepository, times(1)).delete(user);
+        assertEquals(List.of(2, 2, 1), summary.getPurgedPerChunk());
+        assertEquals(5, summary.getTotalPurged());
+        assertTrue(summary.isCompleted());
+        assertNotNull(userRepository.findByEmail("recoverable@test.com"));
+        assertNotNull(userRepository.findByEmail("active@test.com"));
+        assertNull(userRepository.findByEmail("expired0@test.com"));
     }
-    
+
     /**
      * Test the task for unconfirmed users
      */
     @Test
     void testProcessRemoveUnconfirmedUsers() {
-        User user = mock(User.class);
-        
-        when(userRepository.findByStatus(anyString())).thenReturn(Collections.singletonList(user));
+        for (int i = 0; i < 4; i++) {
+        	saveUser("unconfirmed" + i + "@test.com", UserStatus.NEW, 10, null);
+        }
+        saveUser("pending@test.com", UserStatus.NEW, 1, null);
+
+        PurgeSummary summary = deletedUsersTask.processDeleteUnconfirmedUsers();
+
+        assertEquals(List.of(2, 2, 0), summary.getPurgedPerChunk());
+        assertEquals(4, summary.getTotalPurged());
+        assertTrue(summary.isCompleted());
+        assertNotNull(userRepository.findByEmail("pending@test.com"));
+        assertNull(userRepository.findByEmail("unconfirmed0@test.com"));
+    }
 
-        when(dateUtility.getDaysLeftForConfirmAccount(any())).thenReturn(0);
+    /**
+     * Tests that a run only deletes the users expired since the watermark of the previous run, with the skew allowance,
+     * and that the watermark is persisted
+     */
+    @Test
+    void testExpiryResumesFromWatermark() {
+        deletedUsersTask.processDeletedUsers();
 
-        deletedUsersTask.processDeleteUnconfirmedUsers();
+        ExpiryWatermark watermark = expiryWatermarkRepository.findById(UserPurgeService.DELETED_USERS).get();
+        long deadline = DateUtility.getCurrentUTCTimestamp().getTime() - 7 * MILIS_IN_DAY;
+        assertTrue(Math.abs(deadline - watermark.getWatermark().getTime()) < 60000);
 
-        verify(userRepository, times(1)).delete(user);
+        saveUser("before-watermark@test.com", UserStatus.DELETED, 1, new Timestamp(watermark.getWatermark().getTime() - 3600000));
+        saveUser("within-skew@test.com", UserStatus.DELETED, 1, new Timestamp(watermark.getWatermark().getTime() - 60000));
+
+        releaseLock(DeletedUsersTask.PURGE_DELETED_USERS);
+        PurgeSummary summary = deletedUsersTask.processDeletedUsers();
+
+        assertEquals(1, summary.getTotalPurged());
+        assertNotNull(userRepository.findByEmail("before-watermark@test.com"));
+        assertNull(userRepository.findByEmail("within-skew@test.com"));
+        assertTrue(meterRegistry.get("vibeflow.expiry.lag").tag("job", UserPurgeService.DELETED_USERS).gauge().value() < 60);
     }
-}
 
+    /**
+     * Tests that the users whose deadline is below the watermark are purged by the periodic full scan and when the retention period changed
+     */
+    @Test
+    void testFullScanPurgesUsersBelowWatermark() {
+        deletedUsersTask.processDeletedUsers();
+
+        ExpiryWatermark watermark = expiryWatermarkRepository.findById(UserPurgeService.DELETED_USERS).get();
+        assertNotNull(watermark.getFullScanAt());
+        saveUser("below-watermark@test.com", UserStatus.DELETED, 1, new Timestamp(watermark.getWatermark().getTime() - 3600000));
+
+        releaseLock(DeletedUsersTask.PURGE_DELETED_USERS);
+        assertEquals(0, deletedUsersTask.processDeletedUsers().getTotalPurged());
+
+        watermark = expiryWatermarkRepository.findById(UserPurgeService.DELETED_USERS).get();
+        watermark.setRetentionDays(30);
+        expiryWatermarkRepository.save(watermark);
+
+        releaseLock(DeletedUsersTask.PURGE_DELETED_USERS);
+        assertEquals(1, deletedUsersTask.processDeletedUsers().getTotalPurged());
+        assertNull(userRepository.findByEmail("below-watermark@test.com"));
+
+        saveUser("below-watermark@test.com", UserStatus.DELETED, 1, new Timestamp(watermark.getWatermark().getTime() - 3600000));
+        watermark = expiryWatermarkRepository.findById(UserPurgeService.DELETED_USERS).get();
+        watermark.setFullScanAt(daysAgo(2));
+        expiryWatermarkRepository.save(watermark);
+
+        releaseLock(DeletedUsersTask.PURGE_DELETED_USERS);
+        assertEquals(1, deletedUsersTask.processDeletedUsers().getTotalPurged());
+        assertNull(userRepository.findByEmail("below-watermark@test.com"));
+    }
+
+    /**
+     * Tests that a node skips the job while another node holds its lock, and runs it once the lease of the other node ended
+     */
+    @Test
+    void testJobSkippedWhileAnotherNodeHoldsLock() {
+        saveUser("expired@test.com", UserStatus.DELETED, 1, daysAgo(10));
+
+        Timestamp now = DateUtility.getCurrentUTCTimestamp();
+        assertEquals(1, jobLockRepository.acquire(DeletedUsersTask.PURGE_DELETED_USERS, "other-node", now, new Timestamp(now.getTime() + 60000)));
+
+        assertNull(deletedUsersTask.processDeletedUsers());
+        assertNotNull(userRepository.findByEmail("expired@test.com"));
+
+        jobLockRepository.release(DeletedUsersTask.PURGE_DELETED_USERS, "other-node", DateUtility.getCurrentUTCTimestamp());
+
+        assertEquals(1, deletedUsersTask.processDeletedUsers().getTotalPurged());
+        assertNull(userRepository.findByEmail("expired@test.com"));
+    }
+
+    /**
+     * Tests that the lease is renewed while a long job runs, and that the lock is released when the job ends
+     */
+    @Test
+    void testLeaseRenewedDuringLongJob() {
+        Optional<Integer> result = jobLockService.runExclusively("long-job", 0, () -> {
+        	sleep(2000);
+
+        	Timestamp now = DateUtility.getCurrentUTCTimestamp();
+        	return jobLockRepository.acquire("long-job", "other-node", now, new Timestamp(now.getTime() + 60000));
+        });
+
+        assertEquals(0, result.get());
+        assertEquals(jobLockService.getOwner(), jobLockRepository.findById("long-job").get().getOwner());
+
+        Timestamp now = DateUtility.getCurrentUTCTimestamp();
+        assertEquals(1, jobLockRepository.acquire("long-job", "other-node", now, new Timestamp(now.getTime() + 60000)));
+    }
+
+    /**
+     * Tests that the lock of a job is held for the interval of the job after it ends, so another node doesn't run it again within the interval
+     */
+    @Test
+    void testLockHeldForIntervalAfterJob() {
+        Timestamp before = DateUtility.getCurrentUTCTimestamp();
+
+        assertNotNull(deletedUsersTask.processDeletedUsers());
+        assertNull(deletedUsersTask.processDeletedUsers());
+
+        long heldUntil = jobLockRepository.findById(DeletedUsersTask.PURGE_DELETED_USERS).get().getLockedUntil().getTime();
+        assertTrue(heldUntil >= before.getTime() + MILIS_IN_DAY);
+
+        Timestamp now = DateUtility.getCurrentUTCTimestamp();
+        assertEquals(0, jobLockRepository.acquire(DeletedUsersTask.PURGE_DELETED_USERS, "other-node", now, new Timestamp(now.getTime() + 60000)));
+    }
+
+    /**
+     * Tests that a job whose lease was taken by another node is interrupted, and that the lock of the other node is kept
+     */
+    @Test
+    void testJobCancelledWhenLeaseLost() {
+        Optional<Boolean> cancelled = jobLockService.runExclusively("lost-job", 0, () -> {
+        	Timestamp now = new Timestamp(DateUtility.getCurrentUTCTimestamp().getTime());
+        	jobLockRepository.release("lost-job", jobLockService.getOwner(), now);
+        	assertEquals(1, jobLockRepository.acquire("lost-job", "other-node", now, new Timestamp(now.getTime() + 60000)));
+
+        	for (int i = 0; i < 30 && !Thread.currentThread().isInterrupted(); i++) {
+        		sleep(100);
+        	}
+        	return Thread.currentThread().isInterrupted();
+        });
+
+        assertTrue(cancelled.get());
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertEquals("other-node", jobLockRepository.findById("lost-job").get().getOwner());
+    }
+
+    /**
+     * Tests that the users whose deletion deadline is near are reminded in batches, only once per deadline
+     */
+    @Test
+    void testDeletionRemindersQueuedOnce() {
+        for (int i = 0; i < 3; i++) {
+        	saveUser("expiring" + i + "@test.com", UserStatus.DELETED, 10, daysAgo(6));
+        }
+        saveUser("recent@test.com", UserStatus.DELETED, 10, daysAgo(1));
+        saveUser("expired@test.com", UserStatus.DELETED, 10, daysAgo(8));
+
+        assertEquals(3, purgeReminderTask.remindDeletedUsers());
+        releaseLock(PurgeReminderTask.REMIND_DELETED_USERS);
+        assertEquals(0, purgeReminderTask.remindDeletedUsers());
+
+        List<EmailOutbox> emails = emailOutboxRepository.findByEmailAddress("expiring0@test.com");
+        assertEquals(1, emails.size());
+        assertEquals(EmailType.DELETION_REMINDER, emails.get(0).getType());
+        assertNotNull(emails.get(0).getEmailData().get(EmailTemplateData.DEADLINE.getName()));
+        assertTrue(emailOutboxRepository.findByEmailAddress("recent@test.com").isEmpty());
+        assertTrue(emailOutboxRepository.findByEmailAddress("expired@test.com").isEmpty());
+
+        User user = userRepository.findByEmail("expiring1@test.com");
+        userRepository.updateStatusAndDeletionDate(user.getId(), UserStatus.DELETED, UserStatus.DELETED, daysAgo(6));
+
+        releaseLock(PurgeReminderTask.REMIND_DELETED_USERS);
+        assertEquals(1, purgeReminderTask.remindDeletedUsers());
+        assertEquals(4, purgeReminderRepository.countByType(EmailType.DELETION_REMINDER.name()));
+    }
+
+    /**
+     * Tests that the users whose confirmation deadline is near are reminded with a new confirmation token,
+     * which is created when the reminder is sent rather than stored in the outbox
+     */
+    @Test
+    void testConfirmationReminderCarriesToken() {
+        saveUser("unconfirmed@test.com", UserStatus.NEW, 6, null);
+        saveUser("registered@test.com", UserStatus.NEW, 1, null);
+
+        assertEquals(1, purgeReminderTask.remindUnconfirmedUsers());
+        releaseLock(PurgeReminderTask.REMIND_UNCONFIRMED_USERS);
+        assertEquals(0, purgeReminderTask.remindUnconfirmedUsers());
+
+        List<EmailOutbox> emails = emailOutboxRepository.findByEmailAddress("unconfirmed@test.com");
+        assertEquals(EmailType.CONFIRMATION_REMINDER, emails.get(0).getType());
+        assertNull(emails.get(0).getEmailData().get(EmailTemplateData.TOKEN.getName()));
+        assertNotNull(emailOutboxService.render(emails.get(0)).getEmailData().get(EmailTemplateData.TOKEN.getName()));
+        assertTrue(emailOutboxRepository.findByEmailAddress("registered@test.com").isEmpty());
+    }
+
+    /**
+     * Saves a user with the given status and dates.
+     */
+    private void saveUser(String email, UserStatus status, int registeredDaysAgo, Timestamp deletionDate) {
+    	User user = new User();
+    	user.setName("test");
+    	user.setEmail(email);
+    	user.setPassword("password");
+    	user.setStatus(status);
+    	user.setRegistrationDate(daysAgo(registeredDaysAgo));
+    	user.setDeletionDate(deletionDate);
+    	userRepository.save(user);
+    }
+
+    /**
+     * Releases the lock of the given job held by this node, as if its interval had passed.
+     */
+    private void releaseLock(String name) {
+    	jobLockRepository.release(name, jobLockService.getOwner(), DateUtility.getCurrentUTCTimestamp());
+    }
+
+    /**
+     * Sleeps for the given number of milliseconds.
+     */
+    private void sleep(long millis) {
+    	try {
+    		Thread.sleep(millis);
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	}
+    }
+
+    /**
+     * Returns the UTC timestamp from the given number of days ago.
+     */
+    private Timestamp daysAgo(int days) {
+    	return new Timestamp(DateUtility.getCurrentUTCTimestamp().getTime() - days * MILIS_IN_DAY);
+    }
+}
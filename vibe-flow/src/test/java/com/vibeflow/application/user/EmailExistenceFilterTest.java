@@ -0,0 +1,171 @@
+package com.vibeflow.application.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.dto.EmailResetPasswordDto;
+import com.vibeflow.application.dto.UserDto;
+import com.vibeflow.application.service.EmailExistenceFilter;
+import com.vibeflow.application.utility.BloomFilter;
+import com.vibeflow.application.utility.JsonUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The EmailExistenceFilterTest class tests the Bloom filter answering the lookups of unregistered emails
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@TestPropertySource(locations="classpath:application-test.properties", properties={"vibe.flow.emailFilterEnabled=true", "vibe.flow.emailFilterBatchSize=1"})
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = {"classpath:db/ClearDatabase.sql", "classpath:db/PopulateDatabase.sql"}),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+class EmailExistenceFilterTest {
+
+	/**
+	 * MockMvc instance is used for simulating HTPP requests
+	 */
+	@Autowired
+	private MockMvc mockMvc;
+
+	/**
+	 * The filter of the registered emails
+	 */
+	@Autowired
+	private EmailExistenceFilter emailExistenceFilter;
+
+	/**
+	 * Instance for inserting the users registered by another node
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * The registry of the filter metrics
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * Tests that a reset request for an unregistered email is answered without querying the database,
+	 * and that the registered emails are still found, ignoring the case
+	 * @throws Exception
+	 */
+	@Test
+	void testUnregisteredEmailAnsweredByFilter() throws Exception {
+		emailExistenceFilter.rebuild();
+		double avoided = meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "avoided").count();
+
+		resetPassword("nobody@gmail.com").andExpect(status().isNotFound());
+		assertEquals(avoided + 1, meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "avoided").count());
+
+		resetPassword("denismateescu@gmail.com").andExpect(status().isOk());
+		assertTrue(emailExistenceFilter.mightContain("DenisMateescu@Yahoo.com"));
+	}
+
+	/**
+	 * Tests that the emails registered on this node are added at once, that the ones registered on another node are found
+	 * among the recent registrations, and that the refresh adds them
+	 * @throws Exception
+	 */
+	@Test
+	void testRegisteredEmailsAreAdded() throws Exception {
+		emailExistenceFilter.rebuild();
+
+		UserDto newUser = new UserDto();
+		newUser.setName("test");
+		newUser.setEmail("teesting@test.com");
+		newUser.setPassword("testtesttest");
+
+		mockMvc.perform(post("/api/users/register")
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(newUser)))
+			.andExpect(status().isOk());
+		assertTrue(emailExistenceFilter.mightContain("teesting@test.com"));
+
+		jdbcTemplate.update("INSERT INTO users (name, email, password, registration_date, status_code) "
+				+ "VALUES ('Other', 'other-node@test.com', 'password', CURRENT_TIMESTAMP(), 'A')");
+		double recent = meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "recent").count();
+		assertTrue(emailExistenceFilter.mightContain("other-node@test.com"));
+		assertEquals(recent + 1, meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "recent").count());
+
+		emailExistenceFilter.refresh();
+		double queried = meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "queried").count();
+		assertTrue(emailExistenceFilter.mightContain("other-node@test.com"));
+		assertEquals(queried + 1, meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "queried").count());
+	}
+
+	/**
+	 * Tests that a registration committed after a higher id was read is added by the next refresh
+	 */
+	@Test
+	void testLateRegistrationIsAdded() {
+		emailExistenceFilter.rebuild();
+
+		jdbcTemplate.update("INSERT INTO users (id, name, email, password, registration_date, status_code) "
+				+ "VALUES (1000, 'Other', 'higher-id@test.com', 'password', CURRENT_TIMESTAMP(), 'A')");
+		emailExistenceFilter.refresh();
+
+		jdbcTemplate.update("INSERT INTO users (id, name, email, password, registration_date, status_code) "
+				+ "VALUES (900, 'Other', 'late-commit@test.com', 'password', CURRENT_TIMESTAMP(), 'A')");
+		emailExistenceFilter.refresh();
+
+		double queried = meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "queried").count();
+		assertTrue(emailExistenceFilter.mightContain("late-commit@test.com"));
+		assertEquals(queried + 1, meterRegistry.counter("vibeflow.email.filter.lookups", "outcome", "queried").count());
+	}
+
+	/**
+	 * Tests that the filter never forgets an added string, and that its false positive rate is near the configured one
+	 */
+	@Test
+	void testFalsePositiveRate() {
+		BloomFilter filter = BloomFilter.create(10000, 0.01, 1024 * 1024);
+
+		for (int i = 0; i < 10000; i++) {
+			filter.put("user" + i + "@gmail.com");
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain("user" + i + "@gmail.com"));
+			if (filter.mightContain("user" + i + "@yahoo.com")) {
+				falsePositives++;
+			}
+		}
+
+		assertTrue(falsePositives < 200);
+	}
+
+	/**
+	 * Requests the reset of the password of the given email.
+	 */
+	private ResultActions resetPassword(String email) throws Exception {
+		EmailResetPasswordDto emailDto = new EmailResetPasswordDto();
+		emailDto.setEmail(email);
+
+		return mockMvc.perform(post("/api/users/email-reset-password")
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(emailDto)));
+	}
+}
@@ -0,0 +1,171 @@
+package com.vibeflow.application.user;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.config.CacheConfig;
+import com.vibeflow.application.dto.UpdateUserNameDto;
+import com.vibeflow.application.model.User;
+import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.utility.JsonUtil;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * UserCacheTest class tests the second-level cache of the users
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@TestPropertySource(locations="classpath:application-test.properties", properties="spring.jpa.properties.hibernate.cache.use_second_level_cache=true")
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = {"classpath:db/ClearDatabase.sql", "classpath:db/PopulateDatabase.sql"}),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+public class UserCacheTest {
+
+	/**
+	 * MockMvc instance is used for simulating HTPP requests
+	 */
+	@Autowired
+	private MockMvc mockMvc;
+
+	/**
+	 * The UserRepository used to read the users through the cache
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * The entity manager factory, used to access the cache and the Hibernate statistics
+	 */
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * The Hibernate statistics
+	 */
+	private Statistics statistics;
+
+	/**
+	 * Clears the cache, because the test data is written directly to the database
+	 */
+	@BeforeEach
+	void clearCache() {
+		SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		sessionFactory.getCache().evictAllRegions();
+		sessionFactory.getCache().evictNaturalIdData();
+		statistics = sessionFactory.getStatistics();
+		statistics.clear();
+	}
+
+	/**
+	 * Tests that a repeated /api/users/me doesn't issue any SQL statement once the user is cached
+	 * @throws Exception
+	 */
+	@Test
+	void testRepeatedCurrentUserIssuesNoSql() throws Exception {
+		MockHttpSession session = login();
+
+		mockMvc.perform(get("/api/users/me").session(session))
+		.andExpect(status().isOk());
+
+		statistics.clear();
+
+		for (int i = 0; i < 3; i++) {
+			mockMvc.perform(get("/api/users/me").session(session))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.email", is("denismateescu@gmail.com")));
+		}
+
+		assertEquals(0, statistics.getPrepareStatementCount());
+	}
+
+	/**
+	 * Tests that a lookup by email is served from the natural id and entity regions
+	 */
+	@Test
+	void testFindByEmailUsesCache() {
+		userRepository.findByEmail("denismateescu@gmail.com");
+		statistics.clear();
+
+		userRepository.findByEmail("denismateescu@gmail.com");
+
+		assertEquals(0, statistics.getPrepareStatementCount());
+		assertTrue(statistics.getDomainDataRegionStatistics(CacheConfig.USER_REGION).getHitCount() > 0);
+		assertTrue(statistics.getNaturalIdStatistics("com.vibeflow.application.model.User").getCacheHitCount() > 0);
+	}
+
+	/**
+	 * Tests that a write through the UserService invalidates the cached user
+	 * @throws Exception
+	 */
+	@Test
+	void testUpdateInvalidatesCache() throws Exception {
+		MockHttpSession session = login();
+		userRepository.findByEmail("denismateescu@gmail.com");
+
+		mockMvc.perform(put("/api/users/profile").session(session)
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(new UpdateUserNameDto("Marius Costescu"))))
+		.andExpect(status().isOk());
+
+		assertEquals("Marius Costescu", userRepository.findByEmail("denismateescu@gmail.com").getName());
+	}
+
+	/**
+	 * Tests that a conditional bulk update invalidates the cached user, without an explicit eviction
+	 */
+	@Test
+	void testBulkUpdateInvalidatesUserRegion() {
+		int id = userRepository.findByEmail("denismateescu@gmail.com").getId();
+		Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+		assertTrue(cache.containsEntity(User.class, id));
+
+		userRepository.updateName(id, "Marius Costescu");
+
+		assertFalse(cache.containsEntity(User.class, id));
+	}
+
+	/**
+	 * Logs in the active user and returns the session.
+	 */
+	private MockHttpSession login() throws Exception {
+		MvcResult result = mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", "denismateescu@gmail.com")
+				.param("password", "password"))
+		.andExpect(status().isFound())
+		.andReturn();
+
+		return (MockHttpSession) result.getRequest().getSession();
+	}
+}
@@ -0,0 +1,257 @@
+package com.vibeflow.application.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.repository.UserChangeLogRepository;
+import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.service.UserChangeLogService;
+import com.vibeflow.application.service.UserPurgeService;
+import com.vibeflow.application.utility.DateUtility;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * UserChangeLogTest class tests the eviction of the users changed by another node, through the change log of the users
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@TestPropertySource(locations="classpath:application-test.properties", properties={
+		"spring.jpa.properties.hibernate.cache.use_second_level_cache=true", "vibe.flow.userDetailsCacheEnabled=true",
+		"vibe.flow.userChangePollBatchSize=1"})
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = {"classpath:db/ClearDatabase.sql", "classpath:db/PopulateDatabase.sql"}),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+class UserChangeLogTest {
+
+	/**
+	 * The email of the populated active user
+	 */
+	private static final String EMAIL = "denismateescu@gmail.com";
+
+	/**
+	 * MockMvc instance is used for simulating HTPP requests
+	 */
+	@Autowired
+	private MockMvc mockMvc;
+
+	/**
+	 * The UserRepository used to read the users through the cache
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * Instance for writing the users and the change log as another node
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * The repository of the change log
+	 */
+	@Autowired
+	private UserChangeLogRepository userChangeLogRepository;
+
+	/**
+	 * The service reading and truncating the change log
+	 */
+	@Autowired
+	private UserChangeLogService userChangeLogService;
+
+	/**
+	 * The service purging the expired users
+	 */
+	@Autowired
+	private UserPurgeService userPurgeService;
+
+	/**
+	 * The password encoder of the password set by another node
+	 */
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+
+	/**
+	 * The entity manager factory, used to clear the cache
+	 */
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * The cache of the user details loaded by the logins
+	 */
+	@Autowired
+	private UserCache userCache;
+
+	/**
+	 * The registry of the change log metrics
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * Clears the cache and reads the change log up to now, because the test data is written directly to the database
+	 */
+	@BeforeEach
+	void clearCache() {
+		SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		sessionFactory.getCache().evictAllRegions();
+		sessionFactory.getCache().evictNaturalIdData();
+		userChangeLogService.poll();
+		userChangeLogService.poll();
+	}
+
+	/**
+	 * Tests that a user changed by another node stays cached until the change log is read, and is then evicted
+	 */
+	@Test
+	void testChangeOfAnotherNodeEvicted() {
+		int id = userRepository.findByEmail(EMAIL).getId();
+		long evictions = meterRegistry.timer("vibeflow.user.changes.lag").count();
+
+		jdbcTemplate.update("UPDATE users SET name = 'Marius Costescu', version = version + 1 WHERE id = ?", id);
+		userChangeLogRepository.logChanges(List.of(id), false, DateUtility.getCurrentUTCTimestamp());
+
+		assertEquals("Denis Mateescu", userRepository.findByEmail(EMAIL).getName());
+
+		assertEquals(1, userChangeLogService.poll());
+		assertEquals("Marius Costescu", userRepository.findByEmail(EMAIL).getName());
+		assertEquals(evictions + 1, meterRegistry.timer("vibeflow.user.changes.lag").count());
+
+		assertEquals(0, userChangeLogService.poll());
+	}
+
+	/**
+	 * Tests that a password changed by another node stops the old password from logging in once the change log is read
+	 * @throws Exception
+	 */
+	@Test
+	void testPasswordChangeOfAnotherNodeEvictsLogin() throws Exception {
+		login("password").andExpect(redirectedUrl("/"));
+		login("password").andExpect(redirectedUrl("/"));
+
+		int id = userRepository.findByEmail(EMAIL).getId();
+		jdbcTemplate.update("UPDATE users SET password = ?, version = version + 1 WHERE id = ?", passwordEncoder.encode("newPassword"), id);
+		userChangeLogRepository.logChanges(List.of(id), false, DateUtility.getCurrentUTCTimestamp());
+
+		login("password").andExpect(redirectedUrl("/"));
+
+		userChangeLogService.poll();
+
+		login("password").andExpect(redirectedUrl("/login#invalid-user"));
+		login("newPassword").andExpect(redirectedUrl("/"));
+	}
+
+	/**
+	 * Tests that a change committed after a change with a higher id was read is evicted by the next poll
+	 */
+	@Test
+	void testLateChangeEvicted() {
+		int id = userRepository.findByEmail(EMAIL).getId();
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+
+		jdbcTemplate.update("INSERT INTO user_change_log (user_id, email, version, deleted, changed_at) VALUES (0, 'late@test.com', 1, FALSE, ?)", now);
+		long lateId = userChangeLogRepository.findMaxId();
+		jdbcTemplate.update("DELETE FROM user_change_log WHERE id = ?", lateId);
+
+		jdbcTemplate.update("INSERT INTO user_change_log (user_id, email, version, deleted, changed_at) VALUES (0, 'other@test.com', 1, FALSE, ?)", now);
+		assertEquals(1, userChangeLogService.poll());
+
+		jdbcTemplate.update("UPDATE users SET name = 'Marius Costescu', version = version + 1 WHERE id = ?", id);
+		jdbcTemplate.update("INSERT INTO user_change_log (id, user_id, email, version, deleted, changed_at) VALUES (?, ?, ?, 2, FALSE, ?)",
+				lateId, id, EMAIL, now);
+		assertEquals("Denis Mateescu", userRepository.findByEmail(EMAIL).getName());
+
+		userChangeLogService.poll();
+		assertEquals("Marius Costescu", userRepository.findByEmail(EMAIL).getName());
+	}
+
+	/**
+	 * Tests that a node which didn't read the change log for longer than its retention evicts the user details of the logins too
+	 * @throws Exception
+	 */
+	@Test
+	void testStaleNodeEvictsUserDetails() throws Exception {
+		login("password").andExpect(redirectedUrl("/"));
+		login("password").andExpect(redirectedUrl("/"));
+		assertNotNull(userCache.getUserFromCache(EMAIL));
+
+		ReflectionTestUtils.setField(userChangeLogService, "lastPollMillis", 1L);
+		userChangeLogService.poll();
+
+		assertNull(userCache.getUserFromCache(EMAIL));
+	}
+
+	/**
+	 * Tests that the purged users are logged as deleted with their email and version, before they are deleted
+	 */
+	@Test
+	void testPurgeLogsDeletions() {
+		jdbcTemplate.update("INSERT INTO users (name, email, password, registration_date, status_code, deletion_date, version) "
+				+ "VALUES ('Expired', 'expired@test.com', 'password', ?, 'D', ?, 3)",
+				new Timestamp(0), new Timestamp(DateUtility.getCurrentUTCTimestamp().getTime() - 400L * 24 * 60 * 60 * 1000));
+
+		assertEquals(1, userPurgeService.purgeDeletedUsers().getTotalPurged());
+		assertNull(userRepository.findByEmail("expired@test.com"));
+
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_change_log WHERE email = 'expired@test.com' "
+				+ "AND deleted = TRUE AND version = 3", Integer.class));
+		assertEquals(1, userChangeLogService.poll());
+	}
+
+	/**
+	 * Tests that the changes older than the retention period are truncated, and the recent ones are kept
+	 */
+	@Test
+	void testTruncateKeepsRetention() {
+		Timestamp now = DateUtility.getCurrentUTCTimestamp();
+		jdbcTemplate.update("INSERT INTO user_change_log (user_id, email, version, deleted, changed_at) VALUES (1, 'old@test.com', 1, FALSE, ?)",
+				new Timestamp(now.getTime() - 2 * 60 * 60 * 1000));
+		jdbcTemplate.update("INSERT INTO user_change_log (user_id, email, version, deleted, changed_at) VALUES (1, 'recent@test.com', 1, FALSE, ?)", now);
+
+		assertEquals(1, userChangeLogService.truncate());
+		assertTrue(userChangeLogRepository.findAll().stream().allMatch(change -> "recent@test.com".equals(change.getEmail())));
+	}
+
+	/**
+	 * Logs in the populated user with the given password.
+	 */
+	private ResultActions login(String password) throws Exception {
+		return mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", EMAIL)
+				.param("password", password));
+	}
+}
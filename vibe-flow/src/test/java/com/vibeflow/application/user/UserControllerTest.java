@@ -5,6 +5,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -19,6 +20,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import java.sql.Timestamp;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -46,6 +49,8 @@ import com.vibeflow.application.service.UserService;
 import com.vibeflow.application.utility.DateUtility;
 import com.vibeflow.application.utility.JsonUtil;
 
+import jakarta.persistence.EntityManagerFactory;
+
 /**
  * UserControllerTest class tests the functionality of UserController
  *
@@ -78,6 +83,12 @@ public class UserControllerTest {
      */
     @Autowired
     private PasswordEncoder passwordEncoder;
+    
+    /**
+     * The entity manager factory, used to access the Hibernate statistics
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
 
 	/**
 	 *  Tests the user registration functionality.
@@ -291,6 +302,114 @@ public class UserControllerTest {
 		assertThat(user.getName(), equalTo("Marius Costescu"));
 	}
 	
+	/**
+	 * Tests that a password hash stored without the id of the algorithm is upgraded after a successful login
+	 * @throws Exception
+	 */
+	@Test
+	void testLegacyPasswordHashUpgradedOnLogin() throws Exception {
+		assertFalse(userService.getUserByEmail("denismateescu@gmail.com").getPassword().startsWith("{bcrypt}"));
+		
+		mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", "denismateescu@gmail.com")
+				.param("password", "password"))
+		.andExpect(status().isFound())
+		.andExpect(redirectedUrl("/"));
+		
+		String upgradedPassword = userService.getUserByEmail("denismateescu@gmail.com").getPassword();
+		
+		assertTrue(upgradedPassword.startsWith("{bcrypt}"));
+		assertTrue(passwordEncoder.matches("password", upgradedPassword));
+		
+		mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", "denismateescu@gmail.com")
+				.param("password", "password"))
+		.andExpect(status().isFound())
+		.andExpect(redirectedUrl("/"));
+		
+		assertEquals(upgradedPassword, userService.getUserByEmail("denismateescu@gmail.com").getPassword());
+	}
+	
+	/**
+	 * Tests that the current user is served from the session snapshot, checked by a single lookup by id,
+	 * and that the snapshot is refreshed after the user changes his name
+	 * @throws Exception
+	 */
+	@Test
+	void testCurrentUserServedFromSession() throws Exception {
+		MvcResult result = mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", "denismateescu@gmail.com")
+				.param("password", "password"))
+		.andExpect(status().isFound())
+		.andReturn();
+		
+		MockHttpSession session = (MockHttpSession) result.getRequest().getSession();
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		
+		mockMvc.perform(get("/api/users/me").session(session))
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("$.name", is("Denis Mateescu")));
+		
+		assertEquals(1, statistics.getPrepareStatementCount());
+		
+		UpdateUserNameDto updateNameDto = new UpdateUserNameDto();
+		updateNameDto.setName("Marius Costescu");
+		
+		mockMvc.perform(put("/api/users/profile").session(session)
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(updateNameDto)))
+		.andExpect(status().isOk());
+		
+		statistics.clear();
+		
+		mockMvc.perform(get("/api/users/me").session(session))
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("$.name", is("Marius Costescu")));
+		
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+	
+	/**
+	 * Tests that a session whose user was changed by another session is ended on its next request,
+	 * with the sessions kept in memory
+	 * @throws Exception
+	 */
+	@Test
+	void testStaleSessionIsEnded() throws Exception {
+		MockHttpSession staleSession = (MockHttpSession) mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", "denismateescu@gmail.com")
+				.param("password", "password"))
+		.andExpect(status().isFound())
+		.andReturn().getRequest().getSession();
+		
+		MockHttpSession session = (MockHttpSession) mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", "denismateescu@gmail.com")
+				.param("password", "password"))
+		.andExpect(status().isFound())
+		.andReturn().getRequest().getSession();
+		
+		mockMvc.perform(put("/api/users/profile").session(session)
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(new UpdateUserNameDto("Marius Costescu"))))
+		.andExpect(status().isOk());
+		
+		mockMvc.perform(get("/api/users/me").session(staleSession))
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("$.name", is("Anonymous User")));
+		
+		assertTrue(staleSession.isInvalid());
+		
+		mockMvc.perform(get("/api/users/me").session(session))
+		.andExpect(status().isOk())
+		.andExpect(jsonPath("$.name", is("Marius Costescu")));
+	}
+	
 	/**
 	 * Tests the situation in which a User enters an empty name
 	 * @throws Exception
@@ -476,7 +595,7 @@ public class UserControllerTest {
 
         User user = userService.getUserByEmail("denismateescu@gmail.com");
         
-        assertEquals(UserStatus.DELETED.getStatus(), user.getStatus());
+        assertEquals(UserStatus.DELETED, user.getStatus());
         assertNotNull(user.getDeletionDate());
         
         assertTrue(user.getDeletionDate().after(timestampBeforeDelete));
@@ -510,7 +629,7 @@ public class UserControllerTest {
 
         User user = userService.getUserByEmail("denismateescu@gmail.com");
         
-        assertEquals(UserStatus.ACTIVE.getStatus(), user.getStatus());
+        assertEquals(UserStatus.ACTIVE, user.getStatus());
     }
 	
 	/**
@@ -539,7 +658,7 @@ public class UserControllerTest {
 
         User userAfterDeletion = userService.getUserByEmail("denismateescu@gmail.com");
         
-        assertEquals(UserStatus.DELETED.getStatus(), userAfterDeletion.getStatus());
+        assertEquals(UserStatus.DELETED, userAfterDeletion.getStatus());
         assertNotNull(userAfterDeletion.getDeletionDate());
         
         mockMvc.perform(put("/api/users/recover").session(session)
@@ -548,10 +667,67 @@ public class UserControllerTest {
         
         User userAfterRecover = userService.getUserByEmail("denismateescu@gmail.com");
         
-        assertEquals(UserStatus.ACTIVE.getStatus(), userAfterRecover.getStatus());
+        assertEquals(UserStatus.ACTIVE, userAfterRecover.getStatus());
         assertNull(userAfterRecover.getDeletionDate());
 	}
 	
+	/**
+	 * Tests that deleting an already deleted user succeeds and keeps the original deletion date
+	 * @throws Exception
+	 */
+	@Test
+	void deleteDeletedUserTest() throws Exception {
+        MvcResult result = mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", "denismateescu@gmail.com")
+				.param("password", "password"))
+		.andExpect(status().isFound())
+		.andExpect(redirectedUrl("/"))
+		.andReturn();
+        
+        MockHttpSession session = (MockHttpSession) result.getRequest().getSession();
+        
+        DeleteUserDto deleteUserDto = new DeleteUserDto();
+        deleteUserDto.setPassword("password");
+        
+        mockMvc.perform(put("/api/users/delete").session(session)
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(deleteUserDto)))
+		.andExpect(status().isOk());
+        
+        Timestamp deletionDate = userService.getUserByEmail("denismateescu@gmail.com").getDeletionDate();
+        
+        mockMvc.perform(put("/api/users/delete").session(session)
+				.contentType("application/json")
+				.content(JsonUtil.asJsonString(deleteUserDto)))
+		.andExpect(status().isOk());
+        
+        assertEquals(deletionDate, userService.getUserByEmail("denismateescu@gmail.com").getDeletionDate());
+	}
+	
+	/**
+	 * Tests that recovering a user who is not deleted succeeds and leaves the user active
+	 * @throws Exception
+	 */
+	@Test
+	void recoverActiveUserTest() throws Exception {
+        MvcResult result = mockMvc.perform(post("/login")
+				.contentType(APPLICATION_FORM_URLENCODED)
+				.param("email", "denismateescu@gmail.com")
+				.param("password", "password"))
+		.andExpect(status().isFound())
+		.andExpect(redirectedUrl("/"))
+		.andReturn();
+        
+        MockHttpSession session = (MockHttpSession) result.getRequest().getSession();
+        
+        mockMvc.perform(put("/api/users/recover").session(session)
+				.contentType("application/json"))
+		.andExpect(status().isOk());
+        
+        assertEquals(UserStatus.ACTIVE, userService.getUserByEmail("denismateescu@gmail.com").getStatus());
+	}
+	
 	/**
 	 * Tests the situation when a unconfirmed user trying to log in
 	 * @throws Exception
@@ -0,0 +1,72 @@
+package com.vibeflow.application.user;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+import java.sql.Timestamp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlGroup;
+
+import com.vibeflow.application.VibeFlowApplication;
+import com.vibeflow.application.model.UserStatus;
+import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.utility.CapturingStatementInspector;
+import com.vibeflow.application.utility.DateUtility;
+
+/**
+ * The UserRepositoryTest class tests the lifecycle queries of UserRepository
+ *
+ */
+@SpringBootTest(classes=VibeFlowApplication.class)
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+		+ "com.vibeflow.application.utility.CapturingStatementInspector")
+@SqlGroup({
+	@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql"),
+	@Sql(executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD, scripts = "classpath:db/ClearDatabase.sql")
+})
+public class UserRepositoryTest {
+
+	/**
+	 * The UserRepository under test
+	 */
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * JdbcTemplate used to read the query plans from H2
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Tests that the statements generated for the lifecycle sweeps are served by the composite status indexes.
+	 * The plans are read for the SQL captured from Hibernate, bound with the same parameters as the repository call
+	 */
+	@Test
+	void testLifecycleQueriesUseIndexes() {
+		Timestamp from = new Timestamp(0);
+		Timestamp cutoff = DateUtility.getCurrentUTCTimestamp();
+
+		userRepository.lockChunkByDeletionDateBetween(UserStatus.DELETED.getCode(), from, cutoff, 100);
+		assertLastStatementUses("IDX_USERS_STATUS_CODE_DELETION_DATE", UserStatus.DELETED.getCode(), from, cutoff, 100);
+
+		userRepository.lockChunkByRegistrationDateBetween(UserStatus.NEW.getCode(), from, cutoff, 100);
+		assertLastStatementUses("IDX_USERS_STATUS_CODE_REGISTRATION_DATE", UserStatus.NEW.getCode(), from, cutoff, 100);
+	}
+
+	/**
+	 * Asserts that the plan of the last statement generated by Hibernate uses the given index.
+	 */
+	private void assertLastStatementUses(String index, Object... parameters) {
+		String plan = jdbcTemplate.queryForObject("EXPLAIN " + CapturingStatementInspector.getLastStatement(), String.class, parameters);
+		assertThat(plan.toUpperCase(), containsString(index));
+	}
+}
@@ -1,13 +1,24 @@
 package com.vibeflow.application.user;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.jdbc.Sql;
@@ -16,8 +27,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 
 import com.vibeflow.application.dto.UserDto;
+import com.vibeflow.application.exception.InternalErrorCode;
+import com.vibeflow.application.exception.VibeFlowException;
 import com.vibeflow.application.model.User;
 import com.vibeflow.application.repository.UserRepository;
+import com.vibeflow.application.service.EventService;
+import com.vibeflow.application.service.UserService;
 import com.vibeflow.application.utility.JsonUtil;
 
 /**
@@ -48,6 +63,16 @@ public class UserServiceTest {
      */
     @Autowired
     private MockMvc mockMvc;
+    /**
+     * The UserService used to register users directly, outside of an HTTP request
+     */
+    @Autowired
+    private UserService userService;
+    /**
+     * Mocked event service, so that no emails are sent during the tests
+     */
+    @MockBean
+    private EventService eventService;
 
     /**
      * Test the server's ability to encode a password
@@ -81,4 +106,65 @@ public class UserServiceTest {
 
         assertTrue(passwordEncoder.matches(rawPassword, encodedPassword1));
     }    
+
+    /**
+     * Test that registering the same email from many threads at once creates exactly one user
+     * and that every other attempt is rejected with the EMAIL_ALREADY_EXISTS error
+     * @throws Exception
+     */
+    @Test
+    void testConcurrentRegistrationSameEmail() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    User newUser = new User();
+                    newUser.setName("concurrent");
+                    newUser.setEmail("concurrent@test.com");
+                    newUser.setPassword("password");
+
+                    startGate.await();
+                    try {
+                        userService.registerUser(newUser);
+                        return true;
+                    } catch (VibeFlowException e) {
+                        assertEquals(InternalErrorCode.EMAIL_ALREADY_EXISTS, e.getErrorCode());
+                        return false;
+                    }
+                }));
+            }
+            startGate.countDown();
+
+            int registered = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    registered++;
+                }
+            }
+            assertEquals(1, registered);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, userRepository.findAll().stream()
+                .filter(user -> "concurrent@test.com".equals(user.getEmail()))
+                .count());
+    }
+
+    /**
+     * Test that a violation of another constraint than the unique email index is not reported as an existing email
+     * @throws Exception
+     */
+    @Test
+    void testRegistrationOtherViolationIsNotExistingEmail() throws Exception {
+        User newUser = new User();
+        newUser.setEmail("noname@test.com");
+        newUser.setPassword("password");
+
+        assertThrows(DataIntegrityViolationException.class, () -> userService.registerUser(newUser));
+    }
 }
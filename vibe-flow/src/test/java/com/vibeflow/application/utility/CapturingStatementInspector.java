@@ -0,0 +1,52 @@
+package com.vibeflow.application.utility;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * CapturingStatementInspector records the SQL statements generated by Hibernate, so the tests can inspect the plans of the actual statements
+ *
+ */
+public class CapturingStatementInspector implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The statements generated since the last clear
+	 */
+	private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Records the statement and returns it unchanged.
+	 *
+	 * @param sql The statement generated by Hibernate.
+	 * @return The same statement.
+	 */
+	@Override
+	public String inspect(String sql) {
+		STATEMENTS.add(sql);
+		return sql;
+	}
+
+	/**
+	 * Forgets the recorded statements.
+	 */
+	public static void clear() {
+		STATEMENTS.clear();
+	}
+
+	/**
+	 * Returns the last recorded statement.
+	 *
+	 * @return The last statement generated by Hibernate.
+	 * @throws IllegalStateException If no statement was recorded.
+	 */
+	public static String getLastStatement() {
+		if (STATEMENTS.isEmpty()) {
+			throw new IllegalStateException("No statement was recorded");
+		}
+		return STATEMENTS.get(STATEMENTS.size() - 1);
+	}
+}
@@ -1 +1,8 @@
-DELETE FROM users;
\ No newline at end of file
+DELETE FROM SPRING_SESSION;
+DELETE FROM email_outbox;
+DELETE FROM purge_reminder;
+DELETE FROM refresh_token;
+DELETE FROM users;
+DELETE FROM user_change_log;
+UPDATE job_lock SET owner = NULL, locked_at = NULL, locked_until = '1970-01-01 00:00:00';
+UPDATE expiry_watermark SET watermark = '1970-01-01 00:00:00', updated_at = NULL, retention_days = NULL, full_scan_at = NULL;
@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS user_change_log (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    user_id INT NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    version INT NOT NULL,
+    deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    changed_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_user_change_log_changed_at ON user_change_log (changed_at);
+
+INSERT INTO job_lock (name, locked_until) VALUES ('truncate-user-change-log', '1970-01-01 00:00:00');
\ No newline at end of file
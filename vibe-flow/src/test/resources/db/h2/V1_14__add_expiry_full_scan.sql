@@ -0,0 +1,2 @@
+ALTER TABLE expiry_watermark ADD COLUMN retention_days INT NULL;
+ALTER TABLE expiry_watermark ADD COLUMN full_scan_at DATETIME(6) NULL;
\ No newline at end of file
@@ -0,0 +1 @@
+ALTER TABLE email_outbox ADD COLUMN claim_token VARCHAR(36) NULL;
\ No newline at end of file
@@ -0,0 +1,7 @@
+ALTER TABLE users ADD COLUMN status_code CHAR(1) NULL;
+ALTER TABLE users ALTER COLUMN status SET DEFAULT 'new';
+
+UPDATE users SET status_code = CASE status WHEN 'new' THEN 'N' WHEN 'active' THEN 'A' WHEN 'deleted' THEN 'D' END;
+
+CREATE INDEX idx_users_status_code_deletion_date ON users (status_code, deletion_date);
+CREATE INDEX idx_users_status_code_registration_date ON users (status_code, registration_date);
\ No newline at end of file
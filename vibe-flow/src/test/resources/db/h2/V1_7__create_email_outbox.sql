@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    type VARCHAR(32) NOT NULL,
+    email_address VARCHAR(255) NOT NULL,
+    payload VARCHAR(4096) NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(1024) DEFAULT NULL,
+    created_at TIMESTAMP NOT NULL,
+    sent_at TIMESTAMP NULL DEFAULT NULL
+);
+
+CREATE INDEX idx_email_outbox_status_next_attempt ON email_outbox (status, next_attempt_at);
+CREATE INDEX idx_email_outbox_status_sent_at ON email_outbox (status, sent_at);
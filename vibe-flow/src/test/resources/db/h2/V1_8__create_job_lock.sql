@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS job_lock (
+    name VARCHAR(64) PRIMARY KEY,
+    owner VARCHAR(128) DEFAULT NULL,
+    locked_at DATETIME(6) NULL DEFAULT NULL,
+    locked_until DATETIME(6) NOT NULL
+);
+
+INSERT INTO job_lock (name, locked_until) VALUES ('purge-deleted-users', '1970-01-01 00:00:00');
+INSERT INTO job_lock (name, locked_until) VALUES ('purge-unconfirmed-users', '1970-01-01 00:00:00');